@@ -0,0 +1,132 @@
+package com.bookstore.backend.benchmark;
+
+import com.bookstore.backend.model.Book;
+import com.bookstore.backend.service.BookSearchIndex;
+import com.mongodb.client.MongoClient;
+import com.mongodb.client.MongoClients;
+import com.mongodb.client.MongoCollection;
+import com.mongodb.client.model.Filters;
+import org.bson.Document;
+import org.bson.conversions.Bson;
+import org.openjdk.jmh.annotations.*;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+import java.util.regex.Pattern;
+
+// Compares the in-process BM25 index against the unanchored case-insensitive $regex scan used by
+// the other search endpoints. The regex side needs a local MongoDB (-Dbench.mongodb.uri=...).
+// Run: mvn -Pbenchmark test-compile exec:exec -Dbenchmark.args="BookSearchBenchmark -p books=1000000"
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class BookSearchBenchmark {
+
+    private static final String[] WORDS = {
+            "dragon", "empire", "shadow", "river", "garden", "winter", "silent", "machine", "ocean", "crown",
+            "memory", "forest", "glass", "storm", "letter", "island", "mirror", "hunter", "star", "secret",
+            "kingdom", "echo", "harbor", "lantern", "voyage", "circle", "ember", "orchard", "signal", "atlas" };
+    private static final String[] NAMES = {
+            "Ada", "Brontë", "Chen", "Dumas", "Eliot", "Frost", "Gibson", "Hugo", "Ishiguro", "Jemisin",
+            "Kafka", "Le Guin", "Morrison", "Nabokov", "Okorafor", "Pratchett", "Rowling", "Sanderson" };
+    private static final String[] GENRES = { "Fantasy", "Science Fiction", "Mystery", "Romance", "History", "Poetry" };
+    private static final String[] QUERIES = { "dragon", "silent harbor", "sanderson", "lant", "mystery ocean" };
+
+    @State(Scope.Benchmark)
+    public static class Catalog {
+        @Param({ "100000" })
+        public int books;
+
+        BookSearchIndex index;
+        MongoClient client;
+        MongoCollection<Document> collection;
+        int next;
+
+        @Setup(Level.Trial)
+        public void setUp() {
+            index = new BookSearchIndex();
+            Random random = new Random(42);
+            List<Document> batch = new ArrayList<>();
+
+            String uri = System.getProperty("bench.mongodb.uri", "mongodb://localhost:27017");
+            client = MongoClients.create(uri);
+            collection = client.getDatabase("bookstore_bench").getCollection("books");
+            boolean seed = collection.countDocuments() != books;
+            if (seed) {
+                collection.drop();
+            }
+
+            for (int i = 0; i < books; i++) {
+                Book book = randomBook(random, "bench-" + i);
+                index.index(book);
+                if (seed) {
+                    batch.add(new Document("_id", book.getBook_id())
+                            .append("title", book.getTitle())
+                            .append("author", book.getAuthor())
+                            .append("genre", book.getGenre())
+                            .append("publisher", book.getPublisher())
+                            .append("description", book.getDescription()));
+                    if (batch.size() == 10_000) {
+                        collection.insertMany(batch);
+                        batch.clear();
+                    }
+                }
+            }
+            if (!batch.isEmpty()) {
+                collection.insertMany(batch);
+            }
+        }
+
+        @TearDown(Level.Trial)
+        public void tearDown() {
+            client.close();
+        }
+
+        String nextQuery() {
+            return QUERIES[next++ % QUERIES.length];
+        }
+    }
+
+    @Benchmark
+    public List<String> invertedIndex(Catalog catalog) {
+        return catalog.index.search(catalog.nextQuery(), 20, true);
+    }
+
+    @Benchmark
+    public List<Document> regexScan(Catalog catalog) {
+        String keyword = Pattern.quote(catalog.nextQuery());
+        Bson filter = Filters.or(
+                Filters.regex("title", keyword, "i"),
+                Filters.regex("author", keyword, "i"),
+                Filters.regex("genre", keyword, "i"),
+                Filters.regex("publisher", keyword, "i"),
+                Filters.regex("description", keyword, "i"));
+        return catalog.collection.find(filter).limit(20).into(new ArrayList<>());
+    }
+
+    private static Book randomBook(Random random, String id) {
+        Book book = new Book();
+        book.setBook_id(id);
+        book.setTitle(words(random, 3));
+        book.setAuthor(NAMES[random.nextInt(NAMES.length)] + " " + NAMES[random.nextInt(NAMES.length)]);
+        book.setGenre(GENRES[random.nextInt(GENRES.length)]);
+        book.setPublisher(NAMES[random.nextInt(NAMES.length)] + " Press");
+        book.setDescription(words(random, 30));
+        return book;
+    }
+
+    private static String words(Random random, int count) {
+        StringBuilder text = new StringBuilder();
+        for (int i = 0; i < count; i++) {
+            if (i > 0) {
+                text.append(' ');
+            }
+            text.append(WORDS[random.nextInt(WORDS.length)]);
+        }
+        return text.toString();
+    }
+}
@@ -0,0 +1,110 @@
+package com.bookstore.backend.benchmark;
+
+import com.mongodb.client.MongoClient;
+import com.mongodb.client.MongoClients;
+import com.mongodb.client.MongoCollection;
+import com.mongodb.client.model.BulkWriteOptions;
+import com.mongodb.client.model.Filters;
+import com.mongodb.client.model.ReplaceOptions;
+import com.mongodb.client.model.UpdateOneModel;
+import com.mongodb.client.model.WriteModel;
+import org.bson.Document;
+import org.openjdk.jmh.annotations.*;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+// Measures stock updates per second for the write shape StockImportService issues: unordered bulk
+// writes of pipeline updates that set stockQuantity and derive stockStatus from minThreshold, one
+// batch per invocation. Compares with one findById + full-document save per book (the single PUT).
+// Target: > 50k updates/sec on a local MongoDB (-Dbench.mongodb.uri=...).
+// Run: mvn -Pbenchmark test-compile exec:exec -Dbenchmark.args="BulkStockImportBenchmark"
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 2, time = 5)
+@Measurement(iterations = 5, time = 5)
+@Fork(1)
+public class BulkStockImportBenchmark {
+
+    private static final int BATCH_SIZE = 1000; // Matches inventory.bulk.batch-size
+
+    @State(Scope.Benchmark)
+    public static class Inventory {
+        @Param({ "200000" })
+        public int books;
+
+        MongoClient client;
+        MongoCollection<Document> collection;
+        Random random = new Random(11);
+
+        @Setup(Level.Trial)
+        public void setUp() {
+            String uri = System.getProperty("bench.mongodb.uri", "mongodb://localhost:27017");
+            client = MongoClients.create(uri);
+            collection = client.getDatabase("bookstore_bench").getCollection("books_stock");
+            if (collection.countDocuments() != books) {
+                collection.drop();
+                List<Document> batch = new ArrayList<>();
+                for (int i = 0; i < books; i++) {
+                    batch.add(new Document("_id", "book-" + i)
+                            .append("title", "Title " + i)
+                            .append("stockQuantity", 20)
+                            .append("stockStatus", "IN_STOCK")
+                            .append("minThreshold", i % 3 == 0 ? 0 : 10));
+                    if (batch.size() == 10_000) {
+                        collection.insertMany(batch);
+                        batch.clear();
+                    }
+                }
+                if (!batch.isEmpty()) {
+                    collection.insertMany(batch);
+                }
+            }
+        }
+
+        @TearDown(Level.Trial)
+        public void tearDown() {
+            client.close();
+        }
+
+        String randomId() {
+            return "book-" + random.nextInt(books);
+        }
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(BATCH_SIZE)
+    public void unorderedPipelineBulk(Inventory inventory) {
+        List<WriteModel<Document>> writes = new ArrayList<>(BATCH_SIZE);
+        for (int i = 0; i < BATCH_SIZE; i++) {
+            int quantity = inventory.random.nextInt(30);
+            writes.add(new UpdateOneModel<>(Filters.eq("_id", inventory.randomId()), stockUpdate(quantity)));
+        }
+        inventory.collection.bulkWrite(writes, new BulkWriteOptions().ordered(false));
+    }
+
+    @Benchmark
+    public void findAndSaveOneByOne(Inventory inventory) {
+        String id = inventory.randomId();
+        Document book = inventory.collection.find(Filters.eq("_id", id)).first();
+        if (book != null) {
+            int quantity = inventory.random.nextInt(30);
+            book.put("stockQuantity", quantity);
+            book.put("stockStatus", quantity <= 0 ? "OUT_OF_STOCK" : quantity <= 5 ? "LOW_STOCK" : "IN_STOCK");
+            inventory.collection.replaceOne(Filters.eq("_id", id), book, new ReplaceOptions());
+        }
+    }
+
+    private static List<Document> stockUpdate(int quantity) {
+        Object status = quantity <= 0 ? "OUT_OF_STOCK"
+                : new Document("$cond", List.of(
+                        new Document("$gte", List.of(
+                                new Document("$cond", List.of(
+                                        new Document("$gt", List.of("$minThreshold", 0)), "$minThreshold", 5)),
+                                quantity)),
+                        "LOW_STOCK", "IN_STOCK"));
+        return List.of(new Document("$set", new Document("stockQuantity", quantity).append("stockStatus", status)));
+    }
+}
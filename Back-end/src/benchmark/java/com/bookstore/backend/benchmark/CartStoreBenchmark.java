@@ -0,0 +1,119 @@
+package com.bookstore.backend.benchmark;
+
+import com.bookstore.backend.model.Book;
+import com.bookstore.backend.model.Cart;
+import com.bookstore.backend.service.CartSessionStore;
+import com.bookstore.backend.service.SchedulerLeader;
+import com.mongodb.client.MongoClient;
+import com.mongodb.client.MongoClients;
+import org.openjdk.jmh.annotations.*;
+import org.springframework.data.domain.Sort;
+import org.springframework.data.mongodb.core.FindAndModifyOptions;
+import org.springframework.data.mongodb.core.MongoTemplate;
+import org.springframework.data.mongodb.core.index.Index;
+import org.springframework.data.mongodb.core.query.Criteria;
+import org.springframework.data.mongodb.core.query.Query;
+import org.springframework.data.mongodb.core.query.Update;
+
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+
+// Latency distribution (read p0.99 from the SampleTime output) of the store work behind
+// POST /api/cart/add: the direct mode's findAndModify $inc against the write-behind session store,
+// with its flush running every second in the background as in production. Controller, JWT and
+// book lookup costs are the same in both modes and left out. Needs a local MongoDB
+// (-Dbench.mongodb.uri=...).
+// Run: mvn -Pbenchmark test-compile exec:exec -Dbenchmark.args="CartStoreBenchmark"
+@BenchmarkMode(Mode.SampleTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 2, time = 5)
+@Measurement(iterations = 5, time = 5)
+@Threads(16)
+@Fork(1)
+public class CartStoreBenchmark {
+
+    private static final int BOOKS_PER_CART = 20;
+
+    @State(Scope.Benchmark)
+    public static class Carts {
+        @Param({ "10000" })
+        public int users;
+
+        MongoClient client;
+        MongoTemplate mongoTemplate;
+        CartSessionStore sessionStore;
+        List<Book> books = new ArrayList<>();
+
+        @Setup(Level.Trial)
+        public void setUp() {
+            String uri = System.getProperty("bench.mongodb.uri", "mongodb://localhost:27017");
+            client = MongoClients.create(uri);
+            mongoTemplate = new MongoTemplate(client, "bookstore_bench");
+            mongoTemplate.dropCollection(Cart.class);
+            mongoTemplate.dropCollection("cart_leases");
+
+            for (int b = 0; b < BOOKS_PER_CART; b++) {
+                Book book = new Book();
+                book.setBook_id("book-" + b);
+                book.setTitle("Title " + b);
+                book.setPrice(10 + b);
+                book.setStockQuantity(Integer.MAX_VALUE);
+                books.add(book);
+            }
+            List<Cart> carts = new ArrayList<>();
+            for (int u = 0; u < users; u++) {
+                Cart cart = new Cart();
+                cart.setUserId("user-" + u);
+                List<Cart.CartItem> items = new ArrayList<>();
+                for (Book book : books) {
+                    Cart.CartItem item = new Cart.CartItem();
+                    item.setBookId(book.getBook_id());
+                    item.setTitle(book.getTitle());
+                    item.setPrice(book.getPrice());
+                    item.setQuantity(1);
+                    items.add(item);
+                }
+                cart.setItems(items);
+                carts.add(cart);
+            }
+            mongoTemplate.insertAll(carts);
+            mongoTemplate.indexOps(Cart.class).createIndex(new Index().on("userId", Sort.Direction.ASC).unique());
+
+            sessionStore = new CartSessionStore(mongoTemplate, new SchedulerLeader(), "write-behind", 64, 30_000, 1000);
+            sessionStore.start();
+        }
+
+        @TearDown(Level.Trial)
+        public void tearDown() {
+            sessionStore.shutdown();
+            client.close();
+        }
+
+        String randomUser() {
+            return "user-" + ThreadLocalRandom.current().nextInt(users);
+        }
+
+        Book randomBook() {
+            return books.get(ThreadLocalRandom.current().nextInt(books.size()));
+        }
+    }
+
+    @Benchmark
+    public Cart direct(Carts carts) {
+        Book book = carts.randomBook();
+        Query existing = new Query(Criteria.where("userId").is(carts.randomUser())
+                .and("items").elemMatch(Criteria.where("bookId").is(book.getBook_id())
+                        .and("quantity").lte(book.getStockQuantity() - 1)));
+        return carts.mongoTemplate.findAndModify(existing,
+                new Update().inc("items.$.quantity", 1).set("updatedAt", LocalDateTime.now()),
+                FindAndModifyOptions.options().returnNew(true), Cart.class);
+    }
+
+    @Benchmark
+    public Cart writeBehind(Carts carts) {
+        return carts.sessionStore.add(carts.randomUser(), carts.randomBook(), 1);
+    }
+}
@@ -0,0 +1,219 @@
+package com.bookstore.backend.benchmark;
+
+import com.mongodb.client.MongoClient;
+import com.mongodb.client.MongoClients;
+import com.mongodb.client.MongoCollection;
+import com.mongodb.client.MongoDatabase;
+import com.mongodb.client.model.Accumulators;
+import com.mongodb.client.model.Aggregates;
+import com.mongodb.client.model.Filters;
+import com.mongodb.client.model.Indexes;
+import com.mongodb.client.model.Sorts;
+import org.bson.Document;
+import org.openjdk.jmh.annotations.*;
+
+import java.time.LocalDateTime;
+import java.time.ZoneOffset;
+import java.util.ArrayList;
+import java.util.Date;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+// Compares the old getTopSellingBooks (load every order, one findById per distinct book, sort the
+// whole map) against the $group/$sort/$limit pushdown and the sales_by_book rollup read, each with a
+// single batched author lookup for the k winners. Needs a local MongoDB (-Dbench.mongodb.uri=...);
+// seeding 1M orders takes a few minutes the first time and is reused afterwards.
+// Run: mvn -Pbenchmark test-compile exec:exec -Dbenchmark.args="TopSellingBooksBenchmark"
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 1, time = 10)
+@Measurement(iterations = 3, time = 10)
+@Fork(1)
+public class TopSellingBooksBenchmark {
+
+    private static final int TOP_K = 10;
+
+    @State(Scope.Benchmark)
+    public static class Sales {
+        @Param({ "1000000" })
+        public int orders;
+
+        @Param({ "200000" })
+        public int books;
+
+        MongoClient client;
+        MongoCollection<Document> orderCollection;
+        MongoCollection<Document> bookCollection;
+        MongoCollection<Document> rollupCollection;
+        Date windowStart;
+
+        @Setup(Level.Trial)
+        public void setUp() {
+            String uri = System.getProperty("bench.mongodb.uri", "mongodb://localhost:27017");
+            client = MongoClients.create(uri);
+            MongoDatabase database = client.getDatabase("bookstore_bench");
+            orderCollection = database.getCollection("orders");
+            bookCollection = database.getCollection("books_topk");
+            rollupCollection = database.getCollection("sales_by_book");
+            windowStart = Date.from(LocalDateTime.now().minusDays(30).toInstant(ZoneOffset.UTC));
+
+            if (orderCollection.countDocuments() != orders || bookCollection.countDocuments() != books) {
+                seed();
+            }
+        }
+
+        private void seed() {
+            orderCollection.drop();
+            bookCollection.drop();
+            rollupCollection.drop();
+            Random random = new Random(7);
+
+            List<Document> batch = new ArrayList<>();
+            for (int i = 0; i < books; i++) {
+                batch.add(new Document("_id", "book-" + i)
+                        .append("title", "Title " + i)
+                        .append("author", "Author " + (i % 5000)));
+                if (batch.size() == 10_000) {
+                    bookCollection.insertMany(batch);
+                    batch.clear();
+                }
+            }
+            if (!batch.isEmpty()) {
+                bookCollection.insertMany(batch);
+                batch.clear();
+            }
+
+            // Skewed popularity so a small head of books dominates, like real sales
+            Map<String, double[]> rollup = new HashMap<>();
+            LocalDateTime now = LocalDateTime.now();
+            for (int i = 0; i < orders; i++) {
+                List<Document> items = new ArrayList<>();
+                int lines = 1 + random.nextInt(3);
+                double total = 0;
+                for (int j = 0; j < lines; j++) {
+                    int book = (int) (books * Math.pow(random.nextDouble(), 3));
+                    int quantity = 1 + random.nextInt(3);
+                    double price = 5 + (book % 40);
+                    items.add(new Document("book_id", "book-" + book)
+                            .append("title", "Title " + book)
+                            .append("price", price)
+                            .append("quantity", quantity));
+                    total += price * quantity;
+                    double[] totals = rollup.computeIfAbsent("book-" + book, id -> new double[3]);
+                    totals[0] += quantity;
+                    totals[1] += price * quantity;
+                    totals[2] = price;
+                }
+                LocalDateTime orderDate = now.minusMinutes(random.nextInt(365 * 24 * 60));
+                batch.add(new Document("userId", "user-" + random.nextInt(50_000))
+                        .append("items", items)
+                        .append("totalAmount", total)
+                        .append("status", "DELIVERED")
+                        .append("orderDate", Date.from(orderDate.toInstant(ZoneOffset.UTC))));
+                if (batch.size() == 10_000) {
+                    orderCollection.insertMany(batch);
+                    batch.clear();
+                }
+            }
+            if (!batch.isEmpty()) {
+                orderCollection.insertMany(batch);
+                batch.clear();
+            }
+            orderCollection.createIndex(Indexes.ascending("orderDate"));
+
+            for (Map.Entry<String, double[]> entry : rollup.entrySet()) {
+                double[] totals = entry.getValue();
+                batch.add(new Document("_id", entry.getKey())
+                        .append("title", "Title " + entry.getKey().substring(5))
+                        .append("price", totals[2])
+                        .append("quantity", (int) totals[0])
+                        .append("revenue", totals[1]));
+                if (batch.size() == 10_000) {
+                    rollupCollection.insertMany(batch);
+                    batch.clear();
+                }
+            }
+            if (!batch.isEmpty()) {
+                rollupCollection.insertMany(batch);
+            }
+            rollupCollection.createIndex(Indexes.descending("quantity"));
+        }
+
+        @TearDown(Level.Trial)
+        public void tearDown() {
+            client.close();
+        }
+    }
+
+    @Benchmark
+    public List<Document> fullScanWithPerBookLookup(Sales sales) {
+        Map<String, int[]> quantities = new HashMap<>();
+        for (Document order : sales.orderCollection.find()) {
+            for (Document item : order.getList("items", Document.class)) {
+                quantities.computeIfAbsent(item.getString("book_id"), id -> new int[1])[0] += item.getInteger("quantity");
+            }
+        }
+
+        List<Document> ranked = new ArrayList<>();
+        for (Map.Entry<String, int[]> entry : quantities.entrySet()) {
+            Document book = sales.bookCollection.find(Filters.eq("_id", entry.getKey())).first();
+            ranked.add(new Document("_id", entry.getKey())
+                    .append("quantity", entry.getValue()[0])
+                    .append("author", book == null ? null : book.getString("author")));
+        }
+        ranked.sort((a, b) -> Integer.compare(b.getInteger("quantity"), a.getInteger("quantity")));
+        return ranked.subList(0, Math.min(TOP_K, ranked.size()));
+    }
+
+    @Benchmark
+    public List<Document> aggregationPushdown(Sales sales) {
+        List<Document> top = sales.orderCollection.aggregate(List.of(
+                Aggregates.unwind("$items"),
+                Aggregates.group("$items.book_id", Accumulators.sum("quantity", "$items.quantity")),
+                Aggregates.sort(Sorts.orderBy(Sorts.descending("quantity"), Sorts.ascending("_id"))),
+                Aggregates.limit(TOP_K)))
+                .allowDiskUse(true)
+                .into(new ArrayList<>());
+        return withAuthors(sales, top);
+    }
+
+    @Benchmark
+    public List<Document> aggregationPushdownLast30Days(Sales sales) {
+        List<Document> top = sales.orderCollection.aggregate(List.of(
+                Aggregates.match(Filters.gte("orderDate", sales.windowStart)),
+                Aggregates.unwind("$items"),
+                Aggregates.group("$items.book_id", Accumulators.sum("quantity", "$items.quantity")),
+                Aggregates.sort(Sorts.orderBy(Sorts.descending("quantity"), Sorts.ascending("_id"))),
+                Aggregates.limit(TOP_K)))
+                .allowDiskUse(true)
+                .into(new ArrayList<>());
+        return withAuthors(sales, top);
+    }
+
+    @Benchmark
+    public List<Document> rollupRead(Sales sales) {
+        List<Document> top = sales.rollupCollection.find()
+                .sort(Sorts.descending("quantity"))
+                .limit(TOP_K)
+                .into(new ArrayList<>());
+        return withAuthors(sales, top);
+    }
+
+    private static List<Document> withAuthors(Sales sales, List<Document> top) {
+        List<String> ids = new ArrayList<>();
+        for (Document row : top) {
+            ids.add(row.getString("_id"));
+        }
+        Map<String, String> authors = new HashMap<>();
+        for (Document book : sales.bookCollection.find(Filters.in("_id", ids))) {
+            authors.put(book.getString("_id"), book.getString("author"));
+        }
+        for (Document row : top) {
+            row.append("author", authors.get(row.getString("_id")));
+        }
+        return top;
+    }
+}
@@ -0,0 +1,106 @@
+package com.bookstore.backend.config;
+
+import com.bookstore.backend.service.BookCache;
+import com.mongodb.client.model.changestream.ChangeStreamDocument;
+import com.mongodb.client.model.changestream.OperationType;
+import jakarta.annotation.PreDestroy;
+import org.bson.BsonDocument;
+import org.bson.BsonValue;
+import org.bson.Document;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.data.mongodb.core.MongoTemplate;
+import org.springframework.data.mongodb.core.messaging.ChangeStreamRequest;
+import org.springframework.data.mongodb.core.messaging.DefaultMessageListenerContainer;
+import org.springframework.data.mongodb.core.messaging.MessageListener;
+import org.springframework.data.mongodb.core.messaging.MessageListenerContainer;
+import org.springframework.stereotype.Component;
+
+// Invalidates BookCache entries from the books change stream so writes on any node are seen here.
+// Change streams need a replica set; on a standalone server this logs a warning and the cache
+// falls back to local write invalidation only.
+@Component
+public class BookChangeStreamListener {
+
+    private static final Logger logger = LoggerFactory.getLogger(BookChangeStreamListener.class);
+
+    @Autowired
+    private MongoTemplate mongoTemplate;
+
+    @Autowired
+    private BookCache bookCache;
+
+    @Value("${books.cache.change-stream.enabled:true}")
+    private boolean enabled;
+
+    private MessageListenerContainer container;
+
+    @EventListener(ApplicationReadyEvent.class)
+    public void start() {
+        if (!enabled) {
+            return;
+        }
+
+        container = new DefaultMessageListenerContainer(mongoTemplate);
+        MessageListener<ChangeStreamDocument<Document>, Document> listener = message -> onChange(message.getRaw());
+        ChangeStreamRequest<Document> request = ChangeStreamRequest.builder(listener)
+                .collection("books")
+                .build();
+
+        container.register(request, Document.class, error -> {
+            logger.warn("Book change stream unavailable, cache relies on local invalidation: {}", error.getMessage());
+            // Entries may have gone stale while the stream was down
+            bookCache.invalidateAll();
+        });
+        container.start();
+    }
+
+    // Entry point for change events; also used directly as a stand-in event source in tests
+    public void onChange(ChangeStreamDocument<Document> event) {
+        if (event == null || event.getOperationType() == null) {
+            return;
+        }
+
+        OperationType operation = event.getOperationType();
+        if (operation == OperationType.DROP || operation == OperationType.RENAME
+                || operation == OperationType.DROP_DATABASE || operation == OperationType.INVALIDATE) {
+            bookCache.invalidateAll();
+            return;
+        }
+
+        String bookId = extractId(event.getDocumentKey());
+        if (bookId != null) {
+            bookCache.invalidate(bookId);
+        } else {
+            bookCache.invalidateAll();
+        }
+    }
+
+    @PreDestroy
+    public void stop() {
+        if (container != null) {
+            container.stop();
+        }
+    }
+
+    private String extractId(BsonDocument documentKey) {
+        if (documentKey == null) {
+            return null;
+        }
+        BsonValue id = documentKey.get("_id");
+        if (id == null) {
+            return null;
+        }
+        if (id.isObjectId()) {
+            return id.asObjectId().getValue().toHexString();
+        }
+        if (id.isString()) {
+            return id.asString().getValue();
+        }
+        return null;
+    }
+}
@@ -41,6 +41,7 @@ public class SecurityConfig {
                                 "/api/users/test-db", "/api/users/test-write")
                         .permitAll()
                         .requestMatchers("/", "/error", "/actuator/health").permitAll()
+                        .requestMatchers(HttpMethod.GET, "/api/books/cache/**").hasRole("ADMIN")
                                                 .requestMatchers(HttpMethod.GET, "/api/books/**").permitAll()
                         .requestMatchers(HttpMethod.GET, "/api/articles/**").permitAll()
                         .requestMatchers(HttpMethod.GET, "/api/faqs/**").permitAll()
@@ -1,6 +1,10 @@
 package com.bookstore.backend.controller;
 
+import com.bookstore.backend.dto.BookCacheStats;
+import com.bookstore.backend.dto.BookSummary;
+import com.bookstore.backend.dto.CursorPage;
 import com.bookstore.backend.model.Book;
+import com.bookstore.backend.service.BookCache;
 import com.bookstore.backend.service.BookService;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.http.HttpStatus;
@@ -15,6 +19,9 @@ public class BookController {
     @Autowired
     private BookService bookService;
 
+    @Autowired
+    private BookCache bookCache;
+
     // 1. CREATE
     @PostMapping
     public ResponseEntity<Book> addBook(@RequestBody Book book) {
@@ -32,6 +39,33 @@ public class BookController {
         return bookService.findAll();
     }
 
+    // 2b. READ PAGE (cursor pagination, summary projection)
+    // GET: /api/books/catalog?sort=price&direction=asc&size=24&cursor=...
+    @GetMapping("/catalog")
+    public ResponseEntity<?> getCatalogPage(
+            @RequestParam(defaultValue = "title") String sort,
+            @RequestParam(required = false) String direction,
+            @RequestParam(required = false) String cursor,
+            @RequestParam(defaultValue = "24") int size) {
+        try {
+            CursorPage<BookSummary> page = bookService.findPage(sort, direction, cursor, size);
+            return ResponseEntity.ok(page);
+        } catch (IllegalArgumentException e) {
+            return ResponseEntity.badRequest()
+                    .body(java.util.Map.of("message", e.getMessage()));
+        }
+    }
+
+    // 2c. SEARCH
+    // GET: /api/books/search?q=dune herb&limit=20
+    @GetMapping("/search")
+    public ResponseEntity<List<BookSummary>> searchBooks(
+            @RequestParam("q") String query,
+            @RequestParam(defaultValue = "20") int limit,
+            @RequestParam(defaultValue = "true") boolean prefix) {
+        return ResponseEntity.ok(bookService.search(query, limit, prefix));
+    }
+
     // 3. READ ONE
     @GetMapping("/{id}")
     public ResponseEntity<Book> getBookById(@PathVariable String id) {
@@ -77,6 +111,12 @@ public class BookController {
         return ResponseEntity.ok(trendingBooks);
     }
 
+    // Cache statistics (Admin only)
+    @GetMapping("/cache/stats")
+    public ResponseEntity<BookCacheStats> getCacheStats() {
+        return ResponseEntity.ok(bookCache.getStats());
+    }
+
     // Get new arrivals
     @GetMapping("/new-arrivals")
     public ResponseEntity<List<Book>> getNewArrivals(@RequestParam(defaultValue = "10") int limit) {
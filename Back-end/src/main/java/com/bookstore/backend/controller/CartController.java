@@ -1,6 +1,7 @@
 package com.bookstore.backend.controller;
 
 import com.bookstore.backend.model.Cart;
+import com.bookstore.backend.model.Order;
 import com.bookstore.backend.service.CartService;
 import com.bookstore.backend.util.JwtUtil;
 import org.springframework.beans.factory.annotation.Autowired;
@@ -160,6 +161,47 @@ public class CartController {
         }
     }
 
+    // Refresh every line against the current catalog and report price and stock changes
+    @GetMapping("/validate")
+    public ResponseEntity<?> validateCart(@RequestHeader("Authorization") String authHeader) {
+        try {
+            String userId = extractUserIdFromToken(authHeader);
+            return ResponseEntity.ok(cartService.validateCart(userId));
+        } catch (IllegalArgumentException e) {
+            return ResponseEntity.status(HttpStatus.UNAUTHORIZED)
+                    .body(Map.of("message", e.getMessage()));
+        } catch (Exception e) {
+            return ResponseEntity.status(HttpStatus.INTERNAL_SERVER_ERROR)
+                    .body(Map.of("message", "Error validating cart: " + e.getMessage()));
+        }
+    }
+
+    // Place an order for the whole cart at current prices, then empty the cart
+    // POST: /api/cart/checkout  {"shippingAddress": "...", "phoneNumber": "...", "paymentId": "..."}
+    @PostMapping("/checkout")
+    public ResponseEntity<?> checkout(
+            @RequestHeader("Authorization") String authHeader,
+            @RequestBody Map<String, String> request) {
+        String userId;
+        try {
+            userId = extractUserIdFromToken(authHeader);
+        } catch (IllegalArgumentException e) {
+            return ResponseEntity.status(HttpStatus.UNAUTHORIZED)
+                    .body(Map.of("message", e.getMessage()));
+        }
+        try {
+            Order order = cartService.checkout(userId, request.get("shippingAddress"),
+                    request.get("phoneNumber"), request.get("paymentId"));
+            return new ResponseEntity<>(order, HttpStatus.CREATED);
+        } catch (IllegalArgumentException e) {
+            return ResponseEntity.badRequest()
+                    .body(Map.of("message", e.getMessage()));
+        } catch (Exception e) {
+            return ResponseEntity.status(HttpStatus.INTERNAL_SERVER_ERROR)
+                    .body(Map.of("message", "Error placing order: " + e.getMessage()));
+        }
+    }
+
     // Delete cart completely (for logout cleanup)
     @DeleteMapping("/delete")
     public ResponseEntity<?> deleteCart(@RequestHeader("Authorization") String authHeader) {
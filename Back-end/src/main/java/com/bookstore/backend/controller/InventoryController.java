@@ -1,15 +1,30 @@
 package com.bookstore.backend.controller;
 
+import com.bookstore.backend.dto.BulkStockResult;
+import com.bookstore.backend.dto.BulkStockUpdate;
+import com.bookstore.backend.dto.CursorPage;
 import com.bookstore.backend.dto.InventoryResponse;
+import com.bookstore.backend.dto.LowStockAlert;
 import com.bookstore.backend.dto.StockUpdateRequest;
 import com.bookstore.backend.model.Book;
+import com.bookstore.backend.model.ReorderSuggestion;
+import com.bookstore.backend.service.InventoryLedger;
 import com.bookstore.backend.service.InventoryService;
 import com.bookstore.backend.service.LowStockAlertService;
+import com.bookstore.backend.service.ReorderForecastService;
+import com.bookstore.backend.service.SseAlertSink;
+import com.bookstore.backend.service.StockImportService;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.format.annotation.DateTimeFormat;
+import org.springframework.http.MediaType;
 import org.springframework.http.ResponseEntity;
 import org.springframework.security.access.prepost.PreAuthorize;
 import org.springframework.web.bind.annotation.*;
+import org.springframework.web.servlet.mvc.method.annotation.SseEmitter;
 
+import java.io.IOException;
+import java.io.InputStream;
+import java.time.LocalDateTime;
 import java.util.List;
 import java.util.Map;
 import java.util.stream.Collectors;
@@ -25,16 +40,39 @@ public class InventoryController {
     @Autowired
     private LowStockAlertService lowStockAlertService;
 
-    // Get all inventory with summary
+    @Autowired
+    private SseAlertSink sseAlertSink;
+
+    @Autowired
+    private StockImportService stockImportService;
+
+    @Autowired
+    private InventoryLedger inventoryLedger;
+
+    @Autowired
+    private ReorderForecastService reorderForecastService;
+
+    // Get one page of inventory with summary
+    // GET: /api/inventory?size=50&cursor=...
     @GetMapping
-    public ResponseEntity<InventoryResponse> getAllInventory() {
-        List<Book> books = inventoryService.getAllBooks();
+    public ResponseEntity<?> getAllInventory(
+            @RequestParam(required = false) String cursor,
+            @RequestParam(defaultValue = "50") int size) {
+        CursorPage<Book> page;
+        try {
+            page = inventoryService.getInventoryPage(cursor, size);
+        } catch (IllegalArgumentException e) {
+            return ResponseEntity.badRequest()
+                    .body(java.util.Map.of("message", e.getMessage()));
+        }
         InventoryService.InventorySummary summary = inventoryService.getInventorySummary();
 
         InventoryResponse response = new InventoryResponse();
-        response.setBooks(books.stream()
+        response.setBooks(page.getItems().stream()
                 .map(this::convertToInventoryItem)
                 .collect(Collectors.toList()));
+        response.setNextCursor(page.getNextCursor());
+        response.setHasMore(page.isHasMore());
 
         InventoryResponse.InventorySummary summaryDto = new InventoryResponse.InventorySummary();
         summaryDto.setTotalBooks(summary.getTotalBooks());
@@ -47,31 +85,43 @@ public class InventoryController {
         return ResponseEntity.ok(response);
     }
 
-    // Get low stock books
+    // Get low stock books, lowest stock first (each book's minThreshold applies)
     @GetMapping("/low-stock")
-    public ResponseEntity<List<InventoryResponse.BookInventoryItem>> getLowStockBooks() {
-        List<Book> lowStockBooks = inventoryService.getLowStockBooks();
-        return ResponseEntity.ok(lowStockBooks.stream()
-                .map(this::convertToInventoryItem)
-                .collect(Collectors.toList()));
+    public ResponseEntity<?> getLowStockBooks(
+            @RequestParam(required = false) String cursor,
+            @RequestParam(defaultValue = "50") int size) {
+        try {
+            return ResponseEntity.ok(toItemPage(inventoryService.getLowStockBooks(cursor, size)));
+        } catch (IllegalArgumentException e) {
+            return ResponseEntity.badRequest()
+                    .body(java.util.Map.of("message", e.getMessage()));
+        }
     }
 
     // Get out of stock books
     @GetMapping("/out-of-stock")
-    public ResponseEntity<List<InventoryResponse.BookInventoryItem>> getOutOfStockBooks() {
-        List<Book> outOfStockBooks = inventoryService.getOutOfStockBooks();
-        return ResponseEntity.ok(outOfStockBooks.stream()
-                .map(this::convertToInventoryItem)
-                .collect(Collectors.toList()));
+    public ResponseEntity<?> getOutOfStockBooks(
+            @RequestParam(required = false) String cursor,
+            @RequestParam(defaultValue = "50") int size) {
+        try {
+            return ResponseEntity.ok(toItemPage(inventoryService.getOutOfStockBooks(cursor, size)));
+        } catch (IllegalArgumentException e) {
+            return ResponseEntity.badRequest()
+                    .body(java.util.Map.of("message", e.getMessage()));
+        }
     }
 
     // Get in stock books
     @GetMapping("/in-stock")
-    public ResponseEntity<List<InventoryResponse.BookInventoryItem>> getInStockBooks() {
-        List<Book> inStockBooks = inventoryService.getInStockBooks();
-        return ResponseEntity.ok(inStockBooks.stream()
-                .map(this::convertToInventoryItem)
-                .collect(Collectors.toList()));
+    public ResponseEntity<?> getInStockBooks(
+            @RequestParam(required = false) String cursor,
+            @RequestParam(defaultValue = "50") int size) {
+        try {
+            return ResponseEntity.ok(toItemPage(inventoryService.getInStockBooks(cursor, size)));
+        } catch (IllegalArgumentException e) {
+            return ResponseEntity.badRequest()
+                    .body(java.util.Map.of("message", e.getMessage()));
+        }
     }
 
     // Update stock quantity
@@ -84,6 +134,39 @@ public class InventoryController {
         return ResponseEntity.ok(convertToInventoryItem(updatedBook));
     }
 
+    // Update many stock quantities at once; stockStatus is recomputed per book
+    // POST: /api/inventory/stock/bulk  [{"bookId": "...", "stockQuantity": 12}, ...]
+    @PostMapping("/stock/bulk")
+    public ResponseEntity<BulkStockResult> bulkUpdateStock(@RequestBody List<BulkStockUpdate> updates) {
+        return ResponseEntity.ok(stockImportService.applyUpdates(updates));
+    }
+
+    // Streaming import: the body is read row by row and applied in batches
+    // POST: /api/inventory/stock/import?format=csv (bookId,stockQuantity) or format=ndjson
+    @PostMapping("/stock/import")
+    public ResponseEntity<?> importStock(
+            @RequestParam(required = false) String format,
+            @RequestHeader(value = "Content-Type", required = false) String contentType,
+            InputStream body) {
+        String resolved = format;
+        if (resolved == null && contentType != null) {
+            if (contentType.contains("csv")) {
+                resolved = "csv";
+            } else if (contentType.contains("ndjson")) {
+                resolved = "ndjson";
+            }
+        }
+        try {
+            return ResponseEntity.ok(stockImportService.importStock(body, resolved));
+        } catch (IllegalArgumentException e) {
+            return ResponseEntity.badRequest()
+                    .body(java.util.Map.of("message", e.getMessage()));
+        } catch (IOException e) {
+            return ResponseEntity.badRequest()
+                    .body(java.util.Map.of("message", "Could not read import body: " + e.getMessage()));
+        }
+    }
+
     // Update stock status
     @PutMapping("/status/{bookId}")
     public ResponseEntity<InventoryResponse.BookInventoryItem> updateStockStatus(
@@ -117,6 +200,18 @@ public class InventoryController {
                 .collect(Collectors.toList()));
     }
 
+    // Currently raised alerts (event-driven, see LowStockAlertService)
+    @GetMapping("/alerts/active")
+    public ResponseEntity<List<LowStockAlert>> getActiveAlerts() {
+        return ResponseEntity.ok(lowStockAlertService.getActiveAlerts());
+    }
+
+    // Live alert feed for the admin dashboard (server-sent events named "stock-alert")
+    @GetMapping(value = "/alerts/stream", produces = MediaType.TEXT_EVENT_STREAM_VALUE)
+    public SseEmitter streamAlerts() {
+        return sseAlertSink.subscribe();
+    }
+
     // Get critical low stock alerts (2 or less items)
     @GetMapping("/alerts/critical")
     public ResponseEntity<List<InventoryResponse.BookInventoryItem>> getCriticalLowStockAlerts() {
@@ -167,6 +262,80 @@ public class InventoryController {
         return ResponseEntity.ok(convertToInventoryItem(newBook));
     }
 
+    // Stock movements for a book, oldest first (defaults to the last 30 days)
+    // GET: /api/inventory/ledger/{bookId}?from=2025-01-01T00:00:00&to=...&limit=100
+    @GetMapping("/ledger/{bookId}")
+    public ResponseEntity<?> getMovements(
+            @PathVariable String bookId,
+            @RequestParam(required = false) @DateTimeFormat(iso = DateTimeFormat.ISO.DATE_TIME) LocalDateTime from,
+            @RequestParam(required = false) @DateTimeFormat(iso = DateTimeFormat.ISO.DATE_TIME) LocalDateTime to,
+            @RequestParam(defaultValue = "100") int limit) {
+        LocalDateTime end = to != null ? to : LocalDateTime.now();
+        LocalDateTime start = from != null ? from : end.minusDays(30);
+        try {
+            return ResponseEntity.ok(inventoryLedger.getMovements(bookId, start, end, Math.max(1, Math.min(limit, 1000))));
+        } catch (IllegalArgumentException e) {
+            return ResponseEntity.badRequest()
+                    .body(java.util.Map.of("message", e.getMessage()));
+        }
+    }
+
+    // Stock level of a book at a point in time, from the nearest snapshot plus the ledger
+    // GET: /api/inventory/ledger/{bookId}/stock-at?at=2025-01-01T12:00:00
+    @GetMapping("/ledger/{bookId}/stock-at")
+    public ResponseEntity<?> getStockAt(
+            @PathVariable String bookId,
+            @RequestParam @DateTimeFormat(iso = DateTimeFormat.ISO.DATE_TIME) LocalDateTime at) {
+        try {
+            return ResponseEntity.ok(inventoryLedger.getStockAt(bookId, at));
+        } catch (RuntimeException e) {
+            return ResponseEntity.status(404)
+                    .body(java.util.Map.of("message", e.getMessage()));
+        }
+    }
+
+    // Take a stock snapshot of every book now (normally done nightly)
+    @PostMapping("/ledger/snapshots")
+    public ResponseEntity<?> takeSnapshots() {
+        return ResponseEntity.ok(java.util.Map.of("snapshotted", inventoryLedger.takeSnapshots()));
+    }
+
+    // Reorder suggestions from the last forecast run, fewest days of cover first
+    // GET: /api/inventory/forecast?cursor=...&size=50
+    @GetMapping("/forecast")
+    public ResponseEntity<?> getReorderSuggestions(
+            @RequestParam(required = false) String cursor,
+            @RequestParam(defaultValue = "50") int size) {
+        try {
+            return ResponseEntity.ok(reorderForecastService.getSuggestions(cursor, size));
+        } catch (IllegalArgumentException e) {
+            return ResponseEntity.badRequest()
+                    .body(java.util.Map.of("message", e.getMessage()));
+        }
+    }
+
+    // Suggestion for one book; 404 when the last run found no need to reorder it
+    @GetMapping("/forecast/{bookId}")
+    public ResponseEntity<?> getReorderSuggestion(@PathVariable String bookId) {
+        ReorderSuggestion suggestion = reorderForecastService.getSuggestion(bookId);
+        if (suggestion == null) {
+            return ResponseEntity.status(404)
+                    .body(java.util.Map.of("message", "No reorder suggestion for this book"));
+        }
+        return ResponseEntity.ok(suggestion);
+    }
+
+    // Recompute the forecast now (normally done nightly)
+    @PostMapping("/forecast/run")
+    public ResponseEntity<?> runForecast() {
+        try {
+            return ResponseEntity.ok(reorderForecastService.runForecast());
+        } catch (IllegalArgumentException e) {
+            return ResponseEntity.badRequest()
+                    .body(java.util.Map.of("message", e.getMessage()));
+        }
+    }
+
     // Delete inventory item
     @DeleteMapping("/{bookId}")
     public ResponseEntity<Void> deleteInventoryItem(@PathVariable String bookId) {
@@ -174,6 +343,12 @@ public class InventoryController {
         return ResponseEntity.ok().build();
     }
 
+    private CursorPage<InventoryResponse.BookInventoryItem> toItemPage(CursorPage<Book> page) {
+        return new CursorPage<>(page.getItems().stream()
+                .map(this::convertToInventoryItem)
+                .collect(Collectors.toList()), page.getNextCursor(), page.isHasMore());
+    }
+
     private InventoryResponse.BookInventoryItem convertToInventoryItem(Book book) {
         InventoryResponse.BookInventoryItem item = new InventoryResponse.BookInventoryItem();
         item.setBookId(book.getBook_id());
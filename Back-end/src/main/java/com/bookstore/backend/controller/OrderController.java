@@ -1,5 +1,6 @@
 package com.bookstore.backend.controller;
 
+import com.bookstore.backend.dto.OrderMetricsDTO;
 import com.bookstore.backend.model.Order;
 import com.bookstore.backend.service.OrderService;
 import org.springframework.beans.factory.annotation.Autowired;
@@ -60,7 +61,13 @@ public class OrderController {
         }
     }
 
-    // 5. GET ORDER BY ID
+    // 5. ORDER PLACEMENT METRICS (Admin only)
+    @GetMapping("/metrics")
+    public ResponseEntity<OrderMetricsDTO> getOrderMetrics() {
+        return ResponseEntity.ok(orderService.getMetrics());
+    }
+
+    // 6. GET ORDER BY ID
     @GetMapping("/{id}")
     public ResponseEntity<Order> getOrderById(@PathVariable String id) {
         return orderService.findById(id)
@@ -2,12 +2,20 @@ package com.bookstore.backend.controller;
 
 import com.bookstore.backend.dto.*;
 import com.bookstore.backend.service.ReportingService;
+import com.bookstore.backend.service.SalesRollupService;
 import com.bookstore.backend.util.JwtUtil;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.core.task.AsyncTaskExecutor;
+import org.springframework.format.annotation.DateTimeFormat;
 import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
 import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.*;
+import org.springframework.web.servlet.mvc.method.annotation.ResponseBodyEmitter;
 
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.time.LocalDate;
 import java.util.List;
 
 @RestController
@@ -17,9 +25,15 @@ public class ReportingController {
     @Autowired
     private ReportingService reportingService;
 
+    @Autowired
+    private SalesRollupService salesRollupService;
+
     @Autowired
     private JwtUtil jwtUtil;
 
+    @Autowired
+    private AsyncTaskExecutor applicationTaskExecutor;
+
     private boolean isAdmin(String authHeader) {
         if (authHeader == null || !authHeader.startsWith("Bearer ")) {
             return false;
@@ -35,14 +49,20 @@ public class ReportingController {
 
     // 1. GET TOTAL SALES REPORT
     @GetMapping("/sales")
-    public ResponseEntity<?> getTotalSalesReport(@RequestHeader("Authorization") String authHeader) {
+    public ResponseEntity<?> getTotalSalesReport(
+            @RequestHeader("Authorization") String authHeader,
+            @RequestParam(required = false) @DateTimeFormat(iso = DateTimeFormat.ISO.DATE) LocalDate from,
+            @RequestParam(required = false) @DateTimeFormat(iso = DateTimeFormat.ISO.DATE) LocalDate to) {
         if (!isAdmin(authHeader)) {
             return ResponseEntity.status(HttpStatus.FORBIDDEN)
                     .body(java.util.Map.of("message", "Access denied. Admin only."));
         }
         try {
-            SalesReportDTO report = reportingService.getTotalSalesReport();
+            SalesReportDTO report = reportingService.getTotalSalesReport(from, to);
             return ResponseEntity.ok(report);
+        } catch (IllegalArgumentException e) {
+            return ResponseEntity.badRequest()
+                    .body(java.util.Map.of("message", e.getMessage()));
         } catch (Exception e) {
             return ResponseEntity.status(HttpStatus.INTERNAL_SERVER_ERROR)
                     .body(java.util.Map.of("message", "Error generating sales report: " + e.getMessage()));
@@ -53,14 +73,19 @@ public class ReportingController {
     @GetMapping("/top-books")
     public ResponseEntity<?> getTopSellingBooks(
             @RequestHeader("Authorization") String authHeader,
-            @RequestParam(defaultValue = "10") int limit) {
+            @RequestParam(defaultValue = "10") int limit,
+            @RequestParam(required = false) @DateTimeFormat(iso = DateTimeFormat.ISO.DATE) LocalDate from,
+            @RequestParam(required = false) @DateTimeFormat(iso = DateTimeFormat.ISO.DATE) LocalDate to) {
         if (!isAdmin(authHeader)) {
             return ResponseEntity.status(HttpStatus.FORBIDDEN)
                     .body(java.util.Map.of("message", "Access denied. Admin only."));
         }
         try {
-            List<TopSellingBookDTO> topBooks = reportingService.getTopSellingBooks(limit);
+            List<TopSellingBookDTO> topBooks = reportingService.getTopSellingBooks(limit, from, to);
             return ResponseEntity.ok(topBooks);
+        } catch (IllegalArgumentException e) {
+            return ResponseEntity.badRequest()
+                    .body(java.util.Map.of("message", e.getMessage()));
         } catch (Exception e) {
             return ResponseEntity.status(HttpStatus.INTERNAL_SERVER_ERROR)
                     .body(java.util.Map.of("message", "Error generating top books report: " + e.getMessage()));
@@ -83,6 +108,29 @@ public class ReportingController {
         }
     }
 
+    // 3b. GET REVENUE TIME SERIES (day / week / month buckets)
+    @GetMapping("/revenue")
+    public ResponseEntity<?> getRevenueSeries(
+            @RequestHeader("Authorization") String authHeader,
+            @RequestParam(required = false) @DateTimeFormat(iso = DateTimeFormat.ISO.DATE) LocalDate from,
+            @RequestParam(required = false) @DateTimeFormat(iso = DateTimeFormat.ISO.DATE) LocalDate to,
+            @RequestParam(defaultValue = "day") String granularity) {
+        if (!isAdmin(authHeader)) {
+            return ResponseEntity.status(HttpStatus.FORBIDDEN)
+                    .body(java.util.Map.of("message", "Access denied. Admin only."));
+        }
+        try {
+            List<RevenueBucketDTO> series = reportingService.getRevenueSeries(from, to, granularity);
+            return ResponseEntity.ok(series);
+        } catch (IllegalArgumentException e) {
+            return ResponseEntity.badRequest()
+                    .body(java.util.Map.of("message", e.getMessage()));
+        } catch (Exception e) {
+            return ResponseEntity.status(HttpStatus.INTERNAL_SERVER_ERROR)
+                    .body(java.util.Map.of("message", "Error generating revenue report: " + e.getMessage()));
+        }
+    }
+
     // 4. GET USER ACTIVITY LOGS
     @GetMapping("/user-activity")
     public ResponseEntity<?> getUserActivityLogs(@RequestHeader("Authorization") String authHeader) {
@@ -98,7 +146,88 @@ public class ReportingController {
                     .body(java.util.Map.of("message", "Error generating user activity report: " + e.getMessage()));
         }
     }
-}
 
+    // 4b. GET USER ACTIVITY, ONE PAGE AT A TIME
+    // GET: /api/reports/user-activity/page?size=50&cursor=...
+    @GetMapping("/user-activity/page")
+    public ResponseEntity<?> getUserActivityPage(
+            @RequestHeader("Authorization") String authHeader,
+            @RequestParam(required = false) String cursor,
+            @RequestParam(defaultValue = "50") int size) {
+        if (!isAdmin(authHeader)) {
+            return ResponseEntity.status(HttpStatus.FORBIDDEN)
+                    .body(java.util.Map.of("message", "Access denied. Admin only."));
+        }
+        try {
+            CursorPage<UserActivityDTO> page = reportingService.getUserActivityPage(cursor, size);
+            return ResponseEntity.ok(page);
+        } catch (IllegalArgumentException e) {
+            return ResponseEntity.badRequest()
+                    .body(java.util.Map.of("message", e.getMessage()));
+        } catch (Exception e) {
+            return ResponseEntity.status(HttpStatus.INTERNAL_SERVER_ERROR)
+                    .body(java.util.Map.of("message", "Error generating user activity report: " + e.getMessage()));
+        }
+    }
+
+    // 4c. STREAM USER ACTIVITY AS NDJSON (one JSON object per line, written as rows are read)
+    @GetMapping(value = "/user-activity/stream", produces = MediaType.APPLICATION_NDJSON_VALUE)
+    public ResponseEntity<?> streamUserActivity(@RequestHeader("Authorization") String authHeader) {
+        if (!isAdmin(authHeader)) {
+            return ResponseEntity.status(HttpStatus.FORBIDDEN)
+                    .contentType(MediaType.APPLICATION_JSON)
+                    .body(java.util.Map.of("message", "Access denied. Admin only."));
+        }
 
+        ResponseBodyEmitter emitter = new ResponseBodyEmitter(0L);
+        applicationTaskExecutor.execute(() -> {
+            try {
+                reportingService.streamUserActivity(row -> {
+                    try {
+                        emitter.send(row, MediaType.APPLICATION_JSON);
+                        emitter.send("\n", MediaType.TEXT_PLAIN);
+                    } catch (IOException e) {
+                        throw new UncheckedIOException(e);
+                    }
+                });
+                emitter.complete();
+            } catch (Exception e) {
+                // Headers are already sent; cut the stream so the client sees an incomplete body
+                emitter.completeWithError(e);
+            }
+        });
+        return ResponseEntity.ok().contentType(MediaType.APPLICATION_NDJSON).body(emitter);
+    }
 
+    // 5. REBUILD SALES ROLLUPS FROM ORDERS
+    @PostMapping("/rollups/rebuild")
+    public ResponseEntity<?> rebuildRollups(@RequestHeader("Authorization") String authHeader) {
+        if (!isAdmin(authHeader)) {
+            return ResponseEntity.status(HttpStatus.FORBIDDEN)
+                    .body(java.util.Map.of("message", "Access denied. Admin only."));
+        }
+        try {
+            long orders = salesRollupService.rebuild();
+            return ResponseEntity.ok(java.util.Map.of("message", "Sales rollups rebuilt", "ordersScanned", orders));
+        } catch (Exception e) {
+            return ResponseEntity.status(HttpStatus.INTERNAL_SERVER_ERROR)
+                    .body(java.util.Map.of("message", "Error rebuilding sales rollups: " + e.getMessage()));
+        }
+    }
+
+    // 6. CHECK SALES ROLLUPS AGAINST ORDERS
+    @GetMapping("/rollups/check")
+    public ResponseEntity<?> checkRollups(@RequestHeader("Authorization") String authHeader) {
+        if (!isAdmin(authHeader)) {
+            return ResponseEntity.status(HttpStatus.FORBIDDEN)
+                    .body(java.util.Map.of("message", "Access denied. Admin only."));
+        }
+        try {
+            RollupCheckResult result = salesRollupService.checkConsistency();
+            return ResponseEntity.ok(result);
+        } catch (Exception e) {
+            return ResponseEntity.status(HttpStatus.INTERNAL_SERVER_ERROR)
+                    .body(java.util.Map.of("message", "Error checking sales rollups: " + e.getMessage()));
+        }
+    }
+}
@@ -1,5 +1,6 @@
 package com.bookstore.backend.controller;
 
+import com.bookstore.backend.dto.CursorPage;
 import com.bookstore.backend.model.Review;
 import com.bookstore.backend.service.ReviewService;
 import com.bookstore.backend.util.JwtUtil;
@@ -72,11 +73,21 @@ public class ReviewController {
         }
     }
 
-    // 2. GET REVIEWS BY BOOK
+    // 2. GET REVIEWS BY BOOK (cursor pagination)
+    // GET: /api/reviews/book/{bookId}?sort=newest|highest|lowest&size=20&cursor=...
     @GetMapping("/book/{bookId}")
-    public ResponseEntity<List<Review>> getReviewsByBook(@PathVariable String bookId) {
-        List<Review> reviews = reviewService.getReviewsByBook(bookId);
-        return ResponseEntity.ok(reviews);
+    public ResponseEntity<?> getReviewsByBook(
+            @PathVariable String bookId,
+            @RequestParam(defaultValue = "newest") String sort,
+            @RequestParam(required = false) String cursor,
+            @RequestParam(defaultValue = "20") int size) {
+        try {
+            CursorPage<Review> page = reviewService.getReviewsByBook(bookId, sort, cursor, size);
+            return ResponseEntity.ok(page);
+        } catch (IllegalArgumentException e) {
+            return ResponseEntity.badRequest()
+                    .body(java.util.Map.of("message", e.getMessage()));
+        }
     }
 
     // 3. GET REVIEW BY ID
@@ -135,18 +146,49 @@ public class ReviewController {
         }
     }
 
-    // 6. GET ALL REVIEWS (Admin only)
+    // 6. GET ALL REVIEWS (Admin only, cursor pagination, newest first)
+    // GET: /api/reviews/all?bookId=&userId=&rating=&deleted=false&size=50&cursor=...
     @GetMapping("/all")
-    public ResponseEntity<?> getAllReviews(@RequestHeader("Authorization") String authHeader) {
+    public ResponseEntity<?> getAllReviews(
+            @RequestHeader("Authorization") String authHeader,
+            @RequestParam(required = false) String bookId,
+            @RequestParam(required = false) String userId,
+            @RequestParam(required = false) Integer rating,
+            @RequestParam(defaultValue = "false") boolean deleted,
+            @RequestParam(required = false) String cursor,
+            @RequestParam(defaultValue = "50") int size) {
         if (!isAdmin(authHeader)) {
             return ResponseEntity.status(HttpStatus.FORBIDDEN)
                     .body(java.util.Map.of("message", "Access denied. Admin only."));
         }
 
-        List<Review> reviews = reviewService.getAllReviews();
-        return ResponseEntity.ok(reviews);
+        try {
+            return ResponseEntity.ok(reviewService.getAllReviews(bookId, userId, rating, deleted, cursor, size));
+        } catch (IllegalArgumentException e) {
+            return ResponseEntity.badRequest()
+                    .body(java.util.Map.of("message", e.getMessage()));
+        }
     }
-}
 
+    // 7. REPAIR BOOK RATINGS (Admin only): recompute every book's rating from its reviews
+    @PostMapping("/ratings/repair")
+    public ResponseEntity<?> repairRatings(@RequestHeader("Authorization") String authHeader) {
+        if (!isAdmin(authHeader)) {
+            return ResponseEntity.status(HttpStatus.FORBIDDEN)
+                    .body(java.util.Map.of("message", "Access denied. Admin only."));
+        }
 
+        return ResponseEntity.ok(reviewService.repairRatings());
+    }
 
+    // 8. RATING SUMMARIES FOR A PAGE OF BOOKS (?bookIds=a,b,c; up to 200)
+    @GetMapping("/summary")
+    public ResponseEntity<?> getRatingSummaries(@RequestParam List<String> bookIds) {
+        try {
+            return ResponseEntity.ok(reviewService.getRatingSummaries(bookIds));
+        } catch (IllegalArgumentException e) {
+            return ResponseEntity.badRequest()
+                    .body(java.util.Map.of("message", e.getMessage()));
+        }
+    }
+}
@@ -0,0 +1,16 @@
+package com.bookstore.backend.dto;
+
+import lombok.Data;
+
+@Data
+public class BookCacheStats {
+    private String policy; // "tinylfu" or "lru"
+    private long hits;
+    private long misses;
+    private double hitRate;
+    private long evictions;
+    private long invalidations;
+    private long entries;
+    private long weightBytes;
+    private long maxWeightBytes;
+}
@@ -0,0 +1,33 @@
+package com.bookstore.backend.dto;
+
+import com.bookstore.backend.model.Book;
+import lombok.Data;
+import java.time.LocalDate;
+
+// Lightweight catalog projection (no description) used by paginated listings
+@Data
+public class BookSummary {
+    private String bookId;
+    private String title;
+    private String author;
+    private double price;
+    private String genre;
+    private String stockStatus;
+    private String coverImageUrl;
+    private LocalDate publishedDate;
+    private Double rating;
+
+    public static BookSummary from(Book book) {
+        BookSummary summary = new BookSummary();
+        summary.setBookId(book.getBook_id());
+        summary.setTitle(book.getTitle());
+        summary.setAuthor(book.getAuthor());
+        summary.setPrice(book.getPrice());
+        summary.setGenre(book.getGenre());
+        summary.setStockStatus(book.getStockStatus());
+        summary.setCoverImageUrl(book.getCoverImageUrl());
+        summary.setPublishedDate(book.getPublishedDate());
+        summary.setRating(book.getRating());
+        return summary;
+    }
+}
@@ -0,0 +1,25 @@
+package com.bookstore.backend.dto;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+import java.util.ArrayList;
+import java.util.List;
+
+@Data
+public class BulkStockResult {
+    private long received;
+    private long updated;
+    private long failed;
+    private long elapsedMs;
+    private List<RowFailure> failures = new ArrayList<>(); // Capped; `failed` has the full count
+
+    @Data
+    @NoArgsConstructor
+    @AllArgsConstructor
+    public static class RowFailure {
+        private long row; // 1-based position in the request (data rows, header excluded)
+        private String bookId;
+        private String message;
+    }
+}
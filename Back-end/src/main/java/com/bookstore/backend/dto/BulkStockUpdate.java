@@ -0,0 +1,9 @@
+package com.bookstore.backend.dto;
+
+import lombok.Data;
+
+@Data
+public class BulkStockUpdate {
+    private String bookId;
+    private Integer stockQuantity;
+}
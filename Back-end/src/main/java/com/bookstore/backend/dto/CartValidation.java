@@ -0,0 +1,26 @@
+package com.bookstore.backend.dto;
+
+import com.bookstore.backend.model.Cart;
+import lombok.Data;
+import java.util.ArrayList;
+import java.util.List;
+
+@Data
+public class CartValidation {
+    private Cart cart; // Lines refreshed to the current title, price and cover
+    private boolean valid; // Every line is still available in the requested quantity
+    private double previousTotal; // At the prices captured when the lines were added
+    private double total; // At current prices
+    private List<LineChange> changes = new ArrayList<>(); // Only lines whose price or availability changed
+
+    @Data
+    public static class LineChange {
+        private String bookId;
+        private String title;
+        private int quantity;
+        private double previousPrice;
+        private double currentPrice;
+        private int availableStock;
+        private String problem; // null, INSUFFICIENT_STOCK or UNAVAILABLE (book removed)
+    }
+}
@@ -0,0 +1,11 @@
+package com.bookstore.backend.dto;
+
+import lombok.Data;
+
+@Data
+public class ForecastRunResult {
+    private long booksScanned;
+    private long salesRows; // (book, day) pairs read from the order window
+    private long suggestions;
+    private long elapsedMs;
+}
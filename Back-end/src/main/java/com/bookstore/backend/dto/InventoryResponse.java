@@ -7,6 +7,8 @@ import java.util.List;
 public class InventoryResponse {
     private List<BookInventoryItem> books;
     private InventorySummary summary;
+    private String nextCursor; // Pass back as ?cursor= for the next page; null on the last page
+    private boolean hasMore;
 
     @Data
     public static class BookInventoryItem {
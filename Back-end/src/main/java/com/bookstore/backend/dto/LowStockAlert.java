@@ -0,0 +1,16 @@
+package com.bookstore.backend.dto;
+
+import lombok.Data;
+import java.time.LocalDateTime;
+
+@Data
+public class LowStockAlert {
+    private String bookId;
+    private String title;
+    private String author;
+    private int stockQuantity;
+    private int threshold;
+    private String severity; // "LOW", "CRITICAL", "OUT_OF_STOCK" or "RESOLVED"
+    private boolean acknowledged;
+    private LocalDateTime raisedAt;
+}
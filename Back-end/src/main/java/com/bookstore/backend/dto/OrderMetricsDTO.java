@@ -0,0 +1,12 @@
+package com.bookstore.backend.dto;
+
+import lombok.Data;
+
+@Data
+public class OrderMetricsDTO {
+    private long placedOrders;
+    private long failedOrders;
+    private long totalRoundTrips; // MongoDB round trips made by placeOrder
+    private double averageRoundTrips;
+    private int maxRoundTrips;
+}
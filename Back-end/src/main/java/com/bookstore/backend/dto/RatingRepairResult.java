@@ -0,0 +1,10 @@
+package com.bookstore.backend.dto;
+
+import lombok.Data;
+
+@Data
+public class RatingRepairResult {
+    private long booksRated; // Books with at least one review, rewritten from the aggregation
+    private long booksReset; // Books left with a rating but no reviews
+    private long elapsedMs;
+}
@@ -0,0 +1,11 @@
+package com.bookstore.backend.dto;
+
+import lombok.Data;
+
+@Data
+public class RatingSummary {
+    private String bookId;
+    private Double average; // null without reviews
+    private long count;
+    private int[] histogram; // Reviews per star, index 0 = 1 star
+}
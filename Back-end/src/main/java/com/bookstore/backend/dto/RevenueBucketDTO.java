@@ -0,0 +1,13 @@
+package com.bookstore.backend.dto;
+
+import lombok.Data;
+import java.time.LocalDate;
+
+@Data
+public class RevenueBucketDTO {
+    private String period; // "2024-03-15", "2024-W11" or "2024-03"
+    private LocalDate start;
+    private double revenue;
+    private int orderCount;
+    private int itemsSold;
+}
@@ -0,0 +1,12 @@
+package com.bookstore.backend.dto;
+
+import lombok.Data;
+import java.util.ArrayList;
+import java.util.List;
+
+@Data
+public class RollupCheckResult {
+    private boolean consistent;
+    private long ordersScanned;
+    private List<String> mismatches = new ArrayList<>(); // Capped; one line per differing rollup row
+}
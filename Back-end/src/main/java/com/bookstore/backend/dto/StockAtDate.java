@@ -0,0 +1,13 @@
+package com.bookstore.backend.dto;
+
+import lombok.Data;
+import java.time.LocalDateTime;
+
+@Data
+public class StockAtDate {
+    private String bookId;
+    private LocalDateTime at;
+    private int quantity;
+    private LocalDateTime basedOn; // Snapshot (or current stock) the replay started from
+    private int movementsReplayed;
+}
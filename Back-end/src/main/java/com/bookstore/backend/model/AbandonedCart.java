@@ -0,0 +1,32 @@
+package com.bookstore.backend.model;
+
+import org.springframework.data.annotation.Id;
+import org.springframework.data.mongodb.core.index.Indexed;
+import org.springframework.data.mongodb.core.mapping.Document;
+import lombok.Data;
+import java.time.LocalDateTime;
+import java.util.List;
+
+// Compact copy of a cart that was left with items, moved out of carts by CartArchiver for
+// remarketing analytics. Keeps only what the analytics need, not the display snapshot.
+@Data
+@Document(collection = "abandoned_carts")
+public class AbandonedCart {
+
+    @Id
+    private String id; // The cart's _id, so re-archiving after a partial run overwrites
+    private String userId;
+    private List<Line> items;
+    private int itemCount;
+    private double total;
+    @Indexed
+    private LocalDateTime lastActiveAt;
+    private LocalDateTime archivedAt;
+
+    @Data
+    public static class Line {
+        private String bookId;
+        private int quantity;
+        private double price;
+    }
+}
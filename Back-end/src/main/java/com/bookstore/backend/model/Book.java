@@ -1,12 +1,25 @@
 package com.bookstore.backend.model;
 
 import org.springframework.data.annotation.Id;
+import org.springframework.data.mongodb.core.index.CompoundIndex;
+import org.springframework.data.mongodb.core.index.CompoundIndexes;
 import org.springframework.data.mongodb.core.mapping.Document;
 import lombok.Data;
 import java.time.LocalDate;
 
 @Data
 @Document(collection = "books")
+@CompoundIndexes({
+        // Keyset pagination indexes: sort field + _id tie-breaker
+        @CompoundIndex(name = "title_id", def = "{'title': 1, '_id': 1}"),
+        @CompoundIndex(name = "price_id", def = "{'price': 1, '_id': 1}"),
+        @CompoundIndex(name = "rating_id", def = "{'rating': 1, '_id': 1}"),
+        @CompoundIndex(name = "publishedDate_id", def = "{'publishedDate': 1, '_id': 1}"),
+        // Inventory queries: stock ranges, status filters and the highest minThreshold
+        @CompoundIndex(name = "stockQuantity_id", def = "{'stockQuantity': 1, '_id': 1}"),
+        @CompoundIndex(name = "stockStatus_id", def = "{'stockStatus': 1, '_id': 1}"),
+        @CompoundIndex(name = "minThreshold", def = "{'minThreshold': -1}")
+})
 public class Book {
 
     @Id
@@ -24,5 +37,8 @@ public class Book {
     private int maxThreshold; // Maximum stock level for inventory planning
     private String coverImageUrl;
     private LocalDate publishedDate;
-    private Double rating; // Average rating (0.0 to 5.0)
+    private Double rating; // Average rating (0.0 to 5.0), ratingSum / ratingCount
+    private long ratingSum; // Sum of the ratings of non-deleted reviews
+    private long ratingCount; // Number of non-deleted reviews
+    private int[] ratingHistogram; // Non-deleted reviews per star, index 0 = 1 star
 }
\ No newline at end of file
@@ -0,0 +1,21 @@
+package com.bookstore.backend.model;
+
+import org.springframework.data.annotation.Id;
+import org.springframework.data.mongodb.core.index.IndexDirection;
+import org.springframework.data.mongodb.core.index.Indexed;
+import org.springframework.data.mongodb.core.mapping.Document;
+import lombok.Data;
+
+// Materialized per-book sales totals, maintained by SalesRollupService
+@Data
+@Document(collection = "sales_by_book")
+public class BookSalesRollup {
+
+    @Id
+    private String bookId;
+    private String title;
+    private double price; // Last unit price sold
+    @Indexed(direction = IndexDirection.DESCENDING)
+    private int quantity;
+    private double revenue;
+}
@@ -1,6 +1,7 @@
 package com.bookstore.backend.model;
 
 import org.springframework.data.annotation.Id;
+import org.springframework.data.mongodb.core.index.Indexed;
 import org.springframework.data.mongodb.core.mapping.Document;
 import lombok.Data;
 import java.time.LocalDateTime;
@@ -12,6 +13,7 @@ public class Cart {
 
     @Id
     private String cart_id;
+    @Indexed(unique = true) // One cart per user; first adds upsert against it
     private String userId;
     private List<CartItem> items;
     private LocalDateTime createdAt;
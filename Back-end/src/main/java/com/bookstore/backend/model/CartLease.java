@@ -0,0 +1,21 @@
+package com.bookstore.backend.model;
+
+import org.springframework.data.annotation.Id;
+import org.springframework.data.mongodb.core.index.Indexed;
+import org.springframework.data.mongodb.core.mapping.Document;
+import lombok.Data;
+import java.time.Instant;
+
+// Which node holds a user's cart in its write-behind session store; see CartSessionStore.
+// Leases left behind by a crashed node are dropped by the TTL index an hour after expiring.
+@Data
+@Document(collection = "cart_leases")
+public class CartLease {
+
+    @Id
+    private String userId;
+    private String owner;
+    private String token; // Set on each load of the cart; renewal and release match on it
+    @Indexed(expireAfterSeconds = 3600)
+    private Instant expiresAt;
+}
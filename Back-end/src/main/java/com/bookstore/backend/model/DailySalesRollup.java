@@ -0,0 +1,17 @@
+package com.bookstore.backend.model;
+
+import org.springframework.data.annotation.Id;
+import org.springframework.data.mongodb.core.mapping.Document;
+import lombok.Data;
+
+// Materialized per-day sales totals, keyed "yyyy-MM-dd" so an id range is a date range
+@Data
+@Document(collection = "sales_by_day")
+public class DailySalesRollup {
+
+    @Id
+    private String day;
+    private double revenue;
+    private int orderCount;
+    private int itemsSold;
+}
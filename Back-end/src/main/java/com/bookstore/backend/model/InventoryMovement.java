@@ -0,0 +1,21 @@
+package com.bookstore.backend.model;
+
+import org.springframework.data.annotation.Id;
+import org.springframework.data.mongodb.core.mapping.Document;
+import lombok.Data;
+import java.time.LocalDateTime;
+
+// One append-only stock movement. Movements are partitioned by month into
+// inventory_movements_yyyy_MM collections (see InventoryLedger); the name here is only the prefix.
+@Data
+@Document(collection = "inventory_movements")
+public class InventoryMovement {
+
+    @Id
+    private String id;
+    private String bookId;
+    private String type; // "ORDER", "RESTOCK", "ADJUSTMENT" or "RETURN"
+    private int delta; // Signed change in stockQuantity
+    private String reference; // e.g. the order id
+    private LocalDateTime at;
+}
@@ -0,0 +1,21 @@
+package com.bookstore.backend.model;
+
+import org.springframework.data.annotation.Id;
+import org.springframework.data.mongodb.core.index.CompoundIndex;
+import org.springframework.data.mongodb.core.mapping.Document;
+import lombok.Data;
+import java.time.LocalDateTime;
+
+// A book's stockQuantity as read at takenAt; stock at any time is the nearest snapshot plus the
+// ledger movements between the two
+@Data
+@Document(collection = "inventory_snapshots")
+@CompoundIndex(name = "bookId_takenAt", def = "{'bookId': 1, 'takenAt': -1}")
+public class InventorySnapshot {
+
+    @Id
+    private String id;
+    private String bookId;
+    private int quantity;
+    private LocalDateTime takenAt;
+}
@@ -0,0 +1,19 @@
+package com.bookstore.backend.model;
+
+import org.springframework.data.annotation.Id;
+import org.springframework.data.mongodb.core.mapping.Document;
+import lombok.Data;
+
+// Materialized per-month sales totals, keyed "yyyy-MM" so the id sorts chronologically
+@Data
+@Document(collection = "sales_by_month")
+public class MonthlySalesRollup {
+
+    @Id
+    private String month;
+    private int year;
+    private int monthValue;
+    private double revenue;
+    private int orderCount;
+    private int itemsSold;
+}
@@ -1,6 +1,7 @@
 package com.bookstore.backend.model;
 
 import org.springframework.data.annotation.Id;
+import org.springframework.data.mongodb.core.index.Indexed;
 import org.springframework.data.mongodb.core.mapping.Document;
 import lombok.Data;
 import java.time.LocalDateTime;
@@ -16,6 +17,7 @@ public class Order {
     private List<OrderItem> items; // inner class eken enne me object eka
     private double totalAmount;
     private String status; // e.g., "PENDING", "PROCESSING", "SHIPPED", "DELIVERED", "CANCELLED"
+    @Indexed
     private LocalDateTime orderDate;
     private String paymentId; // Reference to payment
     private String shippingAddress;
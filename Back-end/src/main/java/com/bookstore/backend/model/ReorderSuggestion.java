@@ -0,0 +1,28 @@
+package com.bookstore.backend.model;
+
+import org.springframework.data.annotation.Id;
+import org.springframework.data.mongodb.core.index.CompoundIndex;
+import org.springframework.data.mongodb.core.index.Indexed;
+import org.springframework.data.mongodb.core.mapping.Document;
+import lombok.Data;
+import java.time.LocalDateTime;
+
+// Output of the nightly reorder forecast: one document per book that should be reordered.
+// Documents left over from an earlier run (computedAt older than the latest run) are removed.
+@Data
+@Document(collection = "reorder_suggestions")
+@CompoundIndex(name = "daysOfCover_id", def = "{'daysOfCover': 1, '_id': 1}")
+public class ReorderSuggestion {
+
+    @Id
+    private String bookId;
+    private String title;
+    private int stockQuantity;
+    private int minThreshold;
+    private int maxThreshold;
+    private double dailyVelocity; // Exponentially weighted units sold per day
+    private double daysOfCover; // stockQuantity / dailyVelocity, capped
+    private int suggestedQuantity;
+    @Indexed
+    private LocalDateTime computedAt;
+}
@@ -1,12 +1,21 @@
 package com.bookstore.backend.model;
 
 import org.springframework.data.annotation.Id;
+import org.springframework.data.mongodb.core.index.CompoundIndex;
+import org.springframework.data.mongodb.core.index.CompoundIndexes;
 import org.springframework.data.mongodb.core.mapping.Document;
 import lombok.Data;
 import java.time.LocalDateTime;
 
 @Data
 @Document(collection = "reviews")
+@CompoundIndexes({
+        // Per-book listing: filter prefix, sort field and _id tie-breaker (scanned in either direction)
+        @CompoundIndex(name = "book_deleted_createdAt_id", def = "{'book_id': 1, 'isDeleted': 1, 'createdAt': 1, '_id': 1}"),
+        @CompoundIndex(name = "book_deleted_rating_id", def = "{'book_id': 1, 'isDeleted': 1, 'rating': 1, '_id': 1}"),
+        // Admin listing across all books
+        @CompoundIndex(name = "deleted_createdAt_id", def = "{'isDeleted': 1, 'createdAt': 1, '_id': 1}")
+})
 public class Review {
 
     @Id
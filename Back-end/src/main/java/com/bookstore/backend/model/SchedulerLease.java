@@ -0,0 +1,17 @@
+package com.bookstore.backend.model;
+
+import org.springframework.data.annotation.Id;
+import org.springframework.data.mongodb.core.mapping.Document;
+import lombok.Data;
+import java.time.Instant;
+
+// Time-bounded ownership of a named scheduled job; see SchedulerLeader
+@Data
+@Document(collection = "scheduler_leases")
+public class SchedulerLease {
+
+    @Id
+    private String name;
+    private String owner;
+    private Instant expiresAt;
+}
@@ -0,0 +1,17 @@
+package com.bookstore.backend.model;
+
+import org.springframework.data.annotation.Id;
+import org.springframework.data.mongodb.core.mapping.Document;
+import lombok.Data;
+
+// Materialized per-status order totals, moved between statuses by updateStatus
+@Data
+@Document(collection = "sales_by_status")
+public class StatusSalesRollup {
+
+    @Id
+    private String status;
+    private int orders;
+    private double revenue;
+    private int itemsSold;
+}
@@ -0,0 +1,24 @@
+package com.bookstore.backend.model;
+
+import org.springframework.data.annotation.Id;
+import org.springframework.data.mongodb.core.mapping.Document;
+import lombok.Data;
+import java.time.LocalDateTime;
+
+// A raised low-stock alert, shared by every node. One document per alerting book; the document
+// is removed when the alert resolves. level orders severities so raises can be conditional.
+@Data
+@Document(collection = "stock_alerts")
+public class StockAlert {
+
+    @Id
+    private String bookId;
+    private String title;
+    private String author;
+    private int stockQuantity;
+    private int threshold;
+    private int level; // 1 = LOW, 2 = CRITICAL, 3 = OUT_OF_STOCK
+    private String severity;
+    private boolean acknowledged;
+    private LocalDateTime raisedAt;
+}
@@ -0,0 +1,20 @@
+package com.bookstore.backend.model;
+
+import org.springframework.data.annotation.Id;
+import org.springframework.data.mongodb.core.index.CompoundIndex;
+import org.springframework.data.mongodb.core.mapping.Document;
+import lombok.Data;
+import java.time.LocalDateTime;
+
+// Materialized per-user order totals; the index serves the most-active-first activity report
+@Data
+@CompoundIndex(name = "totalOrders_id", def = "{'totalOrders': -1, '_id': 1}")
+@Document(collection = "sales_by_user")
+public class UserSalesRollup {
+
+    @Id
+    private String userId;
+    private int totalOrders;
+    private double totalSpent;
+    private LocalDateTime lastOrderDate;
+}
@@ -11,15 +11,9 @@ import java.util.Optional;
 @Repository
 public interface ReviewRepository extends MongoRepository<Review, String> {
     
-    @Query("{ 'book_id': ?0, 'isDeleted': false }")
-    List<Review> findByBook_idAndIsDeletedFalse(String book_id);
-    
     List<Review> findByUserId(String userId);
     
     @Query("{ 'book_id': ?0, 'userId': ?1, 'isDeleted': false }")
     Optional<Review> findByBook_idAndUserId(String book_id, String userId);
-    
-    @Query("{ 'isDeleted': false }")
-    List<Review> findAllByIsDeletedFalse();
 }
 
@@ -0,0 +1,364 @@
+package com.bookstore.backend.service;
+
+import com.bookstore.backend.dto.BookCacheStats;
+import com.bookstore.backend.model.Book;
+import com.bookstore.backend.repository.BookRepository;
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import com.github.benmanes.caffeine.cache.RemovalCause;
+import org.springframework.beans.BeanUtils;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.Supplier;
+import java.util.stream.Collectors;
+
+// Bounded, size-aware read-through cache for Book documents in front of BookRepository.
+// Entries are invalidated by local writes and by the books change stream (BookChangeStreamListener).
+@Component
+public class BookCache {
+
+    private static final int MAX_LIST_ENTRIES = 64;
+    private static final int VERSION_STRIPES = 4096;
+
+    private final BookRepository bookRepository;
+    private final String policy;
+    private final long maxWeightBytes;
+    private final long listTtlMillis;
+    private final Store store;
+
+    // Short-lived results for list queries (trending, new arrivals), dropped on any book change
+    private final Map<String, CachedList> lists = new ConcurrentHashMap<>();
+
+    // Bumped on every invalidation so a list load that raced with any change is not cached
+    private final AtomicLong generation = new AtomicLong();
+
+    // Per-book versions, striped so the table stays bounded: invalidating a book only stops
+    // in-flight loads of books in its stripe from being cached. invalidateAll bumps clears.
+    private final AtomicLongArray versions = new AtomicLongArray(VERSION_STRIPES);
+    private final AtomicLong clears = new AtomicLong();
+
+    private final LongAdder hits = new LongAdder();
+    private final LongAdder misses = new LongAdder();
+    private final LongAdder evictions = new LongAdder();
+    private final LongAdder invalidations = new LongAdder();
+
+    public BookCache(BookRepository bookRepository,
+            @Value("${books.cache.policy:tinylfu}") String policy,
+            @Value("${books.cache.max-weight-bytes:67108864}") long maxWeightBytes,
+            @Value("${books.cache.list-ttl-ms:30000}") long listTtlMillis) {
+        this.bookRepository = bookRepository;
+        this.policy = policy.toLowerCase();
+        this.maxWeightBytes = maxWeightBytes;
+        this.listTtlMillis = listTtlMillis;
+
+        if ("lru".equals(this.policy)) {
+            this.store = new LruStore(maxWeightBytes, evictions);
+        } else if ("tinylfu".equals(this.policy)) {
+            this.store = new TinyLfuStore(maxWeightBytes, evictions);
+        } else {
+            throw new IllegalArgumentException("Invalid books.cache.policy. Must be tinylfu or lru");
+        }
+    }
+
+    // Returns a private copy so callers can mutate it without touching the cached instance
+    public Optional<Book> findById(String id) {
+        if (id == null) {
+            return Optional.empty();
+        }
+
+        Book cached = store.get(id);
+        if (cached != null) {
+            hits.increment();
+            return Optional.of(copy(cached));
+        }
+
+        misses.increment();
+        long loadClears = clears.get();
+        long loadVersion = versions.get(stripe(id));
+        Optional<Book> loaded = bookRepository.findById(id);
+        loaded.ifPresent(book -> putIfCurrent(id, book, loadClears, loadVersion));
+        return loaded;
+    }
+
+    // Cached books for the given ids, missing ones loaded with one query; unknown ids are left out
+    public Map<String, Book> findAllById(Collection<String> ids) {
+        Map<String, Book> found = new LinkedHashMap<>();
+        List<String> missing = new ArrayList<>();
+        for (String id : ids) {
+            Book cached = store.get(id);
+            if (cached != null) {
+                hits.increment();
+                found.put(id, copy(cached));
+            } else {
+                missing.add(id);
+            }
+        }
+        if (missing.isEmpty()) {
+            return found;
+        }
+
+        misses.add(missing.size());
+        long loadClears = clears.get();
+        Map<String, Long> loadVersions = new HashMap<>();
+        for (String id : missing) {
+            loadVersions.put(id, versions.get(stripe(id)));
+        }
+        for (Book book : bookRepository.findAllById(missing)) {
+            Long loadVersion = loadVersions.get(book.getBook_id());
+            if (loadVersion != null) {
+                putIfCurrent(book.getBook_id(), book, loadClears, loadVersion);
+            }
+            found.put(book.getBook_id(), book);
+        }
+        return found;
+    }
+
+    public boolean existsById(String id) {
+        return findById(id).isPresent();
+    }
+
+    public List<Book> getList(String key, Supplier<List<Book>> loader) {
+        long now = System.currentTimeMillis();
+        CachedList cached = lists.get(key);
+        if (cached != null && cached.expiresAt > now) {
+            hits.increment();
+            return copyAll(cached.books);
+        }
+
+        misses.increment();
+        long loadGeneration = generation.get();
+        List<Book> loaded = loader.get();
+        if (generation.get() == loadGeneration) {
+            if (lists.size() >= MAX_LIST_ENTRIES) {
+                lists.clear();
+            }
+            lists.put(key, new CachedList(copyAll(loaded), now + listTtlMillis));
+            if (generation.get() != loadGeneration) {
+                lists.remove(key); // Invalidated between the check and the put
+            }
+        }
+        return loaded;
+    }
+
+    // Caches a loaded book unless the book (or its stripe) was invalidated since the load started.
+    // The version is checked again after the put: an invalidation landing between the first check
+    // and the put cleared nothing, so the possibly stale copy is removed here instead.
+    private void putIfCurrent(String id, Book book, long loadClears, long loadVersion) {
+        if (!isCurrent(id, loadClears, loadVersion)) {
+            return;
+        }
+        store.put(id, copy(book));
+        if (!isCurrent(id, loadClears, loadVersion)) {
+            store.invalidate(id);
+        }
+    }
+
+    private boolean isCurrent(String id, long loadClears, long loadVersion) {
+        return clears.get() == loadClears && versions.get(stripe(id)) == loadVersion;
+    }
+
+    private static int stripe(String id) {
+        return Math.floorMod(id.hashCode(), VERSION_STRIPES);
+    }
+
+    public void invalidate(String id) {
+        generation.incrementAndGet();
+        invalidations.increment();
+        if (id != null) {
+            versions.incrementAndGet(stripe(id));
+            store.invalidate(id);
+        }
+        lists.clear();
+    }
+
+    public void invalidateAll() {
+        generation.incrementAndGet();
+        clears.incrementAndGet();
+        invalidations.increment();
+        store.invalidateAll();
+        lists.clear();
+    }
+
+    public BookCacheStats getStats() {
+        BookCacheStats stats = new BookCacheStats();
+        long hitCount = hits.sum();
+        long missCount = misses.sum();
+        stats.setPolicy(policy);
+        stats.setHits(hitCount);
+        stats.setMisses(missCount);
+        stats.setHitRate(hitCount + missCount == 0 ? 0 : (double) hitCount / (hitCount + missCount));
+        stats.setEvictions(evictions.sum());
+        stats.setInvalidations(invalidations.sum());
+        stats.setEntries(store.size());
+        stats.setWeightBytes(store.weight());
+        stats.setMaxWeightBytes(maxWeightBytes);
+        return stats;
+    }
+
+    // Rough heap footprint of a cached book: object overhead plus UTF-16 string payloads
+    static int estimateWeight(Book book) {
+        int weight = 160;
+        weight += stringWeight(book.getBook_id());
+        weight += stringWeight(book.getTitle());
+        weight += stringWeight(book.getAuthor());
+        weight += stringWeight(book.getDescription());
+        weight += stringWeight(book.getGenre());
+        weight += stringWeight(book.getPublisher());
+        weight += stringWeight(book.getLanguage());
+        weight += stringWeight(book.getStockStatus());
+        weight += stringWeight(book.getCoverImageUrl());
+        weight += book.getRatingHistogram() == null ? 0 : 40;
+        return weight;
+    }
+
+    private static int stringWeight(String value) {
+        return value == null ? 0 : 40 + 2 * value.length();
+    }
+
+    private static Book copy(Book book) {
+        Book copy = new Book();
+        BeanUtils.copyProperties(book, copy);
+        if (book.getRatingHistogram() != null) {
+            copy.setRatingHistogram(book.getRatingHistogram().clone());
+        }
+        return copy;
+    }
+
+    private static List<Book> copyAll(List<Book> books) {
+        return books.stream().map(BookCache::copy).collect(Collectors.toList());
+    }
+
+    private static class CachedList {
+        final List<Book> books;
+        final long expiresAt;
+
+        CachedList(List<Book> books, long expiresAt) {
+            this.books = books;
+            this.expiresAt = expiresAt;
+        }
+    }
+
+    private interface Store {
+        Book get(String id);
+
+        void put(String id, Book book);
+
+        void invalidate(String id);
+
+        void invalidateAll();
+
+        long size();
+
+        long weight();
+    }
+
+    // W-TinyLFU admission and eviction (Caffeine)
+    private static class TinyLfuStore implements Store {
+        private final Cache<String, Book> cache;
+
+        TinyLfuStore(long maxWeightBytes, LongAdder evictions) {
+            this.cache = Caffeine.newBuilder()
+                    .maximumWeight(maxWeightBytes)
+                    .weigher((String id, Book book) -> estimateWeight(book))
+                    .evictionListener((String id, Book book, RemovalCause cause) -> evictions.increment())
+                    .executor(Runnable::run)
+                    .build();
+        }
+
+        public Book get(String id) {
+            return cache.getIfPresent(id);
+        }
+
+        public void put(String id, Book book) {
+            cache.put(id, book);
+        }
+
+        public void invalidate(String id) {
+            cache.invalidate(id);
+        }
+
+        public void invalidateAll() {
+            cache.invalidateAll();
+        }
+
+        public long size() {
+            return cache.estimatedSize();
+        }
+
+        public long weight() {
+            return cache.policy().eviction()
+                    .map(eviction -> eviction.weightedSize().orElse(0L))
+                    .orElse(0L);
+        }
+    }
+
+    // Plain access-ordered LRU bounded by total weight
+    private static class LruStore implements Store {
+        private final LinkedHashMap<String, Book> map = new LinkedHashMap<>(256, 0.75f, true);
+        private final long maxWeightBytes;
+        private final LongAdder evictions;
+        private long totalWeight;
+
+        LruStore(long maxWeightBytes, LongAdder evictions) {
+            this.maxWeightBytes = maxWeightBytes;
+            this.evictions = evictions;
+        }
+
+        public synchronized Book get(String id) {
+            return map.get(id);
+        }
+
+        public synchronized void put(String id, Book book) {
+            int weight = estimateWeight(book);
+            if (weight > maxWeightBytes) {
+                return;
+            }
+            Book previous = map.put(id, book);
+            if (previous != null) {
+                totalWeight -= estimateWeight(previous);
+            }
+            totalWeight += weight;
+
+            Iterator<Map.Entry<String, Book>> eldest = map.entrySet().iterator();
+            while (totalWeight > maxWeightBytes && eldest.hasNext()) {
+                Map.Entry<String, Book> entry = eldest.next();
+                totalWeight -= estimateWeight(entry.getValue());
+                eldest.remove();
+                evictions.increment();
+            }
+        }
+
+        public synchronized void invalidate(String id) {
+            Book removed = map.remove(id);
+            if (removed != null) {
+                totalWeight -= estimateWeight(removed);
+            }
+        }
+
+        public synchronized void invalidateAll() {
+            map.clear();
+            totalWeight = 0;
+        }
+
+        public synchronized long size() {
+            return map.size();
+        }
+
+        public synchronized long weight() {
+            return totalWeight;
+        }
+    }
+}
@@ -0,0 +1,398 @@
+package com.bookstore.backend.service;
+
+import com.bookstore.backend.model.Book;
+import org.springframework.stereotype.Component;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeMap;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+
+// In-process inverted index over book title, author, genre, publisher and description with BM25 ranking.
+// Postings are parallel primitive int arrays (doc ids ascending, term frequencies). Updates re-add the
+// book under a fresh doc id and tombstone the old one; tombstones are purged once they pile up.
+@Component
+public class BookSearchIndex {
+
+    private static final float K1 = 1.2f;
+    private static final float B = 0.75f;
+    private static final int MAX_PREFIX_EXPANSIONS = 64;
+    private static final int MAX_TOKEN_LENGTH = 40;
+
+    // Field boosts are applied as repeated term frequency
+    private static final int TITLE_BOOST = 3;
+    private static final int AUTHOR_BOOST = 2;
+    private static final int GENRE_BOOST = 2;
+    private static final int PUBLISHER_BOOST = 1;
+    private static final int DESCRIPTION_BOOST = 1;
+
+    private static final Set<String> STOP_WORDS = Set.of(
+            "a", "an", "and", "are", "as", "at", "be", "by", "for", "from", "in", "is", "it",
+            "of", "on", "or", "the", "to", "with");
+
+    private final ReentrantReadWriteLock lock = new ReentrantReadWriteLock();
+
+    // Sorted so prefix queries are a range scan
+    private final TreeMap<String, PostingList> terms = new TreeMap<>();
+    private final Map<String, Integer> docIdByBookId = new HashMap<>();
+    private String[] bookIds = new String[1024];
+    private int[] docLengths = new int[1024];
+    private final BitSet deleted = new BitSet();
+    private int deletedCount;
+    private int nextDocId;
+    private int liveDocs;
+    private long totalLength;
+
+    private final ThreadLocal<ScoreBuffer> scoreBuffers = ThreadLocal.withInitial(ScoreBuffer::new);
+
+    public void index(Book book) {
+        if (book == null || book.getBook_id() == null) {
+            return;
+        }
+        Map<String, int[]> frequencies = new HashMap<>();
+        int length = 0;
+        length += addTokens(frequencies, book.getTitle(), TITLE_BOOST);
+        length += addTokens(frequencies, book.getAuthor(), AUTHOR_BOOST);
+        length += addTokens(frequencies, book.getGenre(), GENRE_BOOST);
+        length += addTokens(frequencies, book.getPublisher(), PUBLISHER_BOOST);
+        length += addTokens(frequencies, book.getDescription(), DESCRIPTION_BOOST);
+
+        lock.writeLock().lock();
+        try {
+            removeLocked(book.getBook_id());
+
+            int docId = nextDocId++;
+            ensureDocCapacity(docId + 1);
+            bookIds[docId] = book.getBook_id();
+            docLengths[docId] = length;
+            docIdByBookId.put(book.getBook_id(), docId);
+            liveDocs++;
+            totalLength += length;
+
+            for (Map.Entry<String, int[]> entry : frequencies.entrySet()) {
+                terms.computeIfAbsent(entry.getKey(), term -> new PostingList()).add(docId, entry.getValue()[0]);
+            }
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    public void remove(String bookId) {
+        lock.writeLock().lock();
+        try {
+            removeLocked(bookId);
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    public void clear() {
+        lock.writeLock().lock();
+        try {
+            terms.clear();
+            docIdByBookId.clear();
+            bookIds = new String[1024];
+            docLengths = new int[1024];
+            deleted.clear();
+            deletedCount = 0;
+            nextDocId = 0;
+            liveDocs = 0;
+            totalLength = 0;
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    public int size() {
+        lock.readLock().lock();
+        try {
+            return liveDocs;
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    // Returns matching book ids ranked by BM25. Terms ending in '*' match as prefixes; with
+    // prefixLastTerm the final term is also expanded, which suits search-as-you-type.
+    public List<String> search(String query, int limit, boolean prefixLastTerm) {
+        List<String> results = new ArrayList<>();
+        if (query == null || limit <= 0) {
+            return results;
+        }
+
+        List<QueryTerm> queryTerms = parseQuery(query, prefixLastTerm);
+        if (queryTerms.isEmpty()) {
+            return results;
+        }
+
+        lock.readLock().lock();
+        try {
+            if (liveDocs == 0) {
+                return results;
+            }
+            ScoreBuffer buffer = scoreBuffers.get();
+            buffer.reset(nextDocId);
+            float averageLength = (float) totalLength / liveDocs;
+
+            for (QueryTerm queryTerm : queryTerms) {
+                if (queryTerm.prefix) {
+                    int expansions = 0;
+                    for (PostingList postings : terms.subMap(queryTerm.text, queryTerm.text + Character.MAX_VALUE).values()) {
+                        if (expansions++ >= MAX_PREFIX_EXPANSIONS) {
+                            break;
+                        }
+                        score(postings, averageLength, buffer);
+                    }
+                } else {
+                    PostingList postings = terms.get(queryTerm.text);
+                    if (postings != null) {
+                        score(postings, averageLength, buffer);
+                    }
+                }
+            }
+
+            int[] top = buffer.topK(limit);
+            for (int docId : top) {
+                results.add(bookIds[docId]);
+            }
+            return results;
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    // Lowercases and splits on anything that is not a letter or digit, dropping stop words
+    public static List<String> tokenize(String text) {
+        List<String> tokens = new ArrayList<>();
+        if (text == null) {
+            return tokens;
+        }
+        String lower = text.toLowerCase(Locale.ROOT);
+        int start = -1;
+        for (int i = 0; i <= lower.length(); i++) {
+            boolean wordChar = i < lower.length() && Character.isLetterOrDigit(lower.charAt(i));
+            if (wordChar && start < 0) {
+                start = i;
+            } else if (!wordChar && start >= 0) {
+                String token = lower.substring(start, i);
+                if (token.length() <= MAX_TOKEN_LENGTH && !STOP_WORDS.contains(token)) {
+                    tokens.add(token);
+                }
+                start = -1;
+            }
+        }
+        return tokens;
+    }
+
+    private void score(PostingList postings, float averageLength, ScoreBuffer buffer) {
+        int df = postings.size;
+        // df may still count tombstoned postings, so clamp to keep idf positive
+        float idf = (float) Math.log(1 + (Math.max(liveDocs - df, 0) + 0.5) / (df + 0.5));
+        int[] docs = postings.docIds;
+        int[] freqs = postings.frequencies;
+        for (int i = 0; i < df; i++) {
+            int docId = docs[i];
+            if (deleted.get(docId)) {
+                continue;
+            }
+            int tf = freqs[i];
+            float norm = K1 * (1 - B + B * docLengths[docId] / averageLength);
+            buffer.add(docId, idf * (tf * (K1 + 1)) / (tf + norm));
+        }
+    }
+
+    private List<QueryTerm> parseQuery(String query, boolean prefixLastTerm) {
+        List<QueryTerm> parsed = new ArrayList<>();
+        String[] rawTerms = query.trim().split("\\s+");
+        for (int i = 0; i < rawTerms.length; i++) {
+            String raw = rawTerms[i];
+            boolean prefix = raw.endsWith("*") || (prefixLastTerm && i == rawTerms.length - 1);
+            List<String> tokens = tokenize(raw);
+            for (int j = 0; j < tokens.size(); j++) {
+                parsed.add(new QueryTerm(tokens.get(j), prefix && j == tokens.size() - 1));
+            }
+        }
+        return parsed;
+    }
+
+    private int addTokens(Map<String, int[]> frequencies, String text, int boost) {
+        List<String> tokens = tokenize(text);
+        for (String token : tokens) {
+            frequencies.computeIfAbsent(token, t -> new int[1])[0] += boost;
+        }
+        return tokens.size() * boost;
+    }
+
+    private void removeLocked(String bookId) {
+        Integer docId = docIdByBookId.remove(bookId);
+        if (docId == null) {
+            return;
+        }
+        deleted.set(docId);
+        deletedCount++;
+        liveDocs--;
+        totalLength -= docLengths[docId];
+        bookIds[docId] = null;
+
+        if (deletedCount > 1024 && deletedCount > liveDocs / 4) {
+            purgeDeleted();
+        }
+    }
+
+    private void purgeDeleted() {
+        terms.values().removeIf(postings -> postings.purge(deleted) == 0);
+        // Doc ids are never reused and no posting references a purged id any more
+        deleted.clear();
+        deletedCount = 0;
+    }
+
+    private void ensureDocCapacity(int capacity) {
+        if (capacity > bookIds.length) {
+            int newCapacity = Math.max(capacity, bookIds.length * 2);
+            bookIds = Arrays.copyOf(bookIds, newCapacity);
+            docLengths = Arrays.copyOf(docLengths, newCapacity);
+        }
+    }
+
+    private static class QueryTerm {
+        final String text;
+        final boolean prefix;
+
+        QueryTerm(String text, boolean prefix) {
+            this.text = text;
+            this.prefix = prefix;
+        }
+    }
+
+    private static class PostingList {
+        int[] docIds = new int[4];
+        int[] frequencies = new int[4];
+        int size;
+
+        // Doc ids are assigned in increasing order, so appending keeps the list sorted
+        void add(int docId, int frequency) {
+            if (size == docIds.length) {
+                docIds = Arrays.copyOf(docIds, size * 2);
+                frequencies = Arrays.copyOf(frequencies, size * 2);
+            }
+            docIds[size] = docId;
+            frequencies[size] = frequency;
+            size++;
+        }
+
+        int purge(BitSet deleted) {
+            int kept = 0;
+            for (int i = 0; i < size; i++) {
+                if (!deleted.get(docIds[i])) {
+                    docIds[kept] = docIds[i];
+                    frequencies[kept] = frequencies[i];
+                    kept++;
+                }
+            }
+            size = kept;
+            if (kept < docIds.length / 4) {
+                docIds = Arrays.copyOf(docIds, Math.max(4, kept));
+                frequencies = Arrays.copyOf(frequencies, Math.max(4, kept));
+            }
+            return kept;
+        }
+    }
+
+    // Per-thread dense score accumulator; only touched slots are cleared between queries
+    private static class ScoreBuffer {
+        float[] scores = new float[0];
+        int[] touched = new int[256];
+        int touchedCount;
+
+        void reset(int docCount) {
+            if (scores.length < docCount) {
+                scores = new float[Math.max(docCount, scores.length * 2)];
+            } else {
+                for (int i = 0; i < touchedCount; i++) {
+                    scores[touched[i]] = 0;
+                }
+            }
+            touchedCount = 0;
+        }
+
+        void add(int docId, float score) {
+            if (scores[docId] == 0) {
+                if (touchedCount == touched.length) {
+                    touched = Arrays.copyOf(touched, touchedCount * 2);
+                }
+                touched[touchedCount++] = docId;
+            }
+            scores[docId] += score;
+        }
+
+        // Bounded min-heap selection of the k best documents, returned best first
+        int[] topK(int k) {
+            int heapSize = 0;
+            int[] heap = new int[Math.min(k, touchedCount)];
+            for (int i = 0; i < touchedCount; i++) {
+                int docId = touched[i];
+                if (heapSize < heap.length) {
+                    heap[heapSize++] = docId;
+                    siftUp(heap, heapSize - 1);
+                } else if (heap.length > 0 && better(docId, heap[0])) {
+                    heap[0] = docId;
+                    siftDown(heap, heapSize, 0);
+                }
+            }
+            int[] ranked = new int[heapSize];
+            for (int i = heapSize - 1; i >= 0; i--) {
+                ranked[i] = heap[0];
+                heap[0] = heap[--heapSize];
+                siftDown(heap, heapSize, 0);
+            }
+            return ranked;
+        }
+
+        // Higher score wins; lower doc id breaks ties so results are stable
+        private boolean better(int a, int b) {
+            return scores[a] > scores[b] || (scores[a] == scores[b] && a < b);
+        }
+
+        private void siftUp(int[] heap, int index) {
+            while (index > 0) {
+                int parent = (index - 1) / 2;
+                if (!better(heap[parent], heap[index])) {
+                    break;
+                }
+                swap(heap, parent, index);
+                index = parent;
+            }
+        }
+
+        private void siftDown(int[] heap, int size, int index) {
+            while (true) {
+                int left = 2 * index + 1;
+                int right = left + 1;
+                int worst = index;
+                if (left < size && better(heap[worst], heap[left])) {
+                    worst = left;
+                }
+                if (right < size && better(heap[worst], heap[right])) {
+                    worst = right;
+                }
+                if (worst == index) {
+                    return;
+                }
+                swap(heap, worst, index);
+                index = worst;
+            }
+        }
+
+        private void swap(int[] heap, int i, int j) {
+            int tmp = heap[i];
+            heap[i] = heap[j];
+            heap[j] = tmp;
+        }
+    }
+}
@@ -1,22 +1,75 @@
 package com.bookstore.backend.service;
 
+import com.bookstore.backend.dto.BookSummary;
+import com.bookstore.backend.dto.CursorPage;
 import com.bookstore.backend.model.Book;
 import com.bookstore.backend.repository.BookRepository;
+import com.bookstore.backend.util.PageCursor;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.ApplicationEventPublisher;
+import org.springframework.context.event.EventListener;
+import org.springframework.data.domain.Sort;
+import org.springframework.data.mongodb.core.MongoTemplate;
+import org.springframework.data.mongodb.core.aggregation.AggregationExpression;
+import org.springframework.data.mongodb.core.aggregation.AggregationUpdate;
+import org.springframework.data.mongodb.core.aggregation.LiteralOperators;
+import org.springframework.data.mongodb.core.query.Criteria;
+import org.springframework.data.mongodb.core.query.Query;
 import org.springframework.stereotype.Service;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
 
 import java.time.LocalDate;
+import java.util.LinkedHashMap;
 import java.util.List;
+import java.util.Map;
 import java.util.Optional;
+import java.util.function.Function;
+import java.util.stream.Stream;
 import java.util.stream.Collectors;
 import java.util.Collections;
 
 @Service
 public class BookService {
 
+    private static final Logger logger = LoggerFactory.getLogger(BookService.class);
+
     @Autowired
     private BookRepository bookRepository;
 
+    @Autowired
+    private MongoTemplate mongoTemplate;
+
+    @Autowired
+    private BookCache bookCache;
+
+    @Autowired
+    private BookSearchIndex bookSearchIndex;
+
+    @Autowired
+    private ApplicationEventPublisher eventPublisher;
+
+    @Autowired
+    private InventoryLedger inventoryLedger;
+
+    @Value("${books.search.max-results:100}")
+    private int maxSearchResults;
+
+    @Value("${books.page.max-size:100}")
+    private int maxPageSize;
+
+    // Sortable catalog fields and their default direction (true = ascending)
+    private static final Map<String, Boolean> SORT_FIELDS = Map.of(
+            "title", true,
+            "price", true,
+            "rating", false,
+            "publishedDate", false);
+
+    private static final String[] SUMMARY_FIELDS = {
+            "title", "author", "price", "genre", "stockStatus", "coverImageUrl", "publishedDate", "rating" };
+
     // CREATE / SAVE
     public Book save(Book book) {
         if (book.getPrice() <= 0) {
@@ -25,10 +78,18 @@ public class BookService {
         
         // Automatically set stock status based on quantity if not already set
         if (book.getStockStatus() == null || book.getStockStatus().trim().isEmpty()) {
-            book.setStockStatus(determineStockStatus(book.getStockQuantity()));
+            book.setStockStatus(InventoryService.determineStockStatus(book.getStockQuantity(), book.getMinThreshold()));
         }
         
-        return bookRepository.save(book);
+        boolean created = book.getBook_id() == null;
+        Book savedBook = bookRepository.save(book);
+        if (created) {
+            inventoryLedger.record(savedBook.getBook_id(), InventoryLedger.RESTOCK, savedBook.getStockQuantity(), null);
+        }
+        bookCache.invalidate(savedBook.getBook_id());
+        bookSearchIndex.index(savedBook);
+        eventPublisher.publishEvent(StockChangedEvent.updated(savedBook));
+        return savedBook;
     }
 
     // READ ALL
@@ -36,54 +97,174 @@ public class BookService {
         return bookRepository.findAll();
     }
 
+    // READ PAGE (keyset pagination over a summary projection)
+    public CursorPage<BookSummary> findPage(String sort, String direction, String cursor, int size) {
+        if (!SORT_FIELDS.containsKey(sort)) {
+            throw new IllegalArgumentException("Invalid sort. Must be one of: title, price, rating, publishedDate");
+        }
+        boolean ascending = resolveDirection(sort, direction);
+        int pageSize = Math.max(1, Math.min(size, maxPageSize));
+
+        Query query = new Query();
+        if (cursor != null && !cursor.isBlank()) {
+            // Cursor parts: sort field, direction, last book id, last sort value
+            String[] parts = PageCursor.decode(cursor, 4);
+            if (!sort.equals(parts[0]) || !String.valueOf(ascending).equals(parts[1])) {
+                throw new IllegalArgumentException("Cursor does not match the requested sort order");
+            }
+            query.addCriteria(keysetCriteria(sort, ascending, parseSortValue(sort, parts[3]), parts[2]));
+        }
+
+        Sort.Direction sortDirection = ascending ? Sort.Direction.ASC : Sort.Direction.DESC;
+        query.with(Sort.by(sortDirection, sort).and(Sort.by(sortDirection, "book_id")));
+        query.limit(pageSize + 1); // One extra row tells us whether another page exists
+        query.fields().include(SUMMARY_FIELDS);
+
+        List<Book> books = mongoTemplate.find(query, Book.class);
+        boolean hasMore = books.size() > pageSize;
+        if (hasMore) {
+            books = books.subList(0, pageSize);
+        }
+
+        String nextCursor = null;
+        if (hasMore) {
+            Book last = books.get(books.size() - 1);
+            nextCursor = PageCursor.encode(sort, String.valueOf(ascending), last.getBook_id(),
+                    formatSortValue(sort, last));
+        }
+
+        List<BookSummary> items = books.stream()
+                .map(BookSummary::from)
+                .collect(Collectors.toList());
+        return new CursorPage<>(items, nextCursor, hasMore);
+    }
+
     // READ ONE
     public Optional<Book> findById(String id) {
-        return bookRepository.findById(id);
+        return bookCache.findById(id);
     }
 
     // UPDATE
+    // One atomic write of only the supplied catalog fields. rating and the review counters are kept
+    // by ReviewService and are never taken from the request, so an edit can't overwrite a review
+    // that landed in between. The previous document comes back from the same write for the ledger.
     public Book update(String id, Book bookDetails) {
-        Optional<Book> bookOptional = bookRepository.findById(id);
-
-        if (bookOptional.isPresent()) {
-            Book existingBook = bookOptional.get();
-
-            // Update all fields, allowing for null values to preserve existing data
-            if (bookDetails.getTitle() != null)
-                existingBook.setTitle(bookDetails.getTitle());
-            if (bookDetails.getAuthor() != null)
-                existingBook.setAuthor(bookDetails.getAuthor());
-            if (bookDetails.getPrice() > 0)
-                existingBook.setPrice(bookDetails.getPrice());
-            if (bookDetails.getStockQuantity() >= 0) {
-                existingBook.setStockQuantity(bookDetails.getStockQuantity());
-                // Recalculate stock status when quantity changes
-                existingBook.setStockStatus(determineStockStatus(bookDetails.getStockQuantity()));
-            }
-            if (bookDetails.getDescription() != null)
-                existingBook.setDescription(bookDetails.getDescription());
-            if (bookDetails.getGenre() != null)
-                existingBook.setGenre(bookDetails.getGenre());
-            if (bookDetails.getPublisher() != null)
-                existingBook.setPublisher(bookDetails.getPublisher());
-            if (bookDetails.getLanguage() != null)
-                existingBook.setLanguage(bookDetails.getLanguage());
-            if (bookDetails.getCoverImageUrl() != null)
-                existingBook.setCoverImageUrl(bookDetails.getCoverImageUrl());
-            if (bookDetails.getPublishedDate() != null)
-                existingBook.setPublishedDate(bookDetails.getPublishedDate());
-            if (bookDetails.getRating() != null)
-                existingBook.setRating(bookDetails.getRating());
-
-            return bookRepository.save(existingBook); // Save the updated data
-        } else {
+        Map<String, Object> fields = new LinkedHashMap<>();
+        if (bookDetails.getTitle() != null)
+            fields.put("title", bookDetails.getTitle());
+        if (bookDetails.getAuthor() != null)
+            fields.put("author", bookDetails.getAuthor());
+        if (bookDetails.getPrice() > 0)
+            fields.put("price", bookDetails.getPrice());
+        if (bookDetails.getDescription() != null)
+            fields.put("description", bookDetails.getDescription());
+        if (bookDetails.getGenre() != null)
+            fields.put("genre", bookDetails.getGenre());
+        if (bookDetails.getPublisher() != null)
+            fields.put("publisher", bookDetails.getPublisher());
+        if (bookDetails.getLanguage() != null)
+            fields.put("language", bookDetails.getLanguage());
+        if (bookDetails.getCoverImageUrl() != null)
+            fields.put("coverImageUrl", bookDetails.getCoverImageUrl());
+        if (bookDetails.getPublishedDate() != null)
+            fields.put("publishedDate", bookDetails.getPublishedDate());
+
+        AggregationUpdate update = AggregationUpdate.update();
+        fields.forEach((field, value) -> update.set(field).toValue(literal(value)));
+        boolean stockChanged = bookDetails.getStockQuantity() >= 0;
+        if (stockChanged) {
+            // Stock status is recalculated against the stored minThreshold in the same write
+            StockImportService.stockUpdate(update, bookDetails.getStockQuantity());
+        }
+        if (fields.isEmpty() && !stockChanged) {
+            return bookRepository.findById(id)
+                    .orElseThrow(() -> new RuntimeException("Book not found with id: " + id));
+        }
+
+        Book book = mongoTemplate.findAndModify(new Query(Criteria.where("book_id").is(id)), update, Book.class);
+        if (book == null) {
             throw new RuntimeException("Book not found with id: " + id);
         }
+        int previousStock = book.getStockQuantity();
+
+        // Bring the previous document up to date with what was written
+        if (bookDetails.getTitle() != null)
+            book.setTitle(bookDetails.getTitle());
+        if (bookDetails.getAuthor() != null)
+            book.setAuthor(bookDetails.getAuthor());
+        if (bookDetails.getPrice() > 0)
+            book.setPrice(bookDetails.getPrice());
+        if (bookDetails.getDescription() != null)
+            book.setDescription(bookDetails.getDescription());
+        if (bookDetails.getGenre() != null)
+            book.setGenre(bookDetails.getGenre());
+        if (bookDetails.getPublisher() != null)
+            book.setPublisher(bookDetails.getPublisher());
+        if (bookDetails.getLanguage() != null)
+            book.setLanguage(bookDetails.getLanguage());
+        if (bookDetails.getCoverImageUrl() != null)
+            book.setCoverImageUrl(bookDetails.getCoverImageUrl());
+        if (bookDetails.getPublishedDate() != null)
+            book.setPublishedDate(bookDetails.getPublishedDate());
+        if (stockChanged) {
+            book.setStockQuantity(bookDetails.getStockQuantity());
+            book.setStockStatus(InventoryService.determineStockStatus(bookDetails.getStockQuantity(),
+                    book.getMinThreshold()));
+        }
+
+        inventoryLedger.recordChange(id, book.getStockQuantity() - previousStock, null);
+        bookCache.invalidate(id);
+        bookSearchIndex.index(book);
+        eventPublisher.publishEvent(StockChangedEvent.updated(book));
+        return book;
+    }
+
+    // Pipeline $set reads a string starting with "$" as a field path, so values go in as $literal,
+    // converted the way the repository would store them (LocalDate to Date)
+    private AggregationExpression literal(Object value) {
+        return LiteralOperators.Literal.asLiteral(mongoTemplate.getConverter().convertToMongoType(value));
     }
 
     // DELETE
     public void delete(String id) {
         bookRepository.deleteById(id);
+        bookCache.invalidate(id);
+        bookSearchIndex.remove(id);
+        eventPublisher.publishEvent(StockChangedEvent.removed(id));
+    }
+
+    // SEARCH (in-process BM25 index, ranked)
+    public List<BookSummary> search(String query, int limit, boolean prefix) {
+        int cappedLimit = Math.max(1, Math.min(limit, maxSearchResults));
+        List<String> rankedIds = bookSearchIndex.search(query, cappedLimit, prefix);
+        if (rankedIds.isEmpty()) {
+            return Collections.emptyList();
+        }
+
+        // One round trip for the hits, then restore ranking order
+        Map<String, Book> booksById = bookRepository.findAllById(rankedIds).stream()
+                .collect(Collectors.toMap(Book::getBook_id, Function.identity()));
+        return rankedIds.stream()
+                .map(booksById::get)
+                .filter(book -> book != null)
+                .map(BookSummary::from)
+                .collect(Collectors.toList());
+    }
+
+    // Build the search index from the catalog once the application is up
+    @EventListener(ApplicationReadyEvent.class)
+    public void buildSearchIndex() {
+        Query query = new Query();
+        query.fields().include("title", "author", "genre", "publisher", "description");
+        long started = System.currentTimeMillis();
+        try (Stream<Book> books = mongoTemplate.stream(query, Book.class)) {
+            bookSearchIndex.clear();
+            books.forEach(bookSearchIndex::index);
+            logger.info("Indexed {} books for search in {} ms", bookSearchIndex.size(),
+                    System.currentTimeMillis() - started);
+        } catch (Exception e) {
+            logger.error("Failed to build book search index: {}", e.getMessage());
+        }
     }
 
     // RECOMMENDATION METHODS
@@ -121,30 +302,82 @@ public class BookService {
 
     // Get trending books (highly rated)
     public List<Book> getTrendingBooks(int limit) {
-        return bookRepository.findByHighRating().stream()
+        return bookCache.getList("trending:" + limit, () -> bookRepository.findByHighRating().stream()
                 .sorted((b1, b2) -> Double.compare(b2.getRating() != null ? b2.getRating() : 0,
                         b1.getRating() != null ? b1.getRating() : 0))
                 .limit(limit)
-                .collect(Collectors.toList());
+                .collect(Collectors.toList()));
     }
 
     // Get new arrivals (recently published)
     public List<Book> getNewArrivals(int limit) {
         LocalDate threeMonthsAgo = LocalDate.now().minusMonths(3);
-        return bookRepository.findByPublishedDateAfter(threeMonthsAgo).stream()
-                .sorted((b1, b2) -> b2.getPublishedDate().compareTo(b1.getPublishedDate()))
-                .limit(limit)
-                .collect(Collectors.toList());
+        return bookCache.getList("new-arrivals:" + threeMonthsAgo + ":" + limit,
+                () -> bookRepository.findByPublishedDateAfter(threeMonthsAgo).stream()
+                        .sorted((b1, b2) -> b2.getPublishedDate().compareTo(b1.getPublishedDate()))
+                        .limit(limit)
+                        .collect(Collectors.toList()));
+    }
+
+    private boolean resolveDirection(String sort, String direction) {
+        if (direction == null || direction.isBlank()) {
+            return SORT_FIELDS.get(sort);
+        }
+        if ("asc".equalsIgnoreCase(direction)) {
+            return true;
+        }
+        if ("desc".equalsIgnoreCase(direction)) {
+            return false;
+        }
+        throw new IllegalArgumentException("Invalid direction. Must be asc or desc");
+    }
+
+    // Rows strictly after (sortValue, lastId) in the requested order.
+    // Mongo orders null/missing values first ascending and last descending.
+    private Criteria keysetCriteria(String field, boolean ascending, Object sortValue, String lastId) {
+        Criteria idAfter = ascending ? Criteria.where("book_id").gt(lastId) : Criteria.where("book_id").lt(lastId);
+
+        if (sortValue == null) {
+            Criteria sameNull = new Criteria().andOperator(Criteria.where(field).is(null), idAfter);
+            return ascending ? new Criteria().orOperator(sameNull, Criteria.where(field).ne(null)) : sameNull;
+        }
+
+        Criteria beyond = ascending ? Criteria.where(field).gt(sortValue) : Criteria.where(field).lt(sortValue);
+        Criteria sameValue = new Criteria().andOperator(Criteria.where(field).is(sortValue), idAfter);
+        return ascending
+                ? new Criteria().orOperator(beyond, sameValue)
+                : new Criteria().orOperator(beyond, sameValue, Criteria.where(field).is(null));
+    }
+
+    private String formatSortValue(String field, Book book) {
+        switch (field) {
+            case "title":
+                return book.getTitle();
+            case "price":
+                return String.valueOf(book.getPrice());
+            case "rating":
+                return book.getRating() != null ? String.valueOf(book.getRating()) : null;
+            default:
+                return book.getPublishedDate() != null ? book.getPublishedDate().toString() : null;
+        }
     }
 
-    // Helper method to determine stock status based on quantity
-    private String determineStockStatus(int quantity) {
-        if (quantity <= 0) {
-            return "OUT_OF_STOCK";
-        } else if (quantity <= 5) {
-            return "LOW_STOCK";
-        } else {
-            return "IN_STOCK";
+    private Object parseSortValue(String field, String value) {
+        if (value == null) {
+            return null;
+        }
+        try {
+            switch (field) {
+                case "title":
+                    return value;
+                case "price":
+                case "rating":
+                    return Double.valueOf(value);
+                default:
+                    return LocalDate.parse(value);
+            }
+        } catch (RuntimeException e) {
+            throw new IllegalArgumentException("Invalid cursor");
         }
     }
 }
\ No newline at end of file
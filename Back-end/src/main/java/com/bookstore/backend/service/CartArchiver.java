@@ -0,0 +1,142 @@
+package com.bookstore.backend.service;
+
+import com.bookstore.backend.model.AbandonedCart;
+import com.bookstore.backend.model.Cart;
+import org.bson.Document;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.dao.DataAccessException;
+import org.springframework.data.domain.Sort;
+import org.springframework.data.mongodb.core.BulkOperations;
+import org.springframework.data.mongodb.core.FindAndReplaceOptions;
+import org.springframework.data.mongodb.core.MongoTemplate;
+import org.springframework.data.mongodb.core.index.Index;
+import org.springframework.data.mongodb.core.query.Criteria;
+import org.springframework.data.mongodb.core.query.Query;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.List;
+
+// Keeps the carts collection down to live carts. Carts untouched for abandoned-after-days that still
+// hold items are moved to abandoned_carts in batches (leader node only); everything else, such as
+// emptied carts, is removed by a TTL index on updatedAt after ttl-days.
+@Service
+public class CartArchiver {
+
+    private static final Logger logger = LoggerFactory.getLogger(CartArchiver.class);
+
+    @Autowired
+    private MongoTemplate mongoTemplate;
+
+    @Autowired
+    private SchedulerLeader schedulerLeader;
+
+    @Value("${cart.ttl-days:30}")
+    private int ttlDays;
+
+    @Value("${cart.abandoned-after-days:7}")
+    private int abandonedAfterDays;
+
+    @Value("${cart.archive.batch-size:500}")
+    private int batchSize;
+
+    // Created here rather than with @Indexed so the retention can come from configuration; collMod
+    // updates the existing index when the setting changes
+    @EventListener(ApplicationReadyEvent.class)
+    public void ensureTtlIndex() {
+        if (ttlDays <= abandonedAfterDays) {
+            logger.warn("cart.ttl-days ({}) is not above cart.abandoned-after-days ({}); carts may expire before they are archived",
+                    ttlDays, abandonedAfterDays);
+        }
+        Duration ttl = Duration.ofDays(ttlDays);
+        try {
+            mongoTemplate.indexOps(Cart.class).createIndex(new Index().on("updatedAt", Sort.Direction.ASC)
+                    .named("updatedAt_ttl").expire(ttl));
+        } catch (DataAccessException e) {
+            // Exists with another expiry
+            mongoTemplate.getDb().runCommand(new Document("collMod", mongoTemplate.getCollectionName(Cart.class))
+                    .append("index", new Document("name", "updatedAt_ttl").append("expireAfterSeconds", ttl.toSeconds())));
+        }
+    }
+
+    @Scheduled(fixedDelayString = "${cart.archive.interval-ms:3600000}", initialDelayString = "${cart.archive.initial-delay-ms:300000}")
+    public void scheduledArchive() {
+        if (schedulerLeader.isLeader()) {
+            try {
+                archiveAbandonedCarts();
+            } catch (RuntimeException e) {
+                logger.error("Abandoned cart archiving failed: {}", e.getMessage());
+            }
+        }
+    }
+
+    // Each batch: one read, one bulk upsert into abandoned_carts, one bulk delete. A delete only
+    // matches if updatedAt is unchanged, so a cart the user came back to meanwhile stays put.
+    public long archiveAbandonedCarts() {
+        LocalDateTime cutoff = LocalDateTime.now().minusDays(abandonedAfterDays);
+        long archived = 0;
+        while (true) {
+            Query query = new Query(Criteria.where("updatedAt").lt(cutoff).and("items.0").exists(true))
+                    .with(Sort.by(Sort.Direction.ASC, "updatedAt"))
+                    .limit(batchSize);
+            List<Cart> carts = mongoTemplate.find(query, Cart.class);
+            if (carts.isEmpty()) {
+                break;
+            }
+
+            LocalDateTime archivedAt = LocalDateTime.now();
+            BulkOperations copies = mongoTemplate.bulkOps(BulkOperations.BulkMode.UNORDERED, AbandonedCart.class);
+            List<Query> removals = new ArrayList<>();
+            for (Cart cart : carts) {
+                copies.replaceOne(new Query(Criteria.where("id").is(cart.getCart_id())), toAbandoned(cart, archivedAt),
+                        FindAndReplaceOptions.options().upsert());
+                removals.add(new Query(Criteria.where("cart_id").is(cart.getCart_id()).and("updatedAt").is(cart.getUpdatedAt())));
+            }
+            copies.execute();
+            archived += mongoTemplate.bulkOps(BulkOperations.BulkMode.UNORDERED, Cart.class)
+                    .remove(removals)
+                    .execute()
+                    .getDeletedCount();
+
+            if (carts.size() < batchSize) {
+                break;
+            }
+        }
+        if (archived > 0) {
+            logger.info("Archived {} abandoned carts", archived);
+        }
+        return archived;
+    }
+
+    private static AbandonedCart toAbandoned(Cart cart, LocalDateTime archivedAt) {
+        AbandonedCart abandoned = new AbandonedCart();
+        abandoned.setId(cart.getCart_id());
+        abandoned.setUserId(cart.getUserId());
+        List<AbandonedCart.Line> lines = new ArrayList<>();
+        int itemCount = 0;
+        double total = 0;
+        for (Cart.CartItem item : cart.getItems()) {
+            AbandonedCart.Line line = new AbandonedCart.Line();
+            line.setBookId(item.getBookId());
+            line.setQuantity(item.getQuantity());
+            line.setPrice(item.getPrice());
+            lines.add(line);
+            itemCount += item.getQuantity();
+            total += item.getPrice() * item.getQuantity();
+        }
+        abandoned.setItems(lines);
+        abandoned.setItemCount(itemCount);
+        abandoned.setTotal(total);
+        abandoned.setLastActiveAt(cart.getUpdatedAt());
+        abandoned.setArchivedAt(archivedAt);
+        return abandoned;
+    }
+}
@@ -1,23 +1,40 @@
 package com.bookstore.backend.service;
 
+import com.bookstore.backend.dto.CartValidation;
 import com.bookstore.backend.model.Cart;
 import com.bookstore.backend.model.Book;
+import com.bookstore.backend.model.Order;
 import com.bookstore.backend.repository.CartRepository;
 import com.bookstore.backend.repository.BookRepository;
+import org.bson.Document;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.dao.DuplicateKeyException;
+import org.springframework.data.mongodb.core.BulkOperations;
+import org.springframework.data.mongodb.core.FindAndModifyOptions;
+import org.springframework.data.mongodb.core.MongoTemplate;
+import org.springframework.data.mongodb.core.query.Criteria;
+import org.springframework.data.mongodb.core.query.Query;
+import org.springframework.data.mongodb.core.query.Update;
 import org.springframework.stereotype.Service;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
 import java.time.LocalDateTime;
 import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
 import java.util.List;
+import java.util.Map;
+import java.util.Objects;
 import java.util.Optional;
 
 @Service
 public class CartService {
 
     private static final Logger logger = LoggerFactory.getLogger(CartService.class);
+    private static final FindAndModifyOptions RETURN_NEW = FindAndModifyOptions.options().returnNew(true);
+    private static final FindAndModifyOptions UPSERT = FindAndModifyOptions.options().returnNew(true).upsert(true);
+    private static final int MAX_ATTEMPTS = 5;
 
     @Autowired
     private CartRepository cartRepository;
@@ -25,22 +42,33 @@ public class CartService {
     @Autowired
     private BookRepository bookRepository;
 
+    @Autowired
+    private BookCache bookCache;
+
+    @Autowired
+    private MongoTemplate mongoTemplate;
+
+    @Autowired
+    private OrderService orderService;
+
+    @Autowired
+    private CartSessionStore sessionStore; // Used instead of direct writes when cart.store.mode=write-behind
+
+    // Reads never write: a user without a cart gets an unsaved empty one, and the document is
+    // created by the first add (see addToCart)
     public Cart getCartByUserId(String userId) {
-        Optional<Cart> cartOptional = cartRepository.findByUserId(userId);
-        if (cartOptional.isPresent()) {
-            return cartOptional.get();
-        } else {
-            // Create new cart for user
-            Cart newCart = new Cart();
-            newCart.setUserId(userId);
-            newCart.setItems(new ArrayList<>());
-            return cartRepository.save(newCart);
+        if (sessionStore.isEnabled()) {
+            return sessionStore.get(userId);
         }
+        return cartRepository.findByUserId(userId).orElseGet(() -> emptyCart(userId));
     }
 
+    // Single-round-trip updates: each mutation is one findAndModify that changes only the targeted
+    // item and returns the new document, so concurrent requests for the same cart never overwrite
+    // each other. Stock checks live in the filters, so a lost race shows up as "no match".
     public Cart addToCart(String userId, String bookId, int quantity) {
         // Validate book exists and has sufficient stock
-        Optional<Book> bookOptional = bookRepository.findById(bookId);
+        Optional<Book> bookOptional = bookCache.findById(bookId);
         if (!bookOptional.isPresent()) {
             throw new IllegalArgumentException("Book not found");
         }
@@ -49,36 +77,52 @@ public class CartService {
         if (book.getStockQuantity() < quantity) {
             throw new IllegalArgumentException("Insufficient stock. Available: " + book.getStockQuantity());
         }
+        if (sessionStore.isEnabled()) {
+            return sessionStore.add(userId, book, quantity);
+        }
 
-        Cart cart = getCartByUserId(userId);
-        
-        // Check if item already exists in cart
-        Optional<Cart.CartItem> existingItem = cart.getItems().stream()
-            .filter(item -> item.getBookId().equals(bookId))
-            .findFirst();
-
-        if (existingItem.isPresent()) {
-            // Update quantity
-            Cart.CartItem item = existingItem.get();
-            int newQuantity = item.getQuantity() + quantity;
-            if (newQuantity > book.getStockQuantity()) {
+        for (int attempt = 0; attempt < MAX_ATTEMPTS; attempt++) {
+            // Already in the cart: $inc it if the new total still fits the stock
+            Query existing = new Query(Criteria.where("userId").is(userId)
+                    .and("items").elemMatch(Criteria.where("bookId").is(bookId)
+                            .and("quantity").lte(book.getStockQuantity() - quantity)));
+            Cart cart = mongoTemplate.findAndModify(existing,
+                    new Update().inc("items.$.quantity", quantity).set("updatedAt", LocalDateTime.now()),
+                    RETURN_NEW, Cart.class);
+            if (cart != null) {
+                return cart;
+            }
+
+            // Not in the cart: $push it, guarded so a concurrent push of the same book can't duplicate it.
+            // Upserts the cart on the first add; if the cart exists but already has the book, the upsert
+            // collides with the unique userId index instead of creating a second cart.
+            Query absent = new Query(Criteria.where("userId").is(userId).and("items.bookId").ne(bookId));
+            try {
+                cart = mongoTemplate.findAndModify(absent,
+                        new Update().push("items", newItem(book, quantity))
+                                .set("updatedAt", LocalDateTime.now())
+                                .setOnInsert("createdAt", LocalDateTime.now()),
+                        UPSERT, Cart.class);
+                if (cart != null) {
+                    return cart;
+                }
+            } catch (DuplicateKeyException e) {
+                // Another request created the cart or pushed the book first
+            }
+
+            // The item would exceed the stock, or another request got in between
+            Optional<Cart> current = cartRepository.findByUserId(userId);
+            if (!current.isPresent()) {
+                continue;
+            }
+            Optional<Cart.CartItem> item = current.get().getItems().stream()
+                .filter(i -> i.getBookId().equals(bookId))
+                .findFirst();
+            if (item.isPresent() && item.get().getQuantity() + quantity > book.getStockQuantity()) {
                 throw new IllegalArgumentException("Insufficient stock. Available: " + book.getStockQuantity());
             }
-            item.setQuantity(newQuantity);
-        } else {
-            // Add new item
-            Cart.CartItem newItem = new Cart.CartItem();
-            newItem.setBookId(bookId);
-            newItem.setTitle(book.getTitle());
-            newItem.setAuthor(book.getAuthor());
-            newItem.setPrice(book.getPrice());
-            newItem.setQuantity(quantity);
-            newItem.setCoverImageUrl(book.getCoverImageUrl());
-            cart.getItems().add(newItem);
-        }
-
-        cart.setUpdatedAt(LocalDateTime.now());
-        return cartRepository.save(cart);
+        }
+        throw new RuntimeException("Cart is being updated concurrently, please retry");
     }
 
     public Cart updateCartItemQuantity(String userId, String bookId, int quantity) {
@@ -86,45 +130,58 @@ public class CartService {
             return removeFromCart(userId, bookId);
         }
 
-        Cart cart = getCartByUserId(userId);
-        
-        // Find and update the item
-        Optional<Cart.CartItem> itemOptional = cart.getItems().stream()
-            .filter(item -> item.getBookId().equals(bookId))
-            .findFirst();
-
-        if (!itemOptional.isPresent()) {
-            throw new IllegalArgumentException("Item not found in cart");
-        }
-
         // Validate stock
-        Optional<Book> bookOptional = bookRepository.findById(bookId);
+        Optional<Book> bookOptional = bookCache.findById(bookId);
         if (bookOptional.isPresent()) {
             Book book = bookOptional.get();
             if (quantity > book.getStockQuantity()) {
                 throw new IllegalArgumentException("Insufficient stock. Available: " + book.getStockQuantity());
             }
         }
+        if (sessionStore.isEnabled()) {
+            return sessionStore.setQuantity(userId, bookId, quantity);
+        }
 
-        Cart.CartItem item = itemOptional.get();
-        item.setQuantity(quantity);
-        cart.setUpdatedAt(LocalDateTime.now());
-        
-        return cartRepository.save(cart);
+        Query query = new Query(Criteria.where("userId").is(userId).and("items.bookId").is(bookId));
+        Cart cart = mongoTemplate.findAndModify(query,
+                new Update().set("items.$.quantity", quantity).set("updatedAt", LocalDateTime.now()),
+                RETURN_NEW, Cart.class);
+        if (cart == null) {
+            throw new IllegalArgumentException("Item not found in cart");
+        }
+        return cart;
     }
 
     public Cart removeFromCart(String userId, String bookId) {
-        Cart cart = getCartByUserId(userId);
-        cart.getItems().removeIf(item -> item.getBookId().equals(bookId));
-        cart.setUpdatedAt(LocalDateTime.now());
-        return cartRepository.save(cart);
+        if (sessionStore.isEnabled()) {
+            return sessionStore.remove(userId, bookId);
+        }
+        Cart cart = mongoTemplate.findAndModify(new Query(Criteria.where("userId").is(userId)),
+                new Update().pull("items", new Document("bookId", bookId)).set("updatedAt", LocalDateTime.now()),
+                RETURN_NEW, Cart.class);
+        return cart != null ? cart : emptyCart(userId);
+    }
+
+    static Cart.CartItem newItem(Book book, int quantity) {
+        Cart.CartItem item = new Cart.CartItem();
+        item.setBookId(book.getBook_id());
+        item.setTitle(book.getTitle());
+        item.setAuthor(book.getAuthor());
+        item.setPrice(book.getPrice());
+        item.setQuantity(quantity);
+        item.setCoverImageUrl(book.getCoverImageUrl());
+        return item;
     }
 
     public Cart clearCart(String userId) {
         // Delete the entire cart document from database
-        cartRepository.deleteByUserId(userId);
+        deleteCartByUserId(userId);
         
         // Return a new empty cart for consistency
+        return emptyCart(userId);
+    }
+
+    static Cart emptyCart(String userId) {
         Cart newCart = new Cart();
         newCart.setUserId(userId);
         newCart.setItems(new ArrayList<>());
@@ -132,13 +189,189 @@ public class CartService {
     }
 
     public void deleteCartByUserId(String userId) {
+        if (sessionStore.isEnabled()) {
+            sessionStore.delete(userId);
+            return;
+        }
         cartRepository.deleteByUserId(userId);
     }
 
+    // Priced from the catalog cache, not the prices captured when each line was added
     public double getCartTotal(String userId) {
         Cart cart = getCartByUserId(userId);
         return cart.getItems().stream()
-            .mapToDouble(item -> item.getPrice() * item.getQuantity())
+            .mapToDouble(item -> bookCache.findById(item.getBookId()).map(Book::getPrice).orElse(item.getPrice())
+                    * item.getQuantity())
             .sum();
     }
+
+    public CartValidation validateCart(String userId) {
+        return revalidate(userId).validation;
+    }
+
+    // Places an order for the cart, reusing the books read during revalidation so order placement
+    // does not fetch them again, then takes the ordered quantities out of the cart
+    public Order checkout(String userId, String shippingAddress, String phoneNumber, String paymentId) {
+        Revalidated revalidated = revalidate(userId);
+        CartValidation validation = revalidated.validation;
+        if (validation.getCart().getItems().isEmpty()) {
+            throw new IllegalArgumentException("Cart is empty");
+        }
+        if (!validation.isValid()) {
+            List<String> problems = new ArrayList<>();
+            for (CartValidation.LineChange change : validation.getChanges()) {
+                if ("UNAVAILABLE".equals(change.getProblem())) {
+                    problems.add("'" + change.getTitle() + "' is no longer available");
+                } else if (change.getProblem() != null) {
+                    problems.add("Insufficient stock for '" + change.getTitle() + "'. Available: " + change.getAvailableStock());
+                }
+            }
+            throw new IllegalArgumentException(String.join("; ", problems));
+        }
+
+        Order order = new Order();
+        order.setUserId(userId);
+        order.setShippingAddress(shippingAddress);
+        order.setPhoneNumber(phoneNumber);
+        order.setPaymentId(paymentId);
+        List<Order.OrderItem> items = new ArrayList<>();
+        Map<String, Integer> ordered = new LinkedHashMap<>();
+        for (Cart.CartItem line : validation.getCart().getItems()) {
+            Order.OrderItem item = new Order.OrderItem();
+            item.setBook_id(line.getBookId());
+            item.setQuantity(line.getQuantity());
+            items.add(item);
+            ordered.merge(line.getBookId(), line.getQuantity(), Integer::sum);
+        }
+        order.setItems(items);
+
+        Order placed = orderService.placeOrder(order, revalidated.books);
+        removeOrderedLines(userId, ordered);
+        return placed;
+    }
+
+    // Lines added or raised by another tab after the cart was read stay in the cart: each ordered
+    // line loses only the quantity that was ordered. One ordered bulk write: lines fully ordered are
+    // pulled first, the rest decremented, and the cart is deleted if nothing is left.
+    private void removeOrderedLines(String userId, Map<String, Integer> ordered) {
+        if (sessionStore.isEnabled()) {
+            sessionStore.subtract(userId, ordered);
+            return;
+        }
+        BulkOperations bulk = mongoTemplate.bulkOps(BulkOperations.BulkMode.ORDERED, Cart.class);
+        LocalDateTime now = LocalDateTime.now();
+        for (Map.Entry<String, Integer> entry : ordered.entrySet()) {
+            bulk.updateOne(new Query(Criteria.where("userId").is(userId)),
+                    new Update().pull("items", new Document("bookId", entry.getKey())
+                            .append("quantity", new Document("$lte", entry.getValue())))
+                            .set("updatedAt", now));
+            bulk.updateOne(new Query(Criteria.where("userId").is(userId)
+                            .and("items").elemMatch(Criteria.where("bookId").is(entry.getKey())
+                                    .and("quantity").gt(entry.getValue()))),
+                    new Update().inc("items.$.quantity", -entry.getValue()).set("updatedAt", now));
+        }
+        bulk.remove(new Query(Criteria.where("userId").is(userId).and("items").size(0)));
+        bulk.execute();
+    }
+
+    // Reads every book in the cart with one findAllById, brings each line's title, price and cover
+    // up to date (saving the lines that changed in one bulk write) and reports price and stock changes
+    private Revalidated revalidate(String userId) {
+        Cart cart = getCartByUserId(userId);
+        List<String> bookIds = cart.getItems().stream().map(Cart.CartItem::getBookId).distinct().toList();
+        Map<String, Book> books = new HashMap<>();
+        if (!bookIds.isEmpty()) {
+            for (Book book : bookRepository.findAllById(bookIds)) {
+                books.put(book.getBook_id(), book);
+            }
+        }
+
+        CartValidation validation = new CartValidation();
+        Map<String, Integer> quantities = new HashMap<>();
+        for (Cart.CartItem item : cart.getItems()) {
+            quantities.merge(item.getBookId(), item.getQuantity(), Integer::sum);
+        }
+        boolean valid = true;
+        double previousTotal = 0;
+        double total = 0;
+        List<Cart.CartItem> refreshed = new ArrayList<>();
+        for (Cart.CartItem item : cart.getItems()) {
+            previousTotal += item.getPrice() * item.getQuantity();
+            Book book = books.get(item.getBookId());
+
+            CartValidation.LineChange change = new CartValidation.LineChange();
+            change.setBookId(item.getBookId());
+            change.setTitle(item.getTitle());
+            change.setQuantity(item.getQuantity());
+            change.setPreviousPrice(item.getPrice());
+            if (book == null) {
+                change.setCurrentPrice(item.getPrice());
+                change.setProblem("UNAVAILABLE");
+                validation.getChanges().add(change);
+                total += item.getPrice() * item.getQuantity();
+                valid = false;
+                continue;
+            }
+
+            change.setTitle(book.getTitle());
+            change.setCurrentPrice(book.getPrice());
+            change.setAvailableStock(book.getStockQuantity());
+            if (book.getStockQuantity() < quantities.get(item.getBookId())) {
+                change.setProblem("INSUFFICIENT_STOCK");
+                valid = false;
+            }
+            if (change.getProblem() != null || Double.compare(item.getPrice(), book.getPrice()) != 0) {
+                validation.getChanges().add(change);
+            }
+
+            if (Double.compare(item.getPrice(), book.getPrice()) != 0
+                    || !Objects.equals(item.getTitle(), book.getTitle())
+                    || !Objects.equals(item.getAuthor(), book.getAuthor())
+                    || !Objects.equals(item.getCoverImageUrl(), book.getCoverImageUrl())) {
+                item.setPrice(book.getPrice());
+                item.setTitle(book.getTitle());
+                item.setAuthor(book.getAuthor());
+                item.setCoverImageUrl(book.getCoverImageUrl());
+                refreshed.add(item);
+            }
+            total += book.getPrice() * item.getQuantity();
+        }
+        if (!refreshed.isEmpty()) {
+            saveRefreshedLines(userId, refreshed);
+        }
+
+        validation.setCart(cart);
+        validation.setValid(valid);
+        validation.setPreviousTotal(previousTotal);
+        validation.setTotal(total);
+        return new Revalidated(validation, books);
+    }
+
+    // Positional $set per changed line, so quantities changed meanwhile by other requests are kept
+    private void saveRefreshedLines(String userId, List<Cart.CartItem> lines) {
+        if (sessionStore.isEnabled()) {
+            sessionStore.refresh(userId, lines);
+            return;
+        }
+        BulkOperations bulk = mongoTemplate.bulkOps(BulkOperations.BulkMode.UNORDERED, Cart.class);
+        for (Cart.CartItem line : lines) {
+            bulk.updateOne(new Query(Criteria.where("userId").is(userId).and("items.bookId").is(line.getBookId())),
+                    new Update()
+                            .set("items.$.price", line.getPrice())
+                            .set("items.$.title", line.getTitle())
+                            .set("items.$.author", line.getAuthor())
+                            .set("items.$.coverImageUrl", line.getCoverImageUrl()));
+        }
+        bulk.execute();
+    }
+
+    private static final class Revalidated {
+        final CartValidation validation;
+        final Map<String, Book> books;
+
+        Revalidated(CartValidation validation, Map<String, Book> books) {
+            this.validation = validation;
+            this.books = books;
+        }
+    }
 }
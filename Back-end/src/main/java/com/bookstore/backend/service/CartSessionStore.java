@@ -0,0 +1,495 @@
+package com.bookstore.backend.service;
+
+import com.bookstore.backend.model.Book;
+import com.bookstore.backend.model.Cart;
+import com.bookstore.backend.model.CartLease;
+import com.mongodb.client.result.UpdateResult;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.dao.DuplicateKeyException;
+import org.springframework.data.mongodb.core.BulkOperations;
+import org.springframework.data.mongodb.core.MongoTemplate;
+import org.springframework.data.mongodb.core.query.Criteria;
+import org.springframework.data.mongodb.core.query.Query;
+import org.springframework.data.mongodb.core.query.Update;
+import org.springframework.stereotype.Service;
+
+import java.time.Instant;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.Set;
+import java.util.UUID;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Consumer;
+
+// Write-behind cart store, used when cart.store.mode=write-behind. Active carts live in memory in
+// shards keyed by userId; a mutation changes the in-memory cart and marks it dirty, and every
+// flush-ms the dirty carts are written to the carts collection in one unordered bulk write, so
+// any number of clicks within a window cost one write. flush-ms is the durability window: a crash
+// loses at most that much cart activity. Everything is flushed on shutdown.
+//
+// A node only holds a cart while it owns the user's cart_leases entry (taken when the cart is
+// loaded, renewed while the cart is active, released when it goes idle), so with several nodes
+// a cart is only ever written by one of them. Each load stamps the lease with a fresh token and
+// renewal and release go by that token, so a late release can't remove the lease of a newer
+// session and a session whose lease was lost is dropped instead of renewed. Route requests by userId (sticky sessions); a
+// request that lands elsewhere while the lease is held fails until the lease is released.
+//
+// The flush runs on its own thread rather than the shared @Scheduled pool: a long scheduled job
+// there would stretch the durability window and, past lease-ms, let another node take the leases
+// of carts still dirty here.
+@Service
+public class CartSessionStore {
+
+    private static final Logger logger = LoggerFactory.getLogger(CartSessionStore.class);
+    private static final int WRITE_BATCH = 1000;
+
+    private final MongoTemplate mongoTemplate;
+    private final String nodeId;
+    private final boolean enabled;
+    private final long leaseMs;
+    private final long flushMs;
+    private final Shard[] shards;
+    private volatile long leasesRenewedAt;
+    private ScheduledExecutorService flusher;
+
+    public CartSessionStore(MongoTemplate mongoTemplate, SchedulerLeader schedulerLeader,
+            @Value("${cart.store.mode:direct}") String mode,
+            @Value("${cart.write-behind.shards:64}") int shardCount,
+            @Value("${cart.write-behind.lease-ms:30000}") long leaseMs,
+            @Value("${cart.write-behind.flush-ms:1000}") long flushMs) {
+        this.mongoTemplate = mongoTemplate;
+        this.nodeId = schedulerLeader.getNodeId();
+        if ("write-behind".equalsIgnoreCase(mode)) {
+            this.enabled = true;
+        } else if ("direct".equalsIgnoreCase(mode)) {
+            this.enabled = false;
+        } else {
+            throw new IllegalArgumentException("Invalid cart.store.mode. Must be direct or write-behind");
+        }
+        this.leaseMs = leaseMs;
+        this.flushMs = flushMs;
+        this.shards = new Shard[Math.max(1, shardCount)];
+        for (int i = 0; i < shards.length; i++) {
+            shards[i] = new Shard();
+        }
+    }
+
+    @PostConstruct
+    public void start() {
+        if (!enabled) {
+            return;
+        }
+        flusher = Executors.newSingleThreadScheduledExecutor(runnable -> {
+            Thread thread = new Thread(runnable, "cart-write-behind");
+            thread.setDaemon(true);
+            return thread;
+        });
+        flusher.scheduleWithFixedDelay(() -> {
+            try {
+                flush();
+            } catch (RuntimeException e) {
+                // An escaping exception would cancel the schedule
+                logger.error("Cart write-behind flush failed: {}", e.getMessage());
+            }
+        }, flushMs, flushMs, TimeUnit.MILLISECONDS);
+    }
+
+    public boolean isEnabled() {
+        return enabled;
+    }
+
+    // A cart that is not active here is read straight from Mongo without taking a lease, so
+    // browsing doesn't create sessions
+    public Cart get(String userId) {
+        Shard shard = shardFor(userId);
+        synchronized (shard) {
+            Session session = shard.sessions.get(userId);
+            if (session != null) {
+                session.lastAccess = System.currentTimeMillis();
+                return copy(session.cart);
+            }
+        }
+        Cart stored = mongoTemplate.findOne(byUser(userId), Cart.class);
+        return stored != null ? stored : CartService.emptyCart(userId);
+    }
+
+    public Cart add(String userId, Book book, int quantity) {
+        return mutate(userId, cart -> {
+            Optional<Cart.CartItem> existing = find(cart, book.getBook_id());
+            if (existing.isPresent()) {
+                int newQuantity = existing.get().getQuantity() + quantity;
+                if (newQuantity > book.getStockQuantity()) {
+                    throw new IllegalArgumentException("Insufficient stock. Available: " + book.getStockQuantity());
+                }
+                existing.get().setQuantity(newQuantity);
+            } else {
+                cart.getItems().add(CartService.newItem(book, quantity));
+            }
+        });
+    }
+
+    public Cart setQuantity(String userId, String bookId, int quantity) {
+        return mutate(userId, cart -> find(cart, bookId)
+                .orElseThrow(() -> new IllegalArgumentException("Item not found in cart"))
+                .setQuantity(quantity));
+    }
+
+    public Cart remove(String userId, String bookId) {
+        return mutate(userId, cart -> cart.getItems().removeIf(item -> item.getBookId().equals(bookId)));
+    }
+
+    // Copies refreshed title, price and cover onto the matching lines
+    public void refresh(String userId, List<Cart.CartItem> lines) {
+        mutate(userId, cart -> {
+            for (Cart.CartItem line : lines) {
+                find(cart, line.getBookId()).ifPresent(item -> {
+                    item.setPrice(line.getPrice());
+                    item.setTitle(line.getTitle());
+                    item.setAuthor(line.getAuthor());
+                    item.setCoverImageUrl(line.getCoverImageUrl());
+                });
+            }
+        });
+    }
+
+    // Takes ordered quantities off their lines, dropping lines that reach zero; lines added since
+    // the order was built are kept
+    public void subtract(String userId, Map<String, Integer> quantities) {
+        mutate(userId, cart -> {
+            for (Cart.CartItem item : cart.getItems()) {
+                item.setQuantity(item.getQuantity() - quantities.getOrDefault(item.getBookId(), 0));
+            }
+            cart.getItems().removeIf(item -> item.getQuantity() <= 0);
+        });
+    }
+
+    // Empties the cart; the flush deletes the document
+    public void delete(String userId) {
+        mutate(userId, cart -> cart.getItems().clear());
+    }
+
+    // Applies the change to the live session under its shard lock and returns a copy, so callers
+    // (and JSON serialization) never see a cart that another request is changing
+    private Cart mutate(String userId, Consumer<Cart> change) {
+        Shard shard = shardFor(userId);
+        while (true) {
+            Session session = session(shard, userId);
+            synchronized (shard) {
+                if (shard.sessions.get(userId) != session) {
+                    continue; // Evicted between load and lock
+                }
+                session.lastAccess = System.currentTimeMillis();
+                change.accept(session.cart);
+                session.cart.setUpdatedAt(LocalDateTime.now());
+                shard.dirty.add(userId);
+                return copy(session.cart);
+            }
+        }
+    }
+
+    private Session session(Shard shard, String userId) {
+        Load load;
+        synchronized (shard) {
+            Session session = shard.sessions.get(userId);
+            if (session != null) {
+                return session;
+            }
+            // Concurrent loads of one cart share a token, so the lease holds the one the session keeps
+            load = shard.loading.computeIfAbsent(userId, id -> new Load());
+            load.waiters++;
+        }
+
+        // Claim and load outside the shard lock so one slow read doesn't stall the shard
+        try {
+            long leaseExpiresAt = acquireLease(userId, load.token);
+            Cart stored = mongoTemplate.findOne(byUser(userId), Cart.class);
+            synchronized (shard) {
+                return shard.sessions.computeIfAbsent(userId, id -> new Session(
+                        stored != null ? stored : CartService.emptyCart(id), load.token, leaseExpiresAt));
+            }
+        } finally {
+            synchronized (shard) {
+                if (--load.waiters == 0) {
+                    shard.loading.remove(userId);
+                }
+            }
+        }
+    }
+
+    // Same conditional-upsert pattern as SchedulerLeader: no match means another node's live lease
+    private long acquireLease(String userId, String token) {
+        Instant now = Instant.now();
+        Instant expiresAt = now.plusMillis(leaseMs);
+        Query free = new Query(Criteria.where("userId").is(userId).orOperator(
+                Criteria.where("owner").is(nodeId),
+                Criteria.where("expiresAt").lt(now)));
+        try {
+            mongoTemplate.upsert(free, new Update()
+                    .set("owner", nodeId)
+                    .set("token", token)
+                    .set("expiresAt", expiresAt), CartLease.class);
+        } catch (DuplicateKeyException e) {
+            throw new IllegalStateException("Cart is active on another server, please retry shortly");
+        }
+        return expiresAt.toEpochMilli();
+    }
+
+    public void flush() {
+        if (!enabled) {
+            return;
+        }
+        long now = System.currentTimeMillis();
+        long idleMs = leaseMs / 2;
+        Map<String, Cart> writes = new HashMap<>();
+        List<Session> active = new ArrayList<>();
+        List<Session> evicted = new ArrayList<>();
+        int lost = 0;
+
+        for (Shard shard : shards) {
+            synchronized (shard) {
+                // Drop carts whose lease ran out (renewal kept failing, so another node may hold them
+                // now) and evict idle carts that were already written, before taking the dirty set.
+                // A cart still being loaded keeps its session: the load renews the same lease.
+                Iterator<Map.Entry<String, Session>> sessions = shard.sessions.entrySet().iterator();
+                while (sessions.hasNext()) {
+                    Map.Entry<String, Session> entry = sessions.next();
+                    Session session = entry.getValue();
+                    if (session.leaseExpiresAt <= now) {
+                        sessions.remove();
+                        shard.dirty.remove(entry.getKey());
+                        lost++;
+                    } else if (now - session.lastAccess > idleMs && !shard.dirty.contains(entry.getKey())
+                            && !shard.loading.containsKey(entry.getKey())) {
+                        sessions.remove();
+                        evicted.add(session);
+                    } else {
+                        active.add(session);
+                    }
+                }
+                for (String userId : shard.dirty) {
+                    writes.put(userId, copy(shard.sessions.get(userId).cart));
+                }
+                shard.dirty.clear();
+            }
+        }
+        if (lost > 0) {
+            logger.warn("Dropped {} carts whose lease expired before it could be renewed", lost);
+        }
+
+        try {
+            write(writes);
+        } catch (RuntimeException e) {
+            logger.error("Cart write-behind flush of {} carts failed, retrying next round: {}", writes.size(), e.getMessage());
+            for (String userId : writes.keySet()) {
+                Shard shard = shardFor(userId);
+                synchronized (shard) {
+                    if (shard.sessions.containsKey(userId)) {
+                        shard.dirty.add(userId);
+                    }
+                }
+            }
+        }
+
+        try {
+            if (now - leasesRenewedAt > leaseMs / 3) {
+                renewLeases(active, now);
+                leasesRenewedAt = now;
+            }
+            releaseLeases(evicted);
+        } catch (RuntimeException e) {
+            logger.warn("Cart lease maintenance failed: {}", e.getMessage());
+        }
+    }
+
+    // One unordered bulk write per batch: upsert non-empty carts, delete emptied ones
+    private void write(Map<String, Cart> carts) {
+        BulkOperations bulk = null;
+        int pending = 0;
+        for (Map.Entry<String, Cart> entry : carts.entrySet()) {
+            if (bulk == null) {
+                bulk = mongoTemplate.bulkOps(BulkOperations.BulkMode.UNORDERED, Cart.class);
+            }
+            Cart cart = entry.getValue();
+            if (cart.getItems().isEmpty()) {
+                bulk.remove(byUser(entry.getKey()));
+            } else {
+                bulk.upsert(byUser(entry.getKey()), new Update()
+                        .set("items", cart.getItems())
+                        .set("updatedAt", cart.getUpdatedAt())
+                        .setOnInsert("createdAt", cart.getCreatedAt()));
+            }
+            if (++pending == WRITE_BATCH) {
+                bulk.execute();
+                bulk = null;
+                pending = 0;
+            }
+        }
+        if (bulk != null) {
+            bulk.execute();
+        }
+    }
+
+    // A lease that doesn't match its session's token was taken over after expiring; that session
+    // is dropped so its cart isn't written over the new owner's
+    private void renewLeases(List<Session> sessions, long now) {
+        long expiresAt = now + leaseMs;
+        for (int from = 0; from < sessions.size(); from += WRITE_BATCH) {
+            List<Session> batch = sessions.subList(from, Math.min(from + WRITE_BATCH, sessions.size()));
+            UpdateResult result = mongoTemplate.updateMulti(byLease(batch),
+                    new Update().set("expiresAt", Instant.ofEpochMilli(expiresAt)), CartLease.class);
+
+            Set<String> renewed = new HashSet<>();
+            if (result.getMatchedCount() == batch.size()) {
+                batch.forEach(session -> renewed.add(session.leaseToken));
+            } else {
+                Query held = byLease(batch);
+                held.fields().include("token");
+                mongoTemplate.find(held, CartLease.class).forEach(lease -> renewed.add(lease.getToken()));
+            }
+
+            int lost = 0;
+            for (Session session : batch) {
+                if (renewed.contains(session.leaseToken)) {
+                    session.leaseExpiresAt = expiresAt;
+                } else if (drop(session)) {
+                    lost++;
+                }
+            }
+            if (lost > 0) {
+                logger.warn("Dropped {} carts whose lease was taken by another server", lost);
+            }
+        }
+    }
+
+    private void releaseLeases(List<Session> sessions) {
+        for (int from = 0; from < sessions.size(); from += WRITE_BATCH) {
+            mongoTemplate.remove(byLease(sessions.subList(from, Math.min(from + WRITE_BATCH, sessions.size()))), CartLease.class);
+        }
+    }
+
+    private boolean drop(Session session) {
+        String userId = session.cart.getUserId();
+        Shard shard = shardFor(userId);
+        synchronized (shard) {
+            if (shard.sessions.get(userId) != session) {
+                return false;
+            }
+            shard.sessions.remove(userId);
+            shard.dirty.remove(userId);
+            return true;
+        }
+    }
+
+    // The leases these sessions hold: _id narrows to the users, the token to this load of each cart
+    private static Query byLease(List<Session> sessions) {
+        List<String> userIds = new ArrayList<>();
+        List<String> tokens = new ArrayList<>();
+        for (Session session : sessions) {
+            userIds.add(session.cart.getUserId());
+            tokens.add(session.leaseToken);
+        }
+        return new Query(Criteria.where("userId").in(userIds).and("token").in(tokens));
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        if (!enabled) {
+            return;
+        }
+        if (flusher != null) {
+            flusher.shutdown();
+            try {
+                flusher.awaitTermination(10, TimeUnit.SECONDS);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+        }
+        flush();
+        List<Session> held = new ArrayList<>();
+        for (Shard shard : shards) {
+            synchronized (shard) {
+                held.addAll(shard.sessions.values());
+                shard.sessions.clear();
+            }
+        }
+        releaseLeases(held);
+    }
+
+    private Shard shardFor(String userId) {
+        return shards[Math.floorMod(userId.hashCode(), shards.length)];
+    }
+
+    private static Optional<Cart.CartItem> find(Cart cart, String bookId) {
+        return cart.getItems().stream()
+            .filter(item -> item.getBookId().equals(bookId))
+            .findFirst();
+    }
+
+    private static Query byUser(String userId) {
+        return new Query(Criteria.where("userId").is(userId));
+    }
+
+    private static Cart copy(Cart cart) {
+        Cart copy = new Cart();
+        copy.setCart_id(cart.getCart_id());
+        copy.setUserId(cart.getUserId());
+        copy.setCreatedAt(cart.getCreatedAt());
+        copy.setUpdatedAt(cart.getUpdatedAt());
+        List<Cart.CartItem> items = new ArrayList<>();
+        if (cart.getItems() != null) {
+            for (Cart.CartItem item : cart.getItems()) {
+                Cart.CartItem itemCopy = new Cart.CartItem();
+                itemCopy.setBookId(item.getBookId());
+                itemCopy.setTitle(item.getTitle());
+                itemCopy.setAuthor(item.getAuthor());
+                itemCopy.setPrice(item.getPrice());
+                itemCopy.setQuantity(item.getQuantity());
+                itemCopy.setCoverImageUrl(item.getCoverImageUrl());
+                items.add(itemCopy);
+            }
+        }
+        copy.setItems(items);
+        return copy;
+    }
+
+    private static final class Session {
+        final Cart cart;
+        final String leaseToken;
+        volatile long leaseExpiresAt;
+        long lastAccess = System.currentTimeMillis();
+
+        Session(Cart cart, String leaseToken, long leaseExpiresAt) {
+            this.cart = cart;
+            this.leaseToken = leaseToken;
+            this.leaseExpiresAt = leaseExpiresAt;
+            if (cart.getItems() == null) {
+                cart.setItems(new ArrayList<>());
+            }
+        }
+    }
+
+    // A cart being claimed and read; removed when the last concurrent load of it finishes
+    private static final class Load {
+        final String token = UUID.randomUUID().toString();
+        int waiters;
+    }
+
+    private static final class Shard {
+        final Map<String, Session> sessions = new HashMap<>();
+        final Set<String> dirty = new LinkedHashSet<>();
+        final Map<String, Load> loading = new HashMap<>();
+    }
+}
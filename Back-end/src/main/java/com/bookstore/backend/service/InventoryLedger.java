@@ -0,0 +1,266 @@
+package com.bookstore.backend.service;
+
+import com.bookstore.backend.dto.StockAtDate;
+import com.bookstore.backend.model.Book;
+import com.bookstore.backend.model.InventoryMovement;
+import com.bookstore.backend.model.InventorySnapshot;
+import jakarta.annotation.PreDestroy;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.data.domain.Sort;
+import org.springframework.data.mongodb.core.MongoTemplate;
+import org.springframework.data.mongodb.core.index.Index;
+import org.springframework.data.mongodb.core.query.Criteria;
+import org.springframework.data.mongodb.core.query.Query;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+
+import java.time.LocalDateTime;
+import java.time.YearMonth;
+import java.time.format.DateTimeFormatter;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+
+// Append-only record of every stock movement, partitioned into one collection per month so old
+// months can be archived or dropped whole. Book.stockQuantity stays the live snapshot; history and
+// stock-at-date come from the daily inventory_snapshots plus a replay of at most one interval.
+// Movements are buffered and written with one insertMany per month every flush-ms or batch-size
+// entries, so the order path never waits on the ledger; a crash can lose the unflushed tail.
+@Service
+public class InventoryLedger {
+
+    private static final Logger logger = LoggerFactory.getLogger(InventoryLedger.class);
+
+    public static final String ORDER = "ORDER";
+    public static final String RESTOCK = "RESTOCK";
+    public static final String ADJUSTMENT = "ADJUSTMENT";
+    public static final String RETURN = "RETURN";
+
+    private static final String COLLECTION_PREFIX = "inventory_movements_";
+    private static final DateTimeFormatter MONTH_SUFFIX = DateTimeFormatter.ofPattern("yyyy_MM");
+    private static final int SNAPSHOT_BATCH = 1000;
+
+    @Autowired
+    private MongoTemplate mongoTemplate;
+
+    @Autowired
+    private SchedulerLeader schedulerLeader;
+
+    @Value("${inventory.ledger.batch-size:500}")
+    private int batchSize;
+
+    private final List<InventoryMovement> pending = new ArrayList<>();
+    private final Set<String> indexedCollections = ConcurrentHashMap.newKeySet();
+
+    public void record(String bookId, String type, int delta, String reference) {
+        if (delta == 0) {
+            return;
+        }
+        InventoryMovement movement = new InventoryMovement();
+        movement.setBookId(bookId);
+        movement.setType(type);
+        movement.setDelta(delta);
+        movement.setReference(reference);
+        movement.setAt(LocalDateTime.now());
+
+        boolean full;
+        synchronized (pending) {
+            pending.add(movement);
+            full = pending.size() >= batchSize;
+        }
+        if (full) {
+            flush();
+        }
+    }
+
+    // Positive changes are restocks, anything else an adjustment
+    public void recordChange(String bookId, int delta, String reference) {
+        record(bookId, delta > 0 ? RESTOCK : ADJUSTMENT, delta, reference);
+    }
+
+    @Scheduled(fixedDelayString = "${inventory.ledger.flush-ms:1000}")
+    public void flush() {
+        List<InventoryMovement> batch;
+        synchronized (pending) {
+            if (pending.isEmpty()) {
+                return;
+            }
+            batch = new ArrayList<>(pending);
+            pending.clear();
+        }
+
+        Map<String, List<InventoryMovement>> byMonth = new LinkedHashMap<>();
+        for (InventoryMovement movement : batch) {
+            byMonth.computeIfAbsent(collectionFor(movement.getAt()), name -> new ArrayList<>()).add(movement);
+        }
+        byMonth.forEach((collection, movements) -> {
+            try {
+                ensureIndexed(collection);
+                mongoTemplate.insert(movements, collection);
+            } catch (RuntimeException e) {
+                logger.error("Ledger write to {} failed, keeping {} movements for retry: {}",
+                        collection, movements.size(), e.getMessage());
+                int dropped;
+                synchronized (pending) {
+                    // Bounded so an outage can't exhaust memory
+                    int room = Math.max(0, batchSize * 100 - pending.size());
+                    dropped = Math.max(0, movements.size() - room);
+                    pending.addAll(0, movements.subList(0, movements.size() - dropped));
+                }
+                if (dropped > 0) {
+                    logger.warn("Ledger retry buffer is full, dropped {} movements for {}", dropped, collection);
+                }
+            }
+        });
+    }
+
+    // Movements for one book in [from, to], oldest first, reading only the months in range
+    public List<InventoryMovement> getMovements(String bookId, LocalDateTime from, LocalDateTime to, int limit) {
+        if (to.isBefore(from)) {
+            throw new IllegalArgumentException("'to' must not be before 'from'");
+        }
+        flush();
+        List<InventoryMovement> movements = new ArrayList<>();
+        for (YearMonth month = YearMonth.from(from); !month.isAfter(YearMonth.from(to)) && movements.size() < limit;
+                month = month.plusMonths(1)) {
+            Query query = new Query(Criteria.where("bookId").is(bookId).and("at").gte(from).lte(to))
+                    .with(Sort.by(Sort.Direction.ASC, "at"))
+                    .limit(limit - movements.size());
+            movements.addAll(mongoTemplate.find(query, InventoryMovement.class, collectionFor(month.atDay(1).atStartOfDay())));
+        }
+        return movements;
+    }
+
+    // Nearest snapshot at or before `at`, rolled forward; failing that the nearest later snapshot (or
+    // the live stock) rolled back. Either way only one snapshot interval of movements is replayed.
+    public StockAtDate getStockAt(String bookId, LocalDateTime at) {
+        flush();
+        StockAtDate result = new StockAtDate();
+        result.setBookId(bookId);
+        result.setAt(at);
+
+        InventorySnapshot before = mongoTemplate.findOne(new Query(Criteria.where("bookId").is(bookId).and("takenAt").lte(at))
+                .with(Sort.by(Sort.Direction.DESC, "takenAt")), InventorySnapshot.class);
+        if (before != null) {
+            List<InventoryMovement> replay = movementsBetween(bookId, before.getTakenAt(), at);
+            result.setQuantity(before.getQuantity() + sum(replay));
+            result.setBasedOn(before.getTakenAt());
+            result.setMovementsReplayed(replay.size());
+            return result;
+        }
+
+        InventorySnapshot after = mongoTemplate.findOne(new Query(Criteria.where("bookId").is(bookId).and("takenAt").gt(at))
+                .with(Sort.by(Sort.Direction.ASC, "takenAt")), InventorySnapshot.class);
+        int quantity;
+        LocalDateTime basedOn;
+        if (after != null) {
+            quantity = after.getQuantity();
+            basedOn = after.getTakenAt();
+        } else {
+            Query current = new Query(Criteria.where("book_id").is(bookId));
+            current.fields().include("stockQuantity");
+            Book book = mongoTemplate.findOne(current, Book.class);
+            if (book == null) {
+                throw new RuntimeException("Book not found");
+            }
+            quantity = book.getStockQuantity();
+            basedOn = LocalDateTime.now();
+        }
+        List<InventoryMovement> replay = movementsBetween(bookId, at, basedOn);
+        result.setQuantity(quantity - sum(replay));
+        result.setBasedOn(basedOn);
+        result.setMovementsReplayed(replay.size());
+        return result;
+    }
+
+    @Scheduled(cron = "${inventory.snapshot.cron:0 0 2 * * *}")
+    public void scheduledSnapshot() {
+        if (schedulerLeader.isLeader()) {
+            takeSnapshots();
+        }
+    }
+
+    // Copies every book's stockQuantity into inventory_snapshots, one keyset page of books at a time.
+    // Each page is stamped with the time it was read rather than the start of the run, so a movement
+    // recorded while the catalog is being walked is either in a snapshot's quantity or after its
+    // takenAt, never both; the remaining overlap is the duration of one page read.
+    public long takeSnapshots() {
+        flush();
+        long written = 0;
+        String afterId = null;
+        while (true) {
+            Query query = new Query();
+            if (afterId != null) {
+                query.addCriteria(Criteria.where("book_id").gt(afterId));
+            }
+            query.with(Sort.by(Sort.Direction.ASC, "book_id")).limit(SNAPSHOT_BATCH);
+            query.fields().include("stockQuantity");
+            List<Book> books = mongoTemplate.find(query, Book.class);
+            if (books.isEmpty()) {
+                break;
+            }
+
+            LocalDateTime takenAt = LocalDateTime.now();
+            List<InventorySnapshot> batch = new ArrayList<>(books.size());
+            for (Book book : books) {
+                InventorySnapshot snapshot = new InventorySnapshot();
+                snapshot.setBookId(book.getBook_id());
+                snapshot.setQuantity(book.getStockQuantity());
+                snapshot.setTakenAt(takenAt);
+                batch.add(snapshot);
+            }
+            mongoTemplate.insert(batch, InventorySnapshot.class);
+            written += batch.size();
+            if (books.size() < SNAPSHOT_BATCH) {
+                break;
+            }
+            afterId = books.get(books.size() - 1).getBook_id();
+        }
+        logger.info("Took inventory snapshot of {} books", written);
+        return written;
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        flush();
+    }
+
+    // Movements in (from, to]
+    private List<InventoryMovement> movementsBetween(String bookId, LocalDateTime from, LocalDateTime to) {
+        List<InventoryMovement> movements = new ArrayList<>();
+        for (YearMonth month = YearMonth.from(from); !month.isAfter(YearMonth.from(to)); month = month.plusMonths(1)) {
+            Query query = new Query(Criteria.where("bookId").is(bookId).and("at").gt(from).lte(to));
+            movements.addAll(mongoTemplate.find(query, InventoryMovement.class, collectionFor(month.atDay(1).atStartOfDay())));
+        }
+        return movements;
+    }
+
+    private static int sum(List<InventoryMovement> movements) {
+        int total = 0;
+        for (InventoryMovement movement : movements) {
+            total += movement.getDelta();
+        }
+        return total;
+    }
+
+    private void ensureIndexed(String collection) {
+        // Remembered only once built, so a failed build is retried with the next flush
+        if (!indexedCollections.contains(collection)) {
+            mongoTemplate.indexOps(collection).createIndex(new Index()
+                    .on("bookId", Sort.Direction.ASC)
+                    .on("at", Sort.Direction.ASC)
+                    .named("bookId_at"));
+            indexedCollections.add(collection);
+        }
+    }
+
+    static String collectionFor(LocalDateTime at) {
+        return COLLECTION_PREFIX + at.format(MONTH_SUFFIX);
+    }
+}
@@ -1,12 +1,29 @@
 package com.bookstore.backend.service;
 
+import com.bookstore.backend.dto.CursorPage;
 import com.bookstore.backend.model.Book;
 import com.bookstore.backend.repository.BookRepository;
+import com.bookstore.backend.util.PageCursor;
+import org.bson.Document;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.ApplicationEventPublisher;
+import org.springframework.data.domain.Sort;
+import org.springframework.data.mongodb.core.FindAndModifyOptions;
+import org.springframework.data.mongodb.core.MongoTemplate;
+import org.springframework.data.mongodb.core.aggregation.Aggregation;
+import org.springframework.data.mongodb.core.aggregation.AggregationExpression;
+import org.springframework.data.mongodb.core.aggregation.AggregationOperation;
+import org.springframework.data.mongodb.core.aggregation.AggregationUpdate;
+import org.springframework.data.mongodb.core.aggregation.ComparisonOperators;
+import org.springframework.data.mongodb.core.aggregation.ConditionalOperators;
+import org.springframework.data.mongodb.core.query.Criteria;
+import org.springframework.data.mongodb.core.query.Query;
+import org.springframework.data.mongodb.core.query.Update;
 import org.springframework.stereotype.Service;
+import java.util.ArrayList;
 import java.util.List;
 import java.util.Map;
-import java.util.stream.Collectors;
 
 @Service
 public class InventoryService {
@@ -14,80 +31,243 @@ public class InventoryService {
     @Autowired
     private BookRepository bookRepository;
 
-    private static final int LOW_STOCK_THRESHOLD = 5;
+    @Autowired
+    private BookCache bookCache;
+
+    @Autowired
+    private BookSearchIndex bookSearchIndex;
+
+    @Autowired
+    private MongoTemplate mongoTemplate;
+
+    @Autowired
+    private ApplicationEventPublisher eventPublisher;
+
+    @Autowired
+    private InventoryLedger inventoryLedger;
+
+    @Value("${inventory.page.max-size:100}")
+    private int maxPageSize;
+
+    // Used when a book has no minThreshold of its own
+    public static final int DEFAULT_LOW_STOCK_THRESHOLD = 5;
+    public static final int CRITICAL_STOCK_THRESHOLD = 2;
 
     public List<Book> getAllBooks() {
         return bookRepository.findAll();
     }
 
+    // Keyset page over _id with only the inventory fields loaded
+    public CursorPage<Book> getInventoryPage(String cursor, int size) {
+        return pageById(null, cursor, size);
+    }
+
+    private CursorPage<Book> pageById(Criteria filter, String cursor, int size) {
+        int pageSize = Math.max(1, Math.min(size, maxPageSize));
+
+        Query query = new Query();
+        if (filter != null) {
+            query.addCriteria(filter);
+        }
+        if (cursor != null && !cursor.isBlank()) {
+            String afterId = PageCursor.decode(cursor, 1)[0];
+            query.addCriteria(Criteria.where("book_id").gt(afterId));
+        }
+        query.with(Sort.by(Sort.Direction.ASC, "book_id")).limit(pageSize + 1);
+        inventoryFields(query);
+
+        List<Book> books = new ArrayList<>(mongoTemplate.find(query, Book.class));
+        boolean hasMore = books.size() > pageSize;
+        String nextCursor = null;
+        if (hasMore) {
+            books = new ArrayList<>(books.subList(0, pageSize));
+            nextCursor = PageCursor.encode(books.get(pageSize - 1).getBook_id());
+        }
+        return new CursorPage<>(books, nextCursor, hasMore);
+    }
+
+    private void inventoryFields(Query query) {
+        query.fields().include("book_id", "title", "author", "stockQuantity", "stockStatus", "price",
+                "minThreshold", "maxThreshold", "coverImageUrl");
+    }
+
+    // One atomic write that returns the previous document, so the ledger gets the exact delta
     public Book updateStock(String bookId, int newQuantity) {
-        Book book = bookRepository.findById(bookId)
-                .orElseThrow(() -> new RuntimeException("Book not found"));
+        Book book = mongoTemplate.findAndModify(new Query(Criteria.where("book_id").is(bookId)),
+                StockImportService.stockUpdate(newQuantity), Book.class);
+        if (book == null) {
+            throw new RuntimeException("Book not found");
+        }
+        inventoryLedger.recordChange(bookId, newQuantity - book.getStockQuantity(), null);
 
         book.setStockQuantity(newQuantity);
-        book.setStockStatus(determineStockStatus(newQuantity));
-
-        return bookRepository.save(book);
+        book.setStockStatus(determineStockStatus(newQuantity, book.getMinThreshold()));
+        bookCache.invalidate(bookId);
+        eventPublisher.publishEvent(StockChangedEvent.updated(book));
+        return book;
     }
 
     public Book updateStockStatus(String bookId, String status) {
-        Book book = bookRepository.findById(bookId)
-                .orElseThrow(() -> new RuntimeException("Book not found"));
-
-        book.setStockStatus(status);
+        Update update = new Update().set("stockStatus", status);
 
         // Auto-set quantity to 0 if out of stock
         if ("OUT_OF_STOCK".equals(status)) {
+            update.set("stockQuantity", 0);
+        }
+
+        Book book = mongoTemplate.findAndModify(new Query(Criteria.where("book_id").is(bookId)), update, Book.class);
+        if (book == null) {
+            throw new RuntimeException("Book not found");
+        }
+        if ("OUT_OF_STOCK".equals(status)) {
+            inventoryLedger.record(bookId, InventoryLedger.ADJUSTMENT, -book.getStockQuantity(), null);
             book.setStockQuantity(0);
         }
+        book.setStockStatus(status);
+        bookCache.invalidate(bookId);
+        eventPublisher.publishEvent(StockChangedEvent.updated(book));
+        return book;
+    }
+
+    // Low stock: 0 < stockQuantity <= the book's minThreshold (or the default), most urgent first.
+    // The stockQuantity range is bounded by the highest threshold in use so the index scan only
+    // covers candidate books; $expr then applies each book's own threshold.
+    public CursorPage<Book> getLowStockBooks(String cursor, int size) {
+        int pageSize = Math.max(1, Math.min(size, maxPageSize));
+
+        Query query = new Query(lowStockCriteria());
+        if (cursor != null && !cursor.isBlank()) {
+            String[] parts = PageCursor.decode(cursor, 2);
+            int afterQuantity;
+            try {
+                afterQuantity = Integer.parseInt(parts[0]);
+            } catch (NumberFormatException e) {
+                throw new IllegalArgumentException("Invalid cursor");
+            }
+            query.addCriteria(new Criteria().orOperator(
+                    Criteria.where("stockQuantity").gt(afterQuantity),
+                    Criteria.where("stockQuantity").is(afterQuantity).and("book_id").gt(parts[1])));
+        }
+        query.with(Sort.by(Sort.Direction.ASC, "stockQuantity").and(Sort.by(Sort.Direction.ASC, "book_id")))
+                .limit(pageSize + 1);
+        inventoryFields(query);
+
+        List<Book> books = new ArrayList<>(mongoTemplate.find(query, Book.class));
+        boolean hasMore = books.size() > pageSize;
+        String nextCursor = null;
+        if (hasMore) {
+            books = new ArrayList<>(books.subList(0, pageSize));
+            Book last = books.get(pageSize - 1);
+            nextCursor = PageCursor.encode(String.valueOf(last.getStockQuantity()), last.getBook_id());
+        }
+        return new CursorPage<>(books, nextCursor, hasMore);
+    }
+
+    // Every low-stock book, for the alert reconciler and report; still an indexed query
+    public List<Book> getAllLowStockBooks() {
+        Query query = new Query(lowStockCriteria())
+                .with(Sort.by(Sort.Direction.ASC, "stockQuantity").and(Sort.by(Sort.Direction.ASC, "book_id")));
+        return mongoTemplate.find(query, Book.class);
+    }
+
+    public List<Book> getCriticalLowStockBooks() {
+        Query query = new Query(Criteria.where("stockQuantity").gt(0).lte(CRITICAL_STOCK_THRESHOLD))
+                .with(Sort.by(Sort.Direction.ASC, "stockQuantity").and(Sort.by(Sort.Direction.ASC, "book_id")));
+        return mongoTemplate.find(query, Book.class);
+    }
+
+    public CursorPage<Book> getOutOfStockBooks(String cursor, int size) {
+        return pageById(new Criteria().orOperator(
+                Criteria.where("stockQuantity").lte(0),
+                Criteria.where("stockStatus").is("OUT_OF_STOCK")), cursor, size);
+    }
 
-        return bookRepository.save(book);
+    public CursorPage<Book> getInStockBooks(String cursor, int size) {
+        return pageById(Criteria.where("stockQuantity").gt(0).and("stockStatus").ne("OUT_OF_STOCK"), cursor, size);
     }
 
-    public List<Book> getLowStockBooks() {
-        return bookRepository.findAll().stream()
-                .filter(book -> book.getStockQuantity() > 0 && book.getStockQuantity() <= LOW_STOCK_THRESHOLD)
-                .collect(Collectors.toList());
+    private Criteria lowStockCriteria() {
+        AggregationExpression threshold = ConditionalOperators
+                .when(ComparisonOperators.valueOf("minThreshold").greaterThanValue(0))
+                .thenValueOf("minThreshold")
+                .otherwise(DEFAULT_LOW_STOCK_THRESHOLD);
+        return new Criteria().andOperator(
+                Criteria.where("stockQuantity").gt(0).lte(highestLowStockThreshold()),
+                Criteria.expr(ComparisonOperators.valueOf("stockQuantity").lessThanEqualTo(threshold)));
     }
 
-    public List<Book> getOutOfStockBooks() {
-        return bookRepository.findAll().stream()
-                .filter(book -> book.getStockQuantity() <= 0 || "OUT_OF_STOCK".equals(book.getStockStatus()))
-                .collect(Collectors.toList());
+    // One index hit on minThreshold
+    private int highestLowStockThreshold() {
+        Query query = new Query().with(Sort.by(Sort.Direction.DESC, "minThreshold")).limit(1);
+        query.fields().include("minThreshold");
+        Book highest = mongoTemplate.findOne(query, Book.class);
+        return Math.max(DEFAULT_LOW_STOCK_THRESHOLD, highest == null ? 0 : highest.getMinThreshold());
     }
 
-    public List<Book> getInStockBooks() {
-        return bookRepository.findAll().stream()
-                .filter(book -> book.getStockQuantity() > 0 && !"OUT_OF_STOCK".equals(book.getStockStatus()))
-                .collect(Collectors.toList());
+    public static boolean isLowStock(Book book) {
+        int threshold = book.getMinThreshold() > 0 ? book.getMinThreshold() : DEFAULT_LOW_STOCK_THRESHOLD;
+        return book.getStockQuantity() > 0 && book.getStockQuantity() <= threshold;
     }
 
+    // All four counts in one $group pass over the collection; nothing is loaded into the JVM
     public InventorySummary getInventorySummary() {
-        List<Book> allBooks = bookRepository.findAll();
+        Document outOfStock = new Document("$or", List.of(
+                new Document("$lte", List.of("$stockQuantity", 0)),
+                new Document("$eq", List.of("$stockStatus", "OUT_OF_STOCK"))));
+        Document threshold = new Document("$cond", List.of(
+                new Document("$gt", List.of("$minThreshold", 0)), "$minThreshold", DEFAULT_LOW_STOCK_THRESHOLD));
+        Document lowStock = new Document("$and", List.of(
+                new Document("$gt", List.of("$stockQuantity", 0)),
+                new Document("$lte", List.of("$stockQuantity", threshold))));
 
-        long totalBooks = allBooks.size();
-        long inStockCount = allBooks.stream()
-                .filter(book -> book.getStockQuantity() > 0 && !"OUT_OF_STOCK".equals(book.getStockStatus()))
-                .count();
-        long outOfStockCount = allBooks.stream()
-                .filter(book -> book.getStockQuantity() <= 0 || "OUT_OF_STOCK".equals(book.getStockStatus()))
-                .count();
-        long lowStockCount = allBooks.stream()
-                .filter(book -> book.getStockQuantity() > 0 && book.getStockQuantity() <= LOW_STOCK_THRESHOLD)
-                .count();
+        AggregationOperation countByStock = context -> new Document("$group", new Document("_id", null)
+                .append("totalBooks", new Document("$sum", 1))
+                .append("outOfStockCount", countIf(outOfStock))
+                .append("inStockCount", countIf(new Document("$not", List.of(outOfStock))))
+                .append("lowStockCount", countIf(lowStock)));
 
-        return new InventorySummary(totalBooks, inStockCount, outOfStockCount, lowStockCount);
+        Document counts = mongoTemplate.aggregate(Aggregation.newAggregation(countByStock), Book.class, Document.class)
+                .getUniqueMappedResult();
+        if (counts == null) {
+            return new InventorySummary(0, 0, 0, 0);
+        }
+        return new InventorySummary(
+                ((Number) counts.get("totalBooks")).longValue(),
+                ((Number) counts.get("inStockCount")).longValue(),
+                ((Number) counts.get("outOfStockCount")).longValue(),
+                ((Number) counts.get("lowStockCount")).longValue());
     }
 
-    public Book updateThreshold(String bookId, int minThreshold, int maxThreshold) {
-        Book book = bookRepository.findById(bookId)
-                .orElseThrow(() -> new RuntimeException("Book not found"));
+    private static Document countIf(Document condition) {
+        return new Document("$sum", new Document("$cond", List.of(condition, 1, 0)));
+    }
 
-        // Store the threshold values in the book entity
-        book.setMinThreshold(minThreshold);
-        book.setMaxThreshold(maxThreshold);
+    // Sets only the thresholds and the status derived from them against the stored stockQuantity,
+    // so a concurrent order decrement or rating update is never overwritten
+    public Book updateThreshold(String bookId, int minThreshold, int maxThreshold) {
+        int threshold = minThreshold > 0 ? minThreshold : DEFAULT_LOW_STOCK_THRESHOLD;
+        AggregationUpdate update = AggregationUpdate.update()
+                .set("minThreshold").toValue(minThreshold)
+                .set("maxThreshold").toValue(maxThreshold)
+                .set("stockStatus").toValue(ConditionalOperators
+                        .when(ComparisonOperators.valueOf("stockStatus").equalToValue("OUT_OF_STOCK"))
+                        .then("OUT_OF_STOCK")
+                        .otherwiseValueOf(ConditionalOperators
+                                .when(ComparisonOperators.valueOf("stockQuantity").lessThanEqualToValue(0))
+                                .then("OUT_OF_STOCK")
+                                .otherwiseValueOf(ConditionalOperators
+                                        .when(ComparisonOperators.valueOf("stockQuantity").lessThanEqualToValue(threshold))
+                                        .then("LOW_STOCK")
+                                        .otherwise("IN_STOCK"))));
 
-        return bookRepository.save(book);
+        Book savedBook = mongoTemplate.findAndModify(new Query(Criteria.where("book_id").is(bookId)), update,
+                FindAndModifyOptions.options().returnNew(true), Book.class);
+        if (savedBook == null) {
+            throw new RuntimeException("Book not found");
+        }
+        bookCache.invalidate(bookId);
+        eventPublisher.publishEvent(StockChangedEvent.updated(savedBook));
+        return savedBook;
     }
 
     public Book createInventoryItem(Map<String, Object> inventoryRequest) {
@@ -99,9 +279,14 @@ public class InventoryService {
         newBook.setPrice(((Number) inventoryRequest.getOrDefault("price", 0.0)).doubleValue());
         
         // Set stock status based on quantity
-        newBook.setStockStatus(determineStockStatus(newBook.getStockQuantity()));
+        newBook.setStockStatus(determineStockStatus(newBook.getStockQuantity(), newBook.getMinThreshold()));
 
-        return bookRepository.save(newBook);
+        Book savedBook = bookRepository.save(newBook);
+        inventoryLedger.record(savedBook.getBook_id(), InventoryLedger.RESTOCK, savedBook.getStockQuantity(), null);
+        bookCache.invalidate(savedBook.getBook_id());
+        bookSearchIndex.index(savedBook);
+        eventPublisher.publishEvent(StockChangedEvent.updated(savedBook));
+        return savedBook;
     }
 
     public void deleteInventoryItem(String bookId) {
@@ -109,12 +294,17 @@ public class InventoryService {
             throw new RuntimeException("Inventory item not found");
         }
         bookRepository.deleteById(bookId);
+        bookCache.invalidate(bookId);
+        bookSearchIndex.remove(bookId);
+        eventPublisher.publishEvent(StockChangedEvent.removed(bookId));
     }
 
-    private String determineStockStatus(int quantity) {
+    // The stock status rule shared with BookService; matches lowStockCriteria and isLowStock
+    public static String determineStockStatus(int quantity, int minThreshold) {
+        int threshold = minThreshold > 0 ? minThreshold : DEFAULT_LOW_STOCK_THRESHOLD;
         if (quantity <= 0) {
             return "OUT_OF_STOCK";
-        } else if (quantity <= LOW_STOCK_THRESHOLD) {
+        } else if (quantity <= threshold) {
             return "LOW_STOCK";
         } else {
             return "IN_STOCK";
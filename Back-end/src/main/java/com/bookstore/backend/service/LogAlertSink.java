@@ -0,0 +1,23 @@
+package com.bookstore.backend.service;
+
+import com.bookstore.backend.dto.LowStockAlert;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.stereotype.Component;
+
+@Component
+public class LogAlertSink implements LowStockAlertSink {
+
+    private static final Logger logger = LoggerFactory.getLogger(LogAlertSink.class);
+
+    @Override
+    public void send(LowStockAlert alert) {
+        if ("RESOLVED".equals(alert.getSeverity())) {
+            logger.info("Stock alert resolved: '{}' ({}) is back to {} units",
+                    alert.getTitle(), alert.getBookId(), alert.getStockQuantity());
+        } else {
+            logger.warn("{} STOCK ALERT: '{}' by {} has {} units left (threshold {})", alert.getSeverity(),
+                    alert.getTitle(), alert.getAuthor(), alert.getStockQuantity(), alert.getThreshold());
+        }
+    }
+}
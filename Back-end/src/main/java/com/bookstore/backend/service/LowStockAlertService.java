@@ -1,53 +1,308 @@
 package com.bookstore.backend.service;
 
+import com.bookstore.backend.dto.LowStockAlert;
 import com.bookstore.backend.model.Book;
+import com.bookstore.backend.model.StockAlert;
 import com.bookstore.backend.repository.BookRepository;
+import jakarta.annotation.PreDestroy;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.event.EventListener;
+import org.springframework.dao.DuplicateKeyException;
+import org.springframework.data.mongodb.core.MongoTemplate;
+import org.springframework.data.mongodb.core.query.Criteria;
+import org.springframework.data.mongodb.core.query.Query;
+import org.springframework.data.mongodb.core.query.Update;
 import org.springframework.scheduling.annotation.Scheduled;
 import org.springframework.stereotype.Service;
+
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HashSet;
 import java.util.List;
+import java.util.Map;
+import java.util.Set;
 import java.util.concurrent.ConcurrentHashMap;
 import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
 
+// Evaluates stock levels as StockChangedEvents arrive and raises alerts on the way down:
+// an alert fires once when a book first reaches a severity (edge-triggered). A partial recovery
+// lowers the stored level, so falling back fires again, but the alert is only cleared once stock
+// climbs above threshold + hysteresis, so a book hovering around its threshold does not flap.
+// The periodic scan only reconciles missed events.
+//
+// Alert state lives in the stock_alerts collection so restarts and replicas share it. Raises and
+// clears are conditional writes, and only the node whose write wins dispatches, so two nodes
+// seeing the same change send one alert. Each node keeps a near-cache of the (small) active set,
+// reloaded every near-cache-ttl-ms, so events for books that are not alerting cost no reads.
 @Service
 public class LowStockAlertService {
 
+    private static final Logger logger = LoggerFactory.getLogger(LowStockAlertService.class);
+
+    static final int NONE = 0;
+    static final int LOW = 1;
+    static final int CRITICAL = 2;
+    static final int OUT_OF_STOCK = 3;
+    private static final String[] SEVERITIES = { "RESOLVED", "LOW", "CRITICAL", "OUT_OF_STOCK" };
+
     @Autowired
     private BookRepository bookRepository;
 
     @Autowired
     private InventoryService inventoryService;
 
-    private static final int LOW_STOCK_THRESHOLD = 5;
-    private final ConcurrentMap<String, Boolean> alertCache = new ConcurrentHashMap<>();
+    @Autowired
+    private List<LowStockAlertSink> sinks;
+
+    @Autowired
+    private MongoTemplate mongoTemplate;
+
+    @Autowired
+    private SchedulerLeader schedulerLeader;
+
+    @Value("${inventory.alerts.hysteresis:2}")
+    private int hysteresis;
+
+    @Value("${inventory.alerts.near-cache-ttl-ms:30000}")
+    private long nearCacheTtlMs;
+
+    private final ConcurrentMap<String, StockAlert> nearCache = new ConcurrentHashMap<>();
+    private volatile long nearCacheLoadedAt;
+
+    // One thread so events for the same book are evaluated in the order they were published
+    private final ExecutorService evaluator = Executors.newSingleThreadExecutor(runnable -> {
+        Thread thread = new Thread(runnable, "stock-alerts");
+        thread.setDaemon(true);
+        return thread;
+    });
 
-    // Check for low stock every hour
-    @Scheduled(fixedRate = 3600000) // 1 hour in milliseconds
+    @EventListener
+    public void onStockChanged(StockChangedEvent event) {
+        evaluator.execute(() -> {
+            try {
+                event.getRemovedIds().forEach(this::clear);
+                event.getBooks().forEach(this::evaluate);
+                if (!event.getChangedIds().isEmpty()) {
+                    bookRepository.findAllById(event.getChangedIds()).forEach(this::evaluate);
+                }
+            } catch (RuntimeException e) {
+                logger.error("Stock alert evaluation failed: {}", e.getMessage());
+            }
+        });
+    }
+
+    // Safety net for lost events (e.g. a restart between write and evaluation); leader node only
+    @Scheduled(fixedRateString = "${inventory.alerts.reconcile-ms:21600000}",
+            initialDelayString = "${inventory.alerts.reconcile-initial-delay-ms:60000}")
     public void checkLowStockAlerts() {
-        List<Book> lowStockBooks = inventoryService.getLowStockBooks();
+        if (!schedulerLeader.isLeader()) {
+            return;
+        }
+        evaluator.execute(() -> {
+            try {
+                reconcile();
+            } catch (RuntimeException e) {
+                logger.error("Stock alert reconciliation failed: {}", e.getMessage());
+            }
+        });
+    }
+
+    void reconcile() {
+        reloadNearCache();
+        Set<String> seen = new HashSet<>();
+        for (Book book : inventoryService.getAllLowStockBooks()) {
+            seen.add(book.getBook_id());
+            evaluate(book);
+        }
+
+        // Alerted books that are no longer low: re-evaluate so hysteresis decides, drop deleted ones
+        List<String> stale = new ArrayList<>();
+        for (String bookId : nearCache.keySet()) {
+            if (!seen.contains(bookId)) {
+                stale.add(bookId);
+            }
+        }
+        if (!stale.isEmpty()) {
+            Set<String> found = new HashSet<>();
+            for (Book book : bookRepository.findAllById(stale)) {
+                found.add(book.getBook_id());
+                evaluate(book);
+            }
+            stale.stream().filter(id -> !found.contains(id)).forEach(this::clear);
+        }
+    }
+
+    void evaluate(Book book) {
+        if (System.currentTimeMillis() - nearCacheLoadedAt > nearCacheTtlMs) {
+            reloadNearCache();
+        }
+
+        int threshold = threshold(book);
+        int quantity = book.getStockQuantity();
+        int severity = severity(quantity, threshold);
+        StockAlert current = nearCache.get(book.getBook_id());
+        int currentSeverity = current == null ? NONE : current.getLevel();
+
+        if (severity > currentSeverity) {
+            raise(book, threshold, severity);
+        } else if (current != null && severity == NONE && quantity > threshold + hysteresis) {
+            if (clear(book.getBook_id())) {
+                dispatch(toAlert(state(book, threshold, NONE)));
+            }
+        } else if (current != null && Math.max(severity, LOW) < currentSeverity) {
+            // Partial recovery: step the level down (no lower than LOW inside the band) without
+            // alerting, so a later fall back to the higher level is raised again
+            stepDown(current, quantity, threshold, Math.max(severity, LOW));
+        } else if (current != null && (current.getStockQuantity() != quantity || current.getThreshold() != threshold)) {
+            // Same severity: keep the alert, refresh the figures
+            current.setStockQuantity(quantity);
+            current.setThreshold(threshold);
+            mongoTemplate.updateFirst(byBook(book.getBook_id()),
+                    new Update().set("stockQuantity", quantity).set("threshold", threshold), StockAlert.class);
+        }
+    }
 
-        for (Book book : lowStockBooks) {
-            String bookId = book.getBook_id();
-            boolean wasAlerted = alertCache.getOrDefault(bookId, false);
+    // Conditional on the level this node saw; if another node moved it meanwhile, adopt the stored state
+    private void stepDown(StockAlert current, int quantity, int threshold, int level) {
+        Query seen = new Query(Criteria.where("bookId").is(current.getBookId()).and("level").is(current.getLevel()));
+        Update update = new Update()
+                .set("stockQuantity", quantity)
+                .set("threshold", threshold)
+                .set("level", level)
+                .set("severity", SEVERITIES[level]);
+        if (mongoTemplate.updateFirst(seen, update, StockAlert.class).getMatchedCount() > 0) {
+            current.setStockQuantity(quantity);
+            current.setThreshold(threshold);
+            current.setLevel(level);
+            current.setSeverity(SEVERITIES[level]);
+            return;
+        }
+        StockAlert stored = mongoTemplate.findById(current.getBookId(), StockAlert.class);
+        if (stored != null) {
+            nearCache.put(current.getBookId(), stored);
+        } else {
+            nearCache.remove(current.getBookId());
+        }
+    }
 
-            if (!wasAlerted) {
-                sendLowStockAlert(book);
-                alertCache.put(bookId, true);
+    // Only succeeds if no node has already raised this book to `severity` or higher: the filter then
+    // misses and the upsert collides on _id
+    private void raise(Book book, int threshold, int severity) {
+        StockAlert state = state(book, threshold, severity);
+        Query lower = new Query(Criteria.where("bookId").is(book.getBook_id()).and("level").lt(severity));
+        Update update = new Update()
+                .set("title", state.getTitle())
+                .set("author", state.getAuthor())
+                .set("stockQuantity", state.getStockQuantity())
+                .set("threshold", state.getThreshold())
+                .set("level", state.getLevel())
+                .set("severity", state.getSeverity())
+                .set("acknowledged", false)
+                .set("raisedAt", state.getRaisedAt());
+        try {
+            mongoTemplate.upsert(lower, update, StockAlert.class);
+        } catch (DuplicateKeyException e) {
+            // Raised elsewhere; adopt the stored state
+            StockAlert stored = mongoTemplate.findById(book.getBook_id(), StockAlert.class);
+            if (stored != null) {
+                nearCache.put(book.getBook_id(), stored);
             }
+            return;
         }
+        nearCache.put(book.getBook_id(), state);
+        dispatch(toAlert(state));
+    }
+
+    // True if this call removed the stored alert
+    private boolean clear(String bookId) {
+        nearCache.remove(bookId);
+        return mongoTemplate.remove(byBook(bookId), StockAlert.class).getDeletedCount() > 0;
+    }
 
-        // Clear alerts for books that are no longer low stock
-        clearResolvedAlerts(lowStockBooks);
+    private void reloadNearCache() {
+        Map<String, StockAlert> loaded = new HashMap<>();
+        mongoTemplate.findAll(StockAlert.class).forEach(alert -> loaded.put(alert.getBookId(), alert));
+        nearCache.keySet().retainAll(loaded.keySet());
+        nearCache.putAll(loaded);
+        nearCacheLoadedAt = System.currentTimeMillis();
+    }
+
+    private static Query byBook(String bookId) {
+        return new Query(Criteria.where("bookId").is(bookId));
+    }
+
+    private void dispatch(LowStockAlert alert) {
+        for (LowStockAlertSink sink : sinks) {
+            try {
+                sink.send(alert);
+            } catch (RuntimeException e) {
+                logger.warn("Stock alert sink {} failed: {}", sink.getClass().getSimpleName(), e.getMessage());
+            }
+        }
+    }
+
+    static int severity(int quantity, int threshold) {
+        if (quantity <= 0) {
+            return OUT_OF_STOCK;
+        }
+        if (quantity <= Math.min(InventoryService.CRITICAL_STOCK_THRESHOLD, threshold)) {
+            return CRITICAL;
+        }
+        if (quantity <= threshold) {
+            return LOW;
+        }
+        return NONE;
+    }
+
+    private static int threshold(Book book) {
+        return book.getMinThreshold() > 0 ? book.getMinThreshold() : InventoryService.DEFAULT_LOW_STOCK_THRESHOLD;
+    }
+
+    private static StockAlert state(Book book, int threshold, int severity) {
+        StockAlert state = new StockAlert();
+        state.setBookId(book.getBook_id());
+        state.setTitle(book.getTitle());
+        state.setAuthor(book.getAuthor());
+        state.setStockQuantity(book.getStockQuantity());
+        state.setThreshold(threshold);
+        state.setLevel(severity);
+        state.setSeverity(SEVERITIES[severity]);
+        state.setRaisedAt(LocalDateTime.now());
+        return state;
+    }
+
+    private static LowStockAlert toAlert(StockAlert state) {
+        LowStockAlert alert = new LowStockAlert();
+        alert.setBookId(state.getBookId());
+        alert.setTitle(state.getTitle());
+        alert.setAuthor(state.getAuthor());
+        alert.setStockQuantity(state.getStockQuantity());
+        alert.setThreshold(state.getThreshold());
+        alert.setSeverity(state.getSeverity());
+        alert.setAcknowledged(state.isAcknowledged());
+        alert.setRaisedAt(state.getRaisedAt());
+        return alert;
     }
 
     public List<Book> getLowStockBooks() {
-        return inventoryService.getLowStockBooks();
+        return inventoryService.getAllLowStockBooks();
     }
 
     public List<Book> getCriticalLowStockBooks() {
-        return inventoryService.getAllBooks().stream()
-                .filter(book -> book.getStockQuantity() > 0 && book.getStockQuantity() <= 2)
-                .collect(java.util.stream.Collectors.toList());
+        return inventoryService.getCriticalLowStockBooks();
+    }
+
+    // Read from Mongo so every node reports the same alerts
+    public List<LowStockAlert> getActiveAlerts() {
+        List<LowStockAlert> alerts = new ArrayList<>();
+        mongoTemplate.findAll(StockAlert.class).forEach(state -> alerts.add(toAlert(state)));
+        return alerts;
     }
 
     public boolean isBookLowStock(String bookId) {
@@ -55,38 +310,34 @@ public class LowStockAlertService {
         if (book == null)
             return false;
 
-        return book.getStockQuantity() > 0 && book.getStockQuantity() <= LOW_STOCK_THRESHOLD;
+        return InventoryService.isLowStock(book);
     }
 
+    // Other nodes pick these up on their next near-cache reload
     public void acknowledgeAlert(String bookId) {
-        alertCache.put(bookId, true);
+        mongoTemplate.updateFirst(byBook(bookId), new Update().set("acknowledged", true), StockAlert.class);
+        StockAlert cached = nearCache.get(bookId);
+        if (cached != null) {
+            cached.setAcknowledged(true);
+        }
     }
 
+    // Forget the alert so the next evaluation can raise it again
     public void resetAlert(String bookId) {
-        alertCache.remove(bookId);
+        clear(bookId);
     }
 
-    private void sendLowStockAlert(Book book) {
-        // This could be extended to send emails, notifications, etc.
-        // For now, we'll just log the alert
-        System.out.println("LOW STOCK ALERT: Book '" + book.getTitle() +
-                "' by " + book.getAuthor() +
-                " has only " + book.getStockQuantity() + " units remaining.");
-    }
-
-    private void clearResolvedAlerts(List<Book> currentLowStockBooks) {
-        List<String> currentLowStockIds = currentLowStockBooks.stream()
-                .map(Book::getBook_id)
-                .collect(java.util.stream.Collectors.toList());
-
-        alertCache.entrySet().removeIf(entry -> !currentLowStockIds.contains(entry.getKey()));
+    @PreDestroy
+    public void shutdown() {
+        evaluator.shutdown();
     }
 
     public LowStockReport generateLowStockReport() {
         List<Book> lowStockBooks = getLowStockBooks();
         List<Book> criticalLowStockBooks = getCriticalLowStockBooks();
 
-        return new LowStockReport(lowStockBooks, criticalLowStockBooks, alertCache.size());
+        int activeAlerts = (int) mongoTemplate.count(new Query(), StockAlert.class);
+        return new LowStockReport(lowStockBooks, criticalLowStockBooks, activeAlerts);
     }
 
     public static class LowStockReport {
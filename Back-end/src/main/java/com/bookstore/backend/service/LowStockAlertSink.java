@@ -0,0 +1,9 @@
+package com.bookstore.backend.service;
+
+import com.bookstore.backend.dto.LowStockAlert;
+
+// Destination for low-stock alerts; every sink bean receives every alert
+public interface LowStockAlertSink {
+
+    void send(LowStockAlert alert);
+}
@@ -0,0 +1,61 @@
+package com.bookstore.backend.service;
+
+import com.bookstore.backend.dto.OrderMetricsDTO;
+import org.springframework.stereotype.Component;
+
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.LongAdder;
+
+// Counts MongoDB round trips made while placing orders so regressions in placeOrder are visible
+@Component
+public class OrderMetrics {
+
+    private final LongAdder placedOrders = new LongAdder();
+    private final LongAdder failedOrders = new LongAdder();
+    private final LongAdder totalRoundTrips = new LongAdder();
+    private final AtomicInteger maxRoundTrips = new AtomicInteger();
+
+    public Tracker start() {
+        return new Tracker();
+    }
+
+    public OrderMetricsDTO snapshot() {
+        OrderMetricsDTO dto = new OrderMetricsDTO();
+        long placed = placedOrders.sum();
+        long failed = failedOrders.sum();
+        long roundTrips = totalRoundTrips.sum();
+        dto.setPlacedOrders(placed);
+        dto.setFailedOrders(failed);
+        dto.setTotalRoundTrips(roundTrips);
+        dto.setAverageRoundTrips(placed + failed == 0 ? 0 : (double) roundTrips / (placed + failed));
+        dto.setMaxRoundTrips(maxRoundTrips.get());
+        return dto;
+    }
+
+    // Per-call counter; not shared between threads
+    public class Tracker {
+        private int roundTrips;
+
+        public void roundTrip() {
+            roundTrips++;
+        }
+
+        public void roundTrips(int count) {
+            roundTrips += count;
+        }
+
+        public int getRoundTrips() {
+            return roundTrips;
+        }
+
+        public void finish(boolean placed) {
+            if (placed) {
+                placedOrders.increment();
+            } else {
+                failedOrders.increment();
+            }
+            totalRoundTrips.add(roundTrips);
+            maxRoundTrips.accumulateAndGet(roundTrips, Math::max);
+        }
+    }
+}
@@ -1,5 +1,6 @@
 package com.bookstore.backend.service;
 
+import com.bookstore.backend.dto.OrderMetricsDTO;
 import com.bookstore.backend.model.Book;
 import com.bookstore.backend.model.Order;
 import com.bookstore.backend.model.Order.OrderItem;
@@ -7,10 +8,20 @@ import com.bookstore.backend.repository.BookRepository;
 import com.bookstore.backend.repository.OrderRepository;
 import com.bookstore.backend.repository.UserRepository;
 
+import com.mongodb.client.result.UpdateResult;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.context.ApplicationEventPublisher;
+import org.springframework.data.mongodb.core.BulkOperations;
+import org.springframework.data.mongodb.core.MongoTemplate;
+import org.springframework.data.mongodb.core.query.Criteria;
+import org.springframework.data.mongodb.core.query.Query;
+import org.springframework.data.mongodb.core.query.Update;
 import org.springframework.stereotype.Service;
 
+import java.util.HashMap;
+import java.util.LinkedHashMap;
 import java.util.List;
+import java.util.Map;
 import java.util.Optional;
 
 @Service
@@ -25,46 +36,171 @@ public class OrderService {
     @Autowired
     private UserRepository userRepository; // Needed to validate user ID
 
+    @Autowired
+    private BookCache bookCache;
+
+    @Autowired
+    private MongoTemplate mongoTemplate;
+
+    @Autowired
+    private OrderMetrics orderMetrics;
+
+    @Autowired
+    private SalesRollupService salesRollupService;
+
+    @Autowired
+    private ApplicationEventPublisher eventPublisher;
+
+    @Autowired
+    private InventoryLedger inventoryLedger;
+
     public Order placeOrder(Order order) {
+        return placeOrder(order, null);
+    }
+
+    // snapshot: books the caller has just read (cart checkout); used instead of fetching them again
+    // when it covers every line. Stock is still reserved atomically, so a stale snapshot can't oversell.
+    public Order placeOrder(Order order, Map<String, Book> snapshot) {
+        OrderMetrics.Tracker tracker = orderMetrics.start();
+        boolean placed = false;
+        try {
+            Order savedOrder = placeOrder(order, snapshot, tracker);
+            placed = true;
+            return savedOrder;
+        } finally {
+            tracker.finish(placed);
+        }
+    }
+
+    private Order placeOrder(Order order, Map<String, Book> snapshot, OrderMetrics.Tracker tracker) {
 
         // 1. Validate User ID
+        tracker.roundTrip();
         if (!userRepository.existsById(order.getUserId())) {
             throw new IllegalArgumentException("User ID is invalid or user does not exist.");
         }
 
-        double calculatedTotal = 0;
-
+        // 2. Total quantity per book (a book may appear on several lines)
+        Map<String, Integer> quantities = new LinkedHashMap<>();
         for (OrderItem item : order.getItems()) {
-            Optional<Book> bookOptional = bookRepository.findById(item.getBook_id());
+            if (item.getQuantity() <= 0) {
+                throw new IllegalArgumentException("Quantity must be greater than 0 for book " + item.getBook_id());
+            }
+            quantities.merge(item.getBook_id(), item.getQuantity(), Integer::sum);
+        }
+
+        // 3. Fetch every referenced book in one round trip, unless the caller already did
+        Map<String, Book> books;
+        if (snapshot != null && snapshot.keySet().containsAll(quantities.keySet())) {
+            books = snapshot;
+        } else {
+            tracker.roundTrip();
+            books = new HashMap<>();
+            for (Book book : bookRepository.findAllById(quantities.keySet())) {
+                books.put(book.getBook_id(), book);
+            }
+        }
 
-            if (bookOptional.isEmpty()) {
+        // 4. Price and validate in memory
+        double calculatedTotal = 0;
+        for (OrderItem item : order.getItems()) {
+            Book book = books.get(item.getBook_id());
+            if (book == null) {
                 throw new IllegalArgumentException("Book with ID " + item.getBook_id() + " not found.");
             }
+            item.setPrice(book.getPrice());
+            item.setTitle(book.getTitle()); // Snapshot for reports
+            calculatedTotal += item.getPrice() * item.getQuantity();
+        }
+        for (Map.Entry<String, Integer> entry : quantities.entrySet()) {
+            Book book = books.get(entry.getKey());
+            if (book.getStockQuantity() < entry.getValue()) {
+                throw insufficientStock(book.getTitle(), book.getStockQuantity());
+            }
+        }
 
-            Book book = bookOptional.get();
+        // 5. Reserve the stock, book by book with a stock guard
+        reserveStock(quantities, books, tracker);
 
-            item.setPrice(book.getPrice());
+        // 6. Finalize Order and Save
+        order.setTotalAmount(calculatedTotal);
+        Order savedOrder;
+        try {
+            tracker.roundTrip();
+            // Order status and date are set in the Order model constructor
+            savedOrder = orderRepository.save(order);
+        } catch (RuntimeException e) {
+            releaseStock(quantities, quantities.size(), tracker);
+            throw e;
+        }
+
+        // 7. Update the sales rollups
+        tracker.roundTrips(salesRollupService.recordOrderPlaced(savedOrder));
+
+        // 8. Append to the inventory ledger (buffered) and let the stock alerts re-check the books
+        for (Map.Entry<String, Integer> entry : quantities.entrySet()) {
+            inventoryLedger.record(entry.getKey(), InventoryLedger.ORDER, -entry.getValue(), savedOrder.getOrder_id());
+        }
+        eventPublisher.publishEvent(StockChangedEvent.changed(quantities.keySet()));
+        return savedOrder;
+    }
 
-            // 4. Stock Check
-            if (book.getStockQuantity() < item.getQuantity()) {
-                throw new IllegalArgumentException(
-                        "Insufficient stock for book: " + book.getTitle() +
-                                ". Available: " + book.getStockQuantity());
+    // One conditional decrement per book, in order. A line that doesn't match (stock taken by another
+    // checkout, or the book deleted since it was read) stops the reservation and gives back the lines
+    // before it. Plain updates never insert, so a reservation can't leave anything in the catalog.
+    private void reserveStock(Map<String, Integer> quantities, Map<String, Book> books, OrderMetrics.Tracker tracker) {
+        int reserved = 0;
+        for (Map.Entry<String, Integer> entry : quantities.entrySet()) {
+            UpdateResult result;
+            try {
+                tracker.roundTrip();
+                result = mongoTemplate.updateFirst(new Query(Criteria.where("book_id").is(entry.getKey())
+                                .and("stockQuantity").gte(entry.getValue())),
+                        new Update().inc("stockQuantity", -entry.getValue()), Book.class);
+            } catch (RuntimeException e) {
+                releaseStock(quantities, reserved, tracker);
+                throw e;
             }
+            if (result.getMatchedCount() == 0) {
+                releaseStock(quantities, reserved, tracker);
+                tracker.roundTrip();
+                if (!bookRepository.existsById(entry.getKey())) {
+                    throw new IllegalArgumentException("Book with ID " + entry.getKey() + " not found.");
+                }
+                throw insufficientStock(books.get(entry.getKey()).getTitle(), null);
+            }
+            reserved++;
+        }
 
-            // 5. Update Stock
-            book.setStockQuantity(book.getStockQuantity() - item.getQuantity());
-            bookRepository.save(book);
+        quantities.keySet().forEach(bookCache::invalidate);
+    }
 
-            // 6. Calculate Total
-            calculatedTotal += item.getPrice() * item.getQuantity();
+    // Give back the first `count` reservations in one unordered bulk write
+    private void releaseStock(Map<String, Integer> quantities, int count, OrderMetrics.Tracker tracker) {
+        if (count <= 0) {
+            return;
+        }
+        BulkOperations bulk = mongoTemplate.bulkOps(BulkOperations.BulkMode.UNORDERED, Book.class);
+        int released = 0;
+        for (Map.Entry<String, Integer> entry : quantities.entrySet()) {
+            if (released++ >= count) {
+                break;
+            }
+            bulk.updateOne(new Query(Criteria.where("book_id").is(entry.getKey())),
+                    new Update().inc("stockQuantity", entry.getValue()));
+            bookCache.invalidate(entry.getKey());
         }
+        tracker.roundTrip();
+        bulk.execute();
+    }
 
-        // 7. Finalize Order and Save
-        order.setTotalAmount(calculatedTotal);
+    private IllegalArgumentException insufficientStock(String title, Integer available) {
+        return new IllegalArgumentException("Insufficient stock for book: " + title +
+                (available != null ? ". Available: " + available : ""));
+    }
 
-        // Order status and date are set in the Order model constructor
-        return orderRepository.save(order);
+    public OrderMetricsDTO getMetrics() {
+        return orderMetrics.snapshot();
     }
 
     // 2. READ ALL
@@ -84,12 +220,6 @@ public class OrderService {
 
     // 5. UPDATE ORDER STATUS
     public Order updateStatus(String id, String status) {
-        Optional<Order> orderOptional = orderRepository.findById(id);
-
-        if (orderOptional.isEmpty()) {
-            throw new RuntimeException("Order not found with id: " + id);
-        }
-
         // Validate status
         String[] validStatuses = { "PENDING", "PROCESSING", "SHIPPED", "DELIVERED", "CANCELLED" };
         boolean isValid = false;
@@ -105,8 +235,19 @@ public class OrderService {
                     "Invalid status. Must be one of: PENDING, PROCESSING, SHIPPED, DELIVERED, CANCELLED");
         }
 
-        Order order = orderOptional.get();
-        order.setStatus(status);
-        return orderRepository.save(order);
+        // Set the status atomically and get the previous version back for the rollups
+        Order previous = mongoTemplate.findAndModify(
+                new Query(Criteria.where("order_id").is(id)),
+                new Update().set("status", status),
+                Order.class);
+
+        if (previous == null) {
+            throw new RuntimeException("Order not found with id: " + id);
+        }
+
+        salesRollupService.recordStatusChange(previous, status);
+
+        previous.setStatus(status);
+        return previous;
     }
-}
\ No newline at end of file
+}
@@ -0,0 +1,381 @@
+package com.bookstore.backend.service;
+
+import com.bookstore.backend.dto.CursorPage;
+import com.bookstore.backend.dto.ForecastRunResult;
+import com.bookstore.backend.model.Book;
+import com.bookstore.backend.model.ReorderSuggestion;
+import com.bookstore.backend.util.PageCursor;
+import org.bson.Document;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.data.domain.Sort;
+import org.springframework.data.mongodb.core.BulkOperations;
+import org.springframework.data.mongodb.core.MongoTemplate;
+import org.springframework.data.mongodb.core.aggregation.Aggregation;
+import org.springframework.data.mongodb.core.aggregation.AggregationOperation;
+import org.springframework.data.mongodb.core.query.Criteria;
+import org.springframework.data.mongodb.core.query.Query;
+import org.springframework.data.mongodb.core.query.Update;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.time.ZoneId;
+import java.time.ZoneOffset;
+import java.time.temporal.ChronoUnit;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
+import java.util.stream.Stream;
+
+// Nightly reorder forecast. Books and the last window-days of sales are streamed into primitive
+// columns (one slot per book, one row per book and day sold), so 500k SKUs cost a few arrays rather
+// than an object graph. Each book's daily velocity is an exponentially weighted average of its sales,
+// newest day weighted alpha and each older day by another factor of (1 - alpha); the per-book work
+// runs as a fork-join over book ranges. Results go to reorder_suggestions for every node to read.
+@Service
+public class ReorderForecastService {
+
+    private static final Logger logger = LoggerFactory.getLogger(ReorderForecastService.class);
+
+    static final double MAX_COVER_DAYS = 365;
+    private static final int STREAM_BATCH = 1000;
+
+    @Autowired
+    private MongoTemplate mongoTemplate;
+
+    @Autowired
+    private SchedulerLeader schedulerLeader;
+
+    @Value("${inventory.forecast.window-days:90}")
+    private int windowDays;
+
+    @Value("${inventory.forecast.alpha:0.1}")
+    private double alpha;
+
+    @Value("${inventory.forecast.lead-time-days:7}")
+    private int leadTimeDays;
+
+    @Value("${inventory.forecast.target-cover-days:30}")
+    private int targetCoverDays;
+
+    @Value("${inventory.page.max-size:100}")
+    private int maxPageSize;
+
+    @Scheduled(cron = "${inventory.forecast.cron:0 30 2 * * *}")
+    public void scheduledForecast() {
+        if (schedulerLeader.isLeader()) {
+            runForecast();
+        }
+    }
+
+    public synchronized ForecastRunResult runForecast() {
+        long startedAt = System.currentTimeMillis();
+        LocalDateTime computedAt = LocalDateTime.now();
+        LocalDate today = computedAt.toLocalDate();
+        ZoneId zone = ZoneId.systemDefault();
+
+        // 1. Books into columns; the index map is only needed while sales rows are read
+        Columns books = new Columns();
+        Map<String, Integer> index = new HashMap<>();
+        Query bookQuery = new Query();
+        bookQuery.fields().include("title", "stockQuantity", "minThreshold", "maxThreshold");
+        bookQuery.cursorBatchSize(STREAM_BATCH);
+        try (Stream<Book> stream = mongoTemplate.stream(bookQuery, Book.class)) {
+            stream.forEach(book -> index.put(book.getBook_id(), books.add(book)));
+        }
+
+        // 2. Units sold per (book, day) in the window, summed by the server
+        SalesRows sales = new SalesRows();
+        Aggregation aggregation = Aggregation.newAggregation(
+                Aggregation.match(Criteria.where("orderDate").gte(today.minusDays(windowDays - 1L).atStartOfDay())
+                        .and("status").ne("CANCELLED")),
+                Aggregation.unwind("items"),
+                dailySalesGroup(mongoTimezone(zone)))
+                .withOptions(Aggregation.newAggregationOptions().allowDiskUse(true).cursorBatchSize(STREAM_BATCH).build());
+        try (Stream<Document> stream = mongoTemplate.aggregateStream(aggregation, "orders", Document.class)) {
+            stream.forEach(row -> {
+                Document id = (Document) row.get("_id");
+                Integer book = index.get(id.getString("b"));
+                if (book == null) {
+                    return; // Deleted since it was sold
+                }
+                long age = ChronoUnit.DAYS.between(LocalDate.parse(id.getString("d")), today);
+                sales.add(book, (int) Math.max(0, Math.min(age, windowDays - 1L)), ((Number) row.get("q")).intValue());
+            });
+        }
+        index.clear();
+
+        // 3. Velocity, cover and suggestion per book, in parallel over book ranges
+        int[] offsets = sales.groupByBook(books.size);
+        Forecast forecast = new Forecast(books.size);
+        ForkJoinPool.commonPool().invoke(new ForecastTask(books, sales, offsets, decayWeights(alpha, windowDays),
+                leadTimeDays, targetCoverDays, forecast, 0, books.size));
+
+        // 4. Upsert suggestions in unordered batches, then drop those from earlier runs
+        long suggestions = 0;
+        BulkOperations bulk = null;
+        int pending = 0;
+        for (int i = 0; i < books.size; i++) {
+            if (forecast.suggested[i] <= 0) {
+                continue;
+            }
+            if (bulk == null) {
+                bulk = mongoTemplate.bulkOps(BulkOperations.BulkMode.UNORDERED, ReorderSuggestion.class);
+            }
+            bulk.upsert(new Query(Criteria.where("bookId").is(books.ids[i])), new Update()
+                    .set("title", books.titles[i])
+                    .set("stockQuantity", books.stock[i])
+                    .set("minThreshold", books.minThreshold[i])
+                    .set("maxThreshold", books.maxThreshold[i])
+                    .set("dailyVelocity", forecast.velocity[i])
+                    .set("daysOfCover", forecast.daysOfCover[i])
+                    .set("suggestedQuantity", forecast.suggested[i])
+                    .set("computedAt", computedAt));
+            suggestions++;
+            if (++pending == STREAM_BATCH) {
+                bulk.execute();
+                bulk = null;
+                pending = 0;
+            }
+        }
+        if (bulk != null) {
+            bulk.execute();
+        }
+        mongoTemplate.remove(new Query(Criteria.where("computedAt").lt(computedAt)), ReorderSuggestion.class);
+
+        ForecastRunResult result = new ForecastRunResult();
+        result.setBooksScanned(books.size);
+        result.setSalesRows(sales.size);
+        result.setSuggestions(suggestions);
+        result.setElapsedMs(System.currentTimeMillis() - startedAt);
+        logger.info("Reorder forecast: {} books, {} sales rows, {} suggestions in {} ms",
+                books.size, sales.size, suggestions, result.getElapsedMs());
+        return result;
+    }
+
+    // Most urgent (fewest days of cover) first
+    public CursorPage<ReorderSuggestion> getSuggestions(String cursor, int size) {
+        int pageSize = Math.max(1, Math.min(size, maxPageSize));
+
+        Query query = new Query();
+        if (cursor != null && !cursor.isBlank()) {
+            String[] parts = PageCursor.decode(cursor, 2);
+            double afterCover;
+            try {
+                afterCover = Double.parseDouble(parts[0]);
+            } catch (NumberFormatException e) {
+                throw new IllegalArgumentException("Invalid cursor");
+            }
+            query.addCriteria(new Criteria().orOperator(
+                    Criteria.where("daysOfCover").gt(afterCover),
+                    Criteria.where("daysOfCover").is(afterCover).and("bookId").gt(parts[1])));
+        }
+        query.with(Sort.by(Sort.Direction.ASC, "daysOfCover").and(Sort.by(Sort.Direction.ASC, "bookId")))
+                .limit(pageSize + 1);
+
+        List<ReorderSuggestion> items = new ArrayList<>(mongoTemplate.find(query, ReorderSuggestion.class));
+        boolean hasMore = items.size() > pageSize;
+        String nextCursor = null;
+        if (hasMore) {
+            items = new ArrayList<>(items.subList(0, pageSize));
+            ReorderSuggestion last = items.get(pageSize - 1);
+            nextCursor = PageCursor.encode(String.valueOf(last.getDaysOfCover()), last.getBookId());
+        }
+        return new CursorPage<>(items, nextCursor, hasMore);
+    }
+
+    public ReorderSuggestion getSuggestion(String bookId) {
+        return mongoTemplate.findById(bookId, ReorderSuggestion.class);
+    }
+
+    // { $group: { _id: { b: book, d: "yyyy-MM-dd" }, q: { $sum: quantity } } }, the day taken in the
+    // server's zone like `today` and the LocalDateTime orderDate itself, not in UTC
+    private static AggregationOperation dailySalesGroup(String timezone) {
+        return context -> new Document("$group", new Document("_id", new Document("b", "$items.book_id")
+                .append("d", new Document("$dateToString", new Document("format", "%Y-%m-%d")
+                        .append("date", "$orderDate").append("timezone", timezone))))
+                .append("q", new Document("$sum", "$items.quantity")));
+    }
+
+    // Mongo takes Olson names and +hh:mm offsets, but not "Z"
+    static String mongoTimezone(ZoneId zone) {
+        return zone.normalized().equals(ZoneOffset.UTC) ? "+00:00" : zone.getId();
+    }
+
+    // weights[age] = alpha * (1 - alpha)^age, so velocity is a dot product with the sales by age
+    static double[] decayWeights(double alpha, int days) {
+        if (alpha <= 0 || alpha > 1) {
+            throw new IllegalArgumentException("inventory.forecast.alpha must be in (0, 1]");
+        }
+        double[] weights = new double[days];
+        double weight = alpha;
+        for (int age = 0; age < days; age++) {
+            weights[age] = weight;
+            weight *= 1 - alpha;
+        }
+        return weights;
+    }
+
+    // Book attributes by book index
+    static final class Columns {
+        int size;
+        String[] ids = new String[1024];
+        String[] titles = new String[1024];
+        int[] stock = new int[1024];
+        int[] minThreshold = new int[1024];
+        int[] maxThreshold = new int[1024];
+
+        int add(Book book) {
+            if (size == ids.length) {
+                int capacity = size * 2;
+                ids = Arrays.copyOf(ids, capacity);
+                titles = Arrays.copyOf(titles, capacity);
+                stock = Arrays.copyOf(stock, capacity);
+                minThreshold = Arrays.copyOf(minThreshold, capacity);
+                maxThreshold = Arrays.copyOf(maxThreshold, capacity);
+            }
+            ids[size] = book.getBook_id();
+            titles[size] = book.getTitle();
+            stock[size] = book.getStockQuantity();
+            minThreshold[size] = book.getMinThreshold();
+            maxThreshold[size] = book.getMaxThreshold();
+            return size++;
+        }
+    }
+
+    // (book, age in days, units) rows in arrival order until groupByBook sorts them
+    static final class SalesRows {
+        int size;
+        int[] book = new int[4096];
+        int[] age = new int[4096];
+        int[] quantity = new int[4096];
+
+        void add(int bookIndex, int ageDays, int units) {
+            if (size == book.length) {
+                int capacity = size * 2;
+                book = Arrays.copyOf(book, capacity);
+                age = Arrays.copyOf(age, capacity);
+                quantity = Arrays.copyOf(quantity, capacity);
+            }
+            book[size] = bookIndex;
+            age[size] = ageDays;
+            quantity[size] = units;
+            size++;
+        }
+
+        // Counting sort by book; returns offsets so book i's rows are [offsets[i], offsets[i + 1])
+        int[] groupByBook(int books) {
+            int[] offsets = new int[books + 1];
+            for (int r = 0; r < size; r++) {
+                offsets[book[r] + 1]++;
+            }
+            for (int i = 0; i < books; i++) {
+                offsets[i + 1] += offsets[i];
+            }
+            int[] next = Arrays.copyOf(offsets, books);
+            int[] sortedAge = new int[size];
+            int[] sortedQuantity = new int[size];
+            for (int r = 0; r < size; r++) {
+                int slot = next[book[r]]++;
+                sortedAge[slot] = age[r];
+                sortedQuantity[slot] = quantity[r];
+            }
+            age = sortedAge;
+            quantity = sortedQuantity;
+            book = null;
+            return offsets;
+        }
+    }
+
+    static final class Forecast {
+        final double[] velocity;
+        final double[] daysOfCover;
+        final int[] suggested;
+
+        Forecast(int books) {
+            velocity = new double[books];
+            daysOfCover = new double[books];
+            suggested = new int[books];
+        }
+    }
+
+    // Splits the book range until it is small enough to compute directly; each task writes only its
+    // own slots, so no synchronization is needed
+    static final class ForecastTask extends RecursiveAction {
+        private static final int PARTITION = 8192;
+
+        private final Columns books;
+        private final SalesRows sales;
+        private final int[] offsets;
+        private final double[] weights;
+        private final int leadTimeDays;
+        private final int targetCoverDays;
+        private final Forecast out;
+        private final int from;
+        private final int to;
+
+        ForecastTask(Columns books, SalesRows sales, int[] offsets, double[] weights, int leadTimeDays,
+                int targetCoverDays, Forecast out, int from, int to) {
+            this.books = books;
+            this.sales = sales;
+            this.offsets = offsets;
+            this.weights = weights;
+            this.leadTimeDays = leadTimeDays;
+            this.targetCoverDays = targetCoverDays;
+            this.out = out;
+            this.from = from;
+            this.to = to;
+        }
+
+        @Override
+        protected void compute() {
+            if (to - from > PARTITION) {
+                int middle = (from + to) >>> 1;
+                invokeAll(new ForecastTask(books, sales, offsets, weights, leadTimeDays, targetCoverDays, out, from, middle),
+                        new ForecastTask(books, sales, offsets, weights, leadTimeDays, targetCoverDays, out, middle, to));
+                return;
+            }
+            for (int i = from; i < to; i++) {
+                double velocity = 0;
+                for (int r = offsets[i]; r < offsets[i + 1]; r++) {
+                    velocity += weights[sales.age[r]] * sales.quantity[r];
+                }
+                int stock = Math.max(0, books.stock[i]);
+                out.velocity[i] = velocity;
+                out.daysOfCover[i] = daysOfCover(stock, velocity);
+                out.suggested[i] = suggestedQuantity(stock, velocity, out.daysOfCover[i],
+                        books.minThreshold[i], books.maxThreshold[i], leadTimeDays, targetCoverDays);
+            }
+        }
+    }
+
+    // An out-of-stock book has no cover even without recent sales, so it sorts with the most urgent
+    static double daysOfCover(int stock, double velocity) {
+        if (stock <= 0) {
+            return 0;
+        }
+        return velocity > 0 ? Math.min(stock / velocity, MAX_COVER_DAYS) : MAX_COVER_DAYS;
+    }
+
+    // Reorder once stock is at the low-stock threshold or will run out within the lead time; order
+    // enough to bring the stock expected on delivery back up to maxThreshold (or target-cover-days
+    // of sales when the book has no maxThreshold)
+    static int suggestedQuantity(int stock, double velocity, double daysOfCover, int minThreshold, int maxThreshold,
+            int leadTimeDays, int targetCoverDays) {
+        int threshold = minThreshold > 0 ? minThreshold : InventoryService.DEFAULT_LOW_STOCK_THRESHOLD;
+        if (stock > threshold && daysOfCover > leadTimeDays) {
+            return 0;
+        }
+        double target = maxThreshold > 0 ? maxThreshold : Math.max(threshold + 1, Math.ceil(velocity * targetCoverDays));
+        double onDelivery = Math.max(0, stock - velocity * leadTimeDays);
+        return (int) Math.max(0, Math.ceil(target - onDelivery));
+    }
+}
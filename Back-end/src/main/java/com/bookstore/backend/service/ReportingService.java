@@ -2,233 +2,512 @@ package com.bookstore.backend.service;
 
 import com.bookstore.backend.dto.*;
 import com.bookstore.backend.model.Book;
+import com.bookstore.backend.model.BookSalesRollup;
+import com.bookstore.backend.model.DailySalesRollup;
+import com.bookstore.backend.model.MonthlySalesRollup;
 import com.bookstore.backend.model.Order;
-import com.bookstore.backend.model.Order.OrderItem;
+import com.bookstore.backend.model.StatusSalesRollup;
 import com.bookstore.backend.model.User;
+import com.bookstore.backend.model.UserSalesRollup;
 import com.bookstore.backend.repository.BookRepository;
-import com.bookstore.backend.repository.OrderRepository;
 import com.bookstore.backend.repository.UserRepository;
+import com.bookstore.backend.util.PageCursor;
+import org.bson.Document;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.data.domain.Sort;
+import org.springframework.data.mongodb.core.MongoTemplate;
+import org.springframework.data.mongodb.core.aggregation.AccumulatorOperators;
+import org.springframework.data.mongodb.core.aggregation.Aggregation;
+import org.springframework.data.mongodb.core.aggregation.AggregationOperation;
+import org.springframework.data.mongodb.core.aggregation.ArithmeticOperators;
+import org.springframework.data.mongodb.core.query.Criteria;
+import org.springframework.data.mongodb.core.query.Query;
 import org.springframework.stereotype.Service;
 
-import java.time.LocalDateTime;
+import java.time.DayOfWeek;
+import java.time.LocalDate;
 import java.time.Month;
 import java.time.format.TextStyle;
+import java.time.temporal.IsoFields;
 import java.util.*;
+import java.util.function.Consumer;
 import java.util.stream.Collectors;
+import java.util.stream.Stream;
 
 @Service
 public class ReportingService {
 
-    @Autowired
-    private OrderRepository orderRepository;
-
     @Autowired
     private UserRepository userRepository;
 
     @Autowired
     private BookRepository bookRepository;
 
-    public SalesReportDTO getTotalSalesReport() {
-        List<Order> allOrders = orderRepository.findAll();
-        
+    @Autowired
+    private MongoTemplate mongoTemplate;
+
+    @Value("${reports.page.max-size:100}")
+    private int maxPageSize;
+
+    private static final int STREAM_CHUNK = 500;
+
+    // Unbounded reports come from the status rollup; date ranges are aggregated in MongoDB,
+    // so only one row per status comes back instead of every order
+    public SalesReportDTO getTotalSalesReport(LocalDate from, LocalDate to) {
+        Criteria dateRange = orderDateRange(from, to);
+        if (dateRange == null) {
+            return salesReportFromRollup();
+        }
+
+        List<AggregationOperation> stages = new ArrayList<>();
+        stages.add(Aggregation.match(dateRange));
+        stages.add(Aggregation.group("status")
+                .count().as("orders")
+                .sum("totalAmount").as("revenue")
+                .sum(AccumulatorOperators.Sum.sumOf("items.quantity")).as("itemsSold"));
+
+        List<Document> rows = mongoTemplate.aggregate(Aggregation.newAggregation(stages), Order.class, Document.class)
+                .getMappedResults();
+
         SalesReportDTO report = new SalesReportDTO();
-        
+
         double totalRevenue = 0;
+        int totalOrders = 0;
         int totalItemsSold = 0;
         Map<String, Integer> ordersByStatus = new HashMap<>();
         Map<String, Double> revenueByStatus = new HashMap<>();
-        
-        for (Order order : allOrders) {
-            totalRevenue += order.getTotalAmount();
-            
-            // Count items sold
-            if (order.getItems() != null) {
-                for (OrderItem item : order.getItems()) {
-                    totalItemsSold += item.getQuantity();
-                }
-            }
-            
-            // Count orders by status
-            String status = order.getStatus();
-            ordersByStatus.put(status, ordersByStatus.getOrDefault(status, 0) + 1);
-            revenueByStatus.put(status, revenueByStatus.getOrDefault(status, 0.0) + order.getTotalAmount());
+
+        for (Document row : rows) {
+            String status = row.getString("_id");
+            int orders = ((Number) row.get("orders")).intValue();
+            double revenue = ((Number) row.get("revenue")).doubleValue();
+
+            totalOrders += orders;
+            totalRevenue += revenue;
+            totalItemsSold += ((Number) row.get("itemsSold")).intValue();
+            ordersByStatus.put(status, orders);
+            revenueByStatus.put(status, revenue);
         }
-        
+
         report.setTotalRevenue(totalRevenue);
-        report.setTotalOrders(allOrders.size());
+        report.setTotalOrders(totalOrders);
         report.setTotalItemsSold(totalItemsSold);
-        report.setAverageOrderValue(allOrders.isEmpty() ? 0 : totalRevenue / allOrders.size());
+        report.setAverageOrderValue(totalOrders == 0 ? 0 : totalRevenue / totalOrders);
         report.setOrdersByStatus(ordersByStatus);
         report.setRevenueByStatus(revenueByStatus);
-        
+
         return report;
     }
 
-    public List<TopSellingBookDTO> getTopSellingBooks(int limit) {
-        List<Order> allOrders = orderRepository.findAll();
-        
-        // Map to aggregate book sales: bookId -> {quantity, revenue, bookInfo}
-        Map<String, BookSalesData> bookSalesMap = new HashMap<>();
-        
-        for (Order order : allOrders) {
-            if (order.getItems() != null) {
-                for (OrderItem item : order.getItems()) {
-                    String bookId = item.getBook_id();
-                    BookSalesData data = bookSalesMap.getOrDefault(bookId, new BookSalesData());
-                    data.quantity += item.getQuantity();
-                    data.revenue += item.getPrice() * item.getQuantity();
-                    data.title = item.getTitle();
-                    data.price = item.getPrice();
-                    bookSalesMap.put(bookId, data);
-                }
+    private SalesReportDTO salesReportFromRollup() {
+        double totalRevenue = 0;
+        int totalOrders = 0;
+        int totalItemsSold = 0;
+        Map<String, Integer> ordersByStatus = new HashMap<>();
+        Map<String, Double> revenueByStatus = new HashMap<>();
+
+        for (StatusSalesRollup row : mongoTemplate.findAll(StatusSalesRollup.class)) {
+            if (row.getOrders() == 0) {
+                continue;
             }
+            totalOrders += row.getOrders();
+            totalRevenue += row.getRevenue();
+            totalItemsSold += row.getItemsSold();
+            ordersByStatus.put(row.getStatus(), row.getOrders());
+            revenueByStatus.put(row.getStatus(), row.getRevenue());
         }
-        
-        // Convert to DTOs and sort by quantity sold
-        List<TopSellingBookDTO> topBooks = bookSalesMap.entrySet().stream()
-                .map(entry -> {
+
+        SalesReportDTO report = new SalesReportDTO();
+        report.setTotalRevenue(totalRevenue);
+        report.setTotalOrders(totalOrders);
+        report.setTotalItemsSold(totalItemsSold);
+        report.setAverageOrderValue(totalOrders == 0 ? 0 : totalRevenue / totalOrders);
+        report.setOrdersByStatus(ordersByStatus);
+        report.setRevenueByStatus(revenueByStatus);
+        return report;
+    }
+
+    // [from, to] inclusive by calendar day; either end may be open
+    private Criteria orderDateRange(LocalDate from, LocalDate to) {
+        if (from == null && to == null) {
+            return null;
+        }
+        if (from != null && to != null && to.isBefore(from)) {
+            throw new IllegalArgumentException("'to' must not be before 'from'");
+        }
+        Criteria criteria = Criteria.where("orderDate");
+        if (from != null) {
+            criteria = criteria.gte(from.atStartOfDay());
+        }
+        if (to != null) {
+            criteria = criteria.lt(to.plusDays(1).atStartOfDay());
+        }
+        return criteria;
+    }
+
+    // O(k): the k best rows of the per-book rollup. With a date window the ranking is pushed down
+    // into MongoDB ($group + $sort + $limit) so only k rows come back. Authors are fetched in one
+    // batch for the winners only.
+    public List<TopSellingBookDTO> getTopSellingBooks(int limit, LocalDate from, LocalDate to) {
+        int k = Math.max(limit, 0);
+        Criteria dateRange = orderDateRange(from, to);
+        List<TopSellingBookDTO> topBooks = dateRange == null
+                ? topSellingFromRollup(k)
+                : topSellingInWindow(k, dateRange);
+
+        Map<String, String> authors = new HashMap<>();
+        List<String> bookIds = topBooks.stream().map(TopSellingBookDTO::getBookId).collect(Collectors.toList());
+        for (Book book : bookRepository.findAllById(bookIds)) {
+            authors.put(book.getBook_id(), book.getAuthor());
+        }
+        topBooks.forEach(dto -> dto.setAuthor(authors.get(dto.getBookId())));
+
+        return topBooks;
+    }
+
+    private List<TopSellingBookDTO> topSellingFromRollup(int k) {
+        Query query = new Query()
+                .with(Sort.by(Sort.Direction.DESC, "quantity"))
+                .limit(k);
+        return mongoTemplate.find(query, BookSalesRollup.class).stream()
+                .map(row -> {
                     TopSellingBookDTO dto = new TopSellingBookDTO();
-                    dto.setBookId(entry.getKey());
-                    dto.setTitle(entry.getValue().title);
-                    dto.setTotalQuantitySold(entry.getValue().quantity);
-                    dto.setTotalRevenue(entry.getValue().revenue);
-                    dto.setPrice(entry.getValue().price);
-                    
-                    // Fetch author from book repository
-                    Optional<Book> bookOptional = bookRepository.findById(entry.getKey());
-                    if (bookOptional.isPresent()) {
-                        dto.setAuthor(bookOptional.get().getAuthor());
-                    }
-                    
+                    dto.setBookId(row.getBookId());
+                    dto.setTitle(row.getTitle());
+                    dto.setTotalQuantitySold(row.getQuantity());
+                    dto.setTotalRevenue(row.getRevenue());
+                    dto.setPrice(row.getPrice());
                     return dto;
                 })
-                .sorted((a, b) -> Integer.compare(b.getTotalQuantitySold(), a.getTotalQuantitySold()))
-                .limit(limit)
                 .collect(Collectors.toList());
-        
-        return topBooks;
     }
 
-    public List<MonthlyRevenueDTO> getMonthlyRevenueStats() {
-        List<Order> allOrders = orderRepository.findAll();
-        
-        // Group orders by year-month
-        Map<String, MonthlyData> monthlyDataMap = new HashMap<>();
-        
-        for (Order order : allOrders) {
-            LocalDateTime orderDate = order.getOrderDate();
-            if (orderDate != null) {
-                String monthKey = orderDate.getYear() + "-" + String.format("%02d", orderDate.getMonthValue());
-                
-                MonthlyData data = monthlyDataMap.getOrDefault(monthKey, new MonthlyData());
-                data.revenue += order.getTotalAmount();
-                data.orderCount++;
-                
-                if (order.getItems() != null) {
-                    for (OrderItem item : order.getItems()) {
-                        data.itemsSold += item.getQuantity();
-                    }
-                }
-                
-                data.year = orderDate.getYear();
-                data.month = orderDate.getMonth();
-                
-                monthlyDataMap.put(monthKey, data);
-            }
+    private List<TopSellingBookDTO> topSellingInWindow(int k, Criteria dateRange) {
+        if (k == 0) {
+            return new ArrayList<>();
         }
-        
-        // Convert to DTOs and sort by date (most recent first)
-        List<MonthlyRevenueDTO> monthlyStats = monthlyDataMap.entrySet().stream()
-                .map(entry -> {
+        Aggregation aggregation = Aggregation.newAggregation(
+                Aggregation.match(dateRange),
+                Aggregation.unwind("items"),
+                Aggregation.group("items.book_id")
+                        .sum("items.quantity").as("quantity")
+                        .sum(ArithmeticOperators.Multiply.valueOf("items.price").multiplyBy("items.quantity")).as("revenue")
+                        .last("items.title").as("title")
+                        .last("items.price").as("price"),
+                Aggregation.sort(Sort.by(Sort.Direction.DESC, "quantity").and(Sort.by("_id"))),
+                Aggregation.limit(k))
+                .withOptions(Aggregation.newAggregationOptions().allowDiskUse(true).build());
+
+        return mongoTemplate.aggregate(aggregation, Order.class, Document.class).getMappedResults().stream()
+                .map(row -> {
+                    TopSellingBookDTO dto = new TopSellingBookDTO();
+                    dto.setBookId(row.getString("_id"));
+                    dto.setTitle(row.getString("title"));
+                    dto.setTotalQuantitySold(((Number) row.get("quantity")).intValue());
+                    dto.setTotalRevenue(((Number) row.get("revenue")).doubleValue());
+                    Number price = (Number) row.get("price");
+                    dto.setPrice(price == null ? 0 : price.doubleValue());
+                    return dto;
+                })
+                .collect(Collectors.toList());
+    }
+
+    // O(months): read from the per-month rollup, most recent first
+    public List<MonthlyRevenueDTO> getMonthlyRevenueStats() {
+        Query query = new Query().with(Sort.by(Sort.Direction.DESC, "month"));
+        return mongoTemplate.find(query, MonthlySalesRollup.class).stream()
+                .map(row -> {
                     MonthlyRevenueDTO dto = new MonthlyRevenueDTO();
-                    MonthlyData data = entry.getValue();
-                    dto.setMonth(data.month.getDisplayName(TextStyle.FULL, Locale.ENGLISH));
-                    dto.setYear(data.year);
-                    dto.setRevenue(data.revenue);
-                    dto.setOrderCount(data.orderCount);
-                    dto.setItemsSold(data.itemsSold);
+                    dto.setMonth(Month.of(row.getMonthValue()).getDisplayName(TextStyle.FULL, Locale.ENGLISH));
+                    dto.setYear(row.getYear());
+                    dto.setRevenue(row.getRevenue());
+                    dto.setOrderCount(row.getOrderCount());
+                    dto.setItemsSold(row.getItemsSold());
+                    return dto;
+                })
+                .collect(Collectors.toList());
+    }
+
+    // Revenue series over [from, to] from the daily/monthly buckets: a year of data is at most
+    // 366 day documents (weeks are folded from days) or 12 month documents, whatever the order volume
+    public List<RevenueBucketDTO> getRevenueSeries(LocalDate from, LocalDate to, String granularity) {
+        LocalDate end = to != null ? to : LocalDate.now();
+        LocalDate start = from != null ? from : end.minusYears(1).plusDays(1);
+        if (end.isBefore(start)) {
+            throw new IllegalArgumentException("'to' must not be before 'from'");
+        }
+
+        String unit = granularity == null ? "day" : granularity.toLowerCase(Locale.ROOT);
+        switch (unit) {
+            case "day":
+                return dailyBuckets(start, end);
+            case "week":
+                return weeklyBuckets(start, end);
+            case "month":
+                return monthlyBuckets(start, end);
+            default:
+                throw new IllegalArgumentException("Granularity must be one of: day, week, month");
+        }
+    }
+
+    private List<RevenueBucketDTO> dailyBuckets(LocalDate start, LocalDate end) {
+        Query query = new Query(Criteria.where("day").gte(SalesRollupService.dayKey(start)).lte(SalesRollupService.dayKey(end)))
+                .with(Sort.by(Sort.Direction.ASC, "day"));
+        return mongoTemplate.find(query, DailySalesRollup.class).stream()
+                .map(row -> {
+                    RevenueBucketDTO dto = new RevenueBucketDTO();
+                    dto.setPeriod(row.getDay());
+                    dto.setStart(LocalDate.parse(row.getDay()));
+                    dto.setRevenue(row.getRevenue());
+                    dto.setOrderCount(row.getOrderCount());
+                    dto.setItemsSold(row.getItemsSold());
                     return dto;
                 })
-                .sorted((a, b) -> {
-                    int yearCompare = Integer.compare(b.getYear(), a.getYear());
-                    if (yearCompare != 0) return yearCompare;
-                    // Compare by month value
-                    Month monthA = Month.valueOf(a.getMonth().toUpperCase());
-                    Month monthB = Month.valueOf(b.getMonth().toUpperCase());
-                    return Integer.compare(monthB.getValue(), monthA.getValue());
+                .collect(Collectors.toList());
+    }
+
+    // ISO weeks (Monday start); the first and last week are clipped to the requested range
+    private List<RevenueBucketDTO> weeklyBuckets(LocalDate start, LocalDate end) {
+        Map<LocalDate, RevenueBucketDTO> weeks = new LinkedHashMap<>();
+        for (RevenueBucketDTO day : dailyBuckets(start, end)) {
+            LocalDate monday = day.getStart().with(DayOfWeek.MONDAY);
+            RevenueBucketDTO week = weeks.computeIfAbsent(monday, key -> {
+                RevenueBucketDTO dto = new RevenueBucketDTO();
+                dto.setPeriod(key.get(IsoFields.WEEK_BASED_YEAR) + "-W"
+                        + String.format("%02d", key.get(IsoFields.WEEK_OF_WEEK_BASED_YEAR)));
+                dto.setStart(key.isBefore(start) ? start : key);
+                return dto;
+            });
+            week.setRevenue(week.getRevenue() + day.getRevenue());
+            week.setOrderCount(week.getOrderCount() + day.getOrderCount());
+            week.setItemsSold(week.getItemsSold() + day.getItemsSold());
+        }
+        return new ArrayList<>(weeks.values());
+    }
+
+    // Whole calendar months overlapping [start, end]
+    private List<RevenueBucketDTO> monthlyBuckets(LocalDate start, LocalDate end) {
+        Query query = new Query(Criteria.where("month")
+                .gte(SalesRollupService.monthKey(start.atStartOfDay()))
+                .lte(SalesRollupService.monthKey(end.atStartOfDay())))
+                .with(Sort.by(Sort.Direction.ASC, "month"));
+        return mongoTemplate.find(query, MonthlySalesRollup.class).stream()
+                .map(row -> {
+                    RevenueBucketDTO dto = new RevenueBucketDTO();
+                    dto.setPeriod(row.getMonth());
+                    dto.setStart(LocalDate.of(row.getYear(), row.getMonthValue(), 1));
+                    dto.setRevenue(row.getRevenue());
+                    dto.setOrderCount(row.getOrderCount());
+                    dto.setItemsSold(row.getItemsSold());
+                    return dto;
                 })
                 .collect(Collectors.toList());
-        
-        return monthlyStats;
     }
 
+    // Joins users with the per-user rollup instead of every order
     public List<UserActivityDTO> getUserActivityLogs() {
-        List<User> allUsers = userRepository.findAll();
-        List<Order> allOrders = orderRepository.findAll();
-        
-        // Group orders by userId
-        Map<String, UserOrderData> userOrderMap = new HashMap<>();
-        
-        for (Order order : allOrders) {
-            String userId = order.getUserId();
-            UserOrderData data = userOrderMap.getOrDefault(userId, new UserOrderData());
-            data.totalOrders++;
-            data.totalSpent += order.getTotalAmount();
-            
-            if (order.getOrderDate() != null) {
-                if (data.lastOrderDate == null || order.getOrderDate().isAfter(data.lastOrderDate)) {
-                    data.lastOrderDate = order.getOrderDate();
-                }
-            }
-            
-            userOrderMap.put(userId, data);
+        Map<String, UserSalesRollup> rollups = new HashMap<>();
+        for (UserSalesRollup row : mongoTemplate.findAll(UserSalesRollup.class)) {
+            rollups.put(row.getUserId(), row);
         }
-        
-        // Convert to DTOs
+
         List<UserActivityDTO> activityLogs = new ArrayList<>();
-        
-        for (User user : allUsers) {
-            UserActivityDTO dto = new UserActivityDTO();
-            dto.setUserId(user.getUser_id());
-            dto.setUserName(user.getName());
-            dto.setEmail(user.getEmail());
-            dto.setRegistrationDate(user.getCreatedAt());
-            
-            UserOrderData orderData = userOrderMap.getOrDefault(user.getUser_id(), new UserOrderData());
-            dto.setTotalOrders(orderData.totalOrders);
-            dto.setTotalSpent(orderData.totalSpent);
-            dto.setLastOrderDate(orderData.lastOrderDate);
-            
-            activityLogs.add(dto);
-        }
-        
+
+        for (User user : userRepository.findAll()) {
+            activityLogs.add(toActivity(user, rollups.get(user.getUser_id())));
+        }
+
         // Sort by total orders (most active first)
         activityLogs.sort((a, b) -> Integer.compare(b.getTotalOrders(), a.getTotalOrders()));
-        
+
         return activityLogs;
     }
 
-    // Helper classes for internal data aggregation
-    private static class BookSalesData {
-        int quantity = 0;
-        double revenue = 0;
-        String title = "";
-        double price = 0;
+    // Keyset-paginated activity report. Users with orders come first, most active first, read
+    // from the per-user rollup through its (totalOrders desc, _id) index; users without orders
+    // follow in _id order. Only one page of users is ever loaded.
+    public CursorPage<UserActivityDTO> getUserActivityPage(String cursor, int size) {
+        int pageSize = Math.max(1, Math.min(size, maxPageSize));
+
+        boolean buyersPhase = true;
+        Integer afterOrders = null;
+        String afterId = null;
+        if (cursor != null && !cursor.isBlank()) {
+            String[] parts = PageCursor.decode(cursor, 3);
+            if ("o".equals(parts[0])) {
+                try {
+                    afterOrders = Integer.valueOf(parts[1]);
+                } catch (NumberFormatException e) {
+                    throw new IllegalArgumentException("Invalid cursor");
+                }
+            } else if ("u".equals(parts[0])) {
+                buyersPhase = false;
+            } else {
+                throw new IllegalArgumentException("Invalid cursor");
+            }
+            afterId = parts[2];
+        }
+
+        List<UserActivityDTO> items = new ArrayList<>();
+        String nextCursor = null;
+        boolean hasMore = false;
+
+        while (buyersPhase) {
+            int wanted = pageSize - items.size() + 1;
+            List<UserSalesRollup> rows = mongoTemplate.find(
+                    buyersAfter(afterOrders, afterId).limit(wanted), UserSalesRollup.class);
+            List<UserActivityDTO> batch = joinUsers(rows);
+            for (int i = 0; i < batch.size() && !hasMore; i++) {
+                if (items.size() == pageSize) {
+                    hasMore = true;
+                } else {
+                    items.add(batch.get(i));
+                }
+            }
+            if (hasMore) {
+                break;
+            }
+            if (!rows.isEmpty()) {
+                UserSalesRollup last = rows.get(rows.size() - 1);
+                afterOrders = last.getTotalOrders();
+                afterId = last.getUserId();
+            }
+            if (rows.size() < wanted) {
+                buyersPhase = false;
+                afterId = null;
+            }
+        }
+
+        while (!hasMore && items.size() <= pageSize) {
+            int wanted = pageSize - items.size() + 1;
+            List<User> users = mongoTemplate.find(usersAfter(afterId).limit(wanted), User.class);
+            for (UserActivityDTO dto : withoutOrders(users)) {
+                if (items.size() == pageSize) {
+                    hasMore = true;
+                    break;
+                }
+                items.add(dto);
+            }
+            if (users.size() < wanted) {
+                break;
+            }
+            afterId = users.get(users.size() - 1).getUser_id();
+        }
+
+        if (hasMore) {
+            UserActivityDTO last = items.get(items.size() - 1);
+            nextCursor = last.getTotalOrders() > 0
+                    ? PageCursor.encode("o", String.valueOf(last.getTotalOrders()), last.getUserId())
+                    : PageCursor.encode("u", null, last.getUserId());
+        }
+        return new CursorPage<>(items, nextCursor, hasMore);
+    }
+
+    // Same order as the paginated report, pushed row by row to the sink while the cursors are
+    // read, in chunks of STREAM_CHUNK users; memory use does not grow with the number of users
+    public void streamUserActivity(Consumer<UserActivityDTO> sink) {
+        Query buyers = buyersAfter(null, null);
+        buyers.cursorBatchSize(STREAM_CHUNK);
+        try (Stream<UserSalesRollup> rows = mongoTemplate.stream(buyers, UserSalesRollup.class)) {
+            List<UserSalesRollup> chunk = new ArrayList<>(STREAM_CHUNK);
+            for (UserSalesRollup row : (Iterable<UserSalesRollup>) rows::iterator) {
+                chunk.add(row);
+                if (chunk.size() == STREAM_CHUNK) {
+                    joinUsers(chunk).forEach(sink);
+                    chunk.clear();
+                }
+            }
+            joinUsers(chunk).forEach(sink);
+        }
+
+        Query users = usersAfter(null);
+        users.cursorBatchSize(STREAM_CHUNK);
+        try (Stream<User> rows = mongoTemplate.stream(users, User.class)) {
+            List<User> chunk = new ArrayList<>(STREAM_CHUNK);
+            for (User user : (Iterable<User>) rows::iterator) {
+                chunk.add(user);
+                if (chunk.size() == STREAM_CHUNK) {
+                    withoutOrders(chunk).forEach(sink);
+                    chunk.clear();
+                }
+            }
+            withoutOrders(chunk).forEach(sink);
+        }
     }
 
-    private static class MonthlyData {
-        double revenue = 0;
-        int orderCount = 0;
-        int itemsSold = 0;
-        int year;
-        Month month;
+    private Query buyersAfter(Integer totalOrders, String userId) {
+        Query query = new Query();
+        if (totalOrders != null) {
+            query.addCriteria(new Criteria().orOperator(
+                    Criteria.where("totalOrders").lt(totalOrders),
+                    Criteria.where("totalOrders").is(totalOrders).and("userId").gt(userId)));
+        }
+        return query.with(Sort.by(Sort.Direction.DESC, "totalOrders").and(Sort.by(Sort.Direction.ASC, "userId")));
     }
 
-    private static class UserOrderData {
-        int totalOrders = 0;
-        double totalSpent = 0;
-        LocalDateTime lastOrderDate;
+    private Query usersAfter(String userId) {
+        Query query = new Query();
+        if (userId != null) {
+            query.addCriteria(Criteria.where("user_id").gt(userId));
+        }
+        query.fields().exclude("password");
+        return query.with(Sort.by(Sort.Direction.ASC, "user_id"));
     }
-}
 
+    // Rollup rows joined with their users in one query; rows of deleted users are dropped
+    private List<UserActivityDTO> joinUsers(List<UserSalesRollup> rows) {
+        if (rows.isEmpty()) {
+            return new ArrayList<>();
+        }
+        Map<String, User> users = new HashMap<>();
+        List<String> ids = rows.stream().map(UserSalesRollup::getUserId).collect(Collectors.toList());
+        for (User user : userRepository.findAllById(ids)) {
+            users.put(user.getUser_id(), user);
+        }
+
+        List<UserActivityDTO> result = new ArrayList<>();
+        for (UserSalesRollup row : rows) {
+            User user = users.get(row.getUserId());
+            if (user != null) {
+                result.add(toActivity(user, row));
+            }
+        }
+        return result;
+    }
+
+    // Users that have no rollup row, i.e. no orders, checked with one query per chunk
+    private List<UserActivityDTO> withoutOrders(List<User> users) {
+        if (users.isEmpty()) {
+            return new ArrayList<>();
+        }
+        List<String> ids = users.stream().map(User::getUser_id).collect(Collectors.toList());
+        Query query = new Query(Criteria.where("userId").in(ids));
+        query.fields().include("userId");
+        Set<String> buyers = mongoTemplate.find(query, UserSalesRollup.class).stream()
+                .map(UserSalesRollup::getUserId)
+                .collect(Collectors.toSet());
+
+        List<UserActivityDTO> result = new ArrayList<>();
+        for (User user : users) {
+            if (!buyers.contains(user.getUser_id())) {
+                result.add(toActivity(user, null));
+            }
+        }
+        return result;
+    }
+
+    private UserActivityDTO toActivity(User user, UserSalesRollup orderData) {
+        UserActivityDTO dto = new UserActivityDTO();
+        dto.setUserId(user.getUser_id());
+        dto.setUserName(user.getName());
+        dto.setEmail(user.getEmail());
+        dto.setRegistrationDate(user.getCreatedAt());
+        if (orderData != null) {
+            dto.setTotalOrders(orderData.getTotalOrders());
+            dto.setTotalSpent(orderData.getTotalSpent());
+            dto.setLastOrderDate(orderData.getLastOrderDate());
+        }
+        return dto;
+    }
+}
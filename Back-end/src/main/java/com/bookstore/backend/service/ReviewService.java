@@ -1,21 +1,51 @@
 package com.bookstore.backend.service;
 
+import com.bookstore.backend.dto.CursorPage;
+import com.bookstore.backend.dto.RatingRepairResult;
+import com.bookstore.backend.dto.RatingSummary;
 import com.bookstore.backend.model.Book;
 import com.bookstore.backend.model.Review;
 import com.bookstore.backend.model.User;
 import com.bookstore.backend.repository.BookRepository;
 import com.bookstore.backend.repository.ReviewRepository;
 import com.bookstore.backend.repository.UserRepository;
+import com.bookstore.backend.util.PageCursor;
+import org.bson.Document;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.data.domain.Sort;
+import org.springframework.data.mongodb.core.BulkOperations;
+import org.springframework.data.mongodb.core.MongoTemplate;
+import org.springframework.data.mongodb.core.aggregation.Aggregation;
+import org.springframework.data.mongodb.core.aggregation.AggregationOperation;
+import org.springframework.data.mongodb.core.aggregation.AggregationUpdate;
+import org.springframework.data.mongodb.core.query.Criteria;
+import org.springframework.data.mongodb.core.query.Query;
+import org.springframework.data.mongodb.core.query.Update;
+import org.springframework.scheduling.annotation.Scheduled;
 import org.springframework.stereotype.Service;
 import org.springframework.transaction.annotation.Transactional;
 
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.LinkedHashSet;
 import java.util.List;
 import java.util.Optional;
+import java.util.Set;
+import java.util.function.Function;
+import java.util.stream.Stream;
 
 @Service
 public class ReviewService {
 
+    private static final Logger logger = LoggerFactory.getLogger(ReviewService.class);
+    private static final int REPAIR_BATCH = 1000;
+    static final int MAX_SUMMARY_IDS = 200;
+
     @Autowired
     private ReviewRepository reviewRepository;
 
@@ -28,6 +58,18 @@ public class ReviewService {
     @Autowired
     private BookService bookService;
 
+    @Autowired
+    private BookCache bookCache;
+
+    @Autowired
+    private MongoTemplate mongoTemplate;
+
+    @Autowired
+    private SchedulerLeader schedulerLeader;
+
+    @Value("${reviews.page.max-size:50}")
+    private int maxPageSize;
+
     // CREATE REVIEW
     public Review createReview(String userId, String bookId, int rating, String reviewText) {
         // Validate rating
@@ -36,8 +78,7 @@ public class ReviewService {
         }
 
         // Check if book exists
-        Optional<Book> bookOptional = bookRepository.findById(bookId);
-        if (bookOptional.isEmpty()) {
+        if (!bookCache.existsById(bookId)) {
             throw new RuntimeException("Book not found");
         }
 
@@ -63,15 +104,68 @@ public class ReviewService {
 
         Review savedReview = reviewRepository.save(review);
 
-        // Recalculate book's average rating
-        updateBookRating(bookId);
+        // Add it to the book's rating
+        applyRatingDelta(bookId, 0, rating);
 
         return savedReview;
     }
 
-    // GET REVIEWS BY BOOK
-    public List<Review> getReviewsByBook(String bookId) {
-        return reviewRepository.findByBook_idAndIsDeletedFalse(bookId);
+    // GET REVIEWS BY BOOK (keyset pagination: newest, highest or lowest rating first)
+    public CursorPage<Review> getReviewsByBook(String bookId, String sort, String cursor, int size) {
+        String field;
+        boolean ascending;
+        switch (sort == null ? "" : sort) {
+            case "newest":
+                field = "createdAt";
+                ascending = false;
+                break;
+            case "highest":
+                field = "rating";
+                ascending = false;
+                break;
+            case "lowest":
+                field = "rating";
+                ascending = true;
+                break;
+            default:
+                throw new IllegalArgumentException("Invalid sort. Must be one of: newest, highest, lowest");
+        }
+
+        Query query = new Query(Criteria.where("book_id").is(bookId).and("isDeleted").is(false));
+        if (cursor != null && !cursor.isBlank()) {
+            // Cursor parts: sort mode, last sort value, last review id
+            String[] parts = PageCursor.decode(cursor, 3);
+            if (!sort.equals(parts[0])) {
+                throw new IllegalArgumentException("Cursor does not match the requested sort order");
+            }
+            query.addCriteria(keysetCriteria(field, ascending, parseSortValue(field, parts[1]), parts[2]));
+        }
+        return page(query, field, ascending, size, last -> PageCursor.encode(sort,
+                "rating".equals(field) ? String.valueOf(last.getRating()) : String.valueOf(last.getCreatedAt()),
+                last.getReview_id()));
+    }
+
+    // GET RATING SUMMARIES: histogram, average and count for a page of books, read from the book cache
+    // (kept current by the rating updates below); unknown ids are left out
+    public List<RatingSummary> getRatingSummaries(List<String> bookIds) {
+        if (bookIds == null || bookIds.isEmpty()) {
+            throw new IllegalArgumentException("bookIds is required");
+        }
+        Set<String> ids = new LinkedHashSet<>(bookIds);
+        if (ids.size() > MAX_SUMMARY_IDS) {
+            throw new IllegalArgumentException("At most " + MAX_SUMMARY_IDS + " book ids per request");
+        }
+
+        List<RatingSummary> summaries = new ArrayList<>();
+        for (Book book : bookCache.findAllById(ids).values()) {
+            RatingSummary summary = new RatingSummary();
+            summary.setBookId(book.getBook_id());
+            summary.setAverage(book.getRating());
+            summary.setCount(book.getRatingCount());
+            summary.setHistogram(book.getRatingHistogram() != null ? book.getRatingHistogram() : new int[5]);
+            summaries.add(summary);
+        }
+        return summaries;
     }
 
     // GET REVIEW BY ID
@@ -104,15 +198,21 @@ public class ReviewService {
             throw new IllegalArgumentException("Rating must be between 1 and 5");
         }
 
-        review.setRating(rating);
-        review.setReviewText(reviewText);
-
-        Review updatedReview = reviewRepository.save(review);
+        // Conditional on not being deleted meanwhile; the old rating it returns gives the exact delta
+        Review previous = mongoTemplate.findAndModify(
+                new Query(Criteria.where("review_id").is(reviewId).and("isDeleted").is(false)),
+                new Update().set("rating", rating).set("reviewText", reviewText),
+                Review.class);
+        if (previous == null) {
+            throw new RuntimeException("Cannot update deleted review");
+        }
 
-        // Recalculate book's average rating
-        updateBookRating(review.getBook_id());
+        // Move the book's rating by the change
+        applyRatingDelta(review.getBook_id(), previous.getRating(), rating);
 
-        return updatedReview;
+        review.setRating(rating);
+        review.setReviewText(reviewText);
+        return review;
     }
 
     // DELETE REVIEW (soft delete - admin or owner)
@@ -131,47 +231,232 @@ public class ReviewService {
             throw new RuntimeException("You can only delete your own reviews");
         }
 
-        // Soft delete
-        review.setDeleted(true);
-        reviewRepository.save(review);
+        // Soft delete; only the request that flips the flag takes the review out of the book's rating
+        Review previous = mongoTemplate.findAndModify(
+                new Query(Criteria.where("review_id").is(reviewId).and("isDeleted").is(false)),
+                new Update().set("isDeleted", true),
+                Review.class);
+        if (previous != null) {
+            applyRatingDelta(previous.getBook_id(), previous.getRating(), 0);
+        }
+    }
+
+    // GET ALL REVIEWS (for admin): newest first, one page at a time, optionally narrowed to a book,
+    // a user, a rating or the deleted reviews
+    public CursorPage<Review> getAllReviews(String bookId, String userId, Integer rating, boolean deleted,
+            String cursor, int size) {
+        Query query = new Query(Criteria.where("isDeleted").is(deleted));
+        if (bookId != null && !bookId.isBlank()) {
+            query.addCriteria(Criteria.where("book_id").is(bookId));
+        }
+        if (userId != null && !userId.isBlank()) {
+            query.addCriteria(Criteria.where("userId").is(userId));
+        }
+        if (rating != null) {
+            if (rating < 1 || rating > 5) {
+                throw new IllegalArgumentException("Rating must be between 1 and 5");
+            }
+            query.addCriteria(Criteria.where("rating").is(rating));
+        }
+        if (cursor != null && !cursor.isBlank()) {
+            // Cursor parts: last createdAt, last review id
+            String[] parts = PageCursor.decode(cursor, 2);
+            query.addCriteria(keysetCriteria("createdAt", false, parseSortValue("createdAt", parts[0]), parts[1]));
+        }
+        return page(query, "createdAt", false, size,
+                last -> PageCursor.encode(String.valueOf(last.getCreatedAt()), last.getReview_id()));
+    }
+
+    private CursorPage<Review> page(Query query, String field, boolean ascending, int size,
+            Function<Review, String> cursorOf) {
+        int pageSize = Math.max(1, Math.min(size, maxPageSize));
+        Sort.Direction direction = ascending ? Sort.Direction.ASC : Sort.Direction.DESC;
+        query.with(Sort.by(direction, field).and(Sort.by(direction, "review_id")));
+        query.limit(pageSize + 1); // One extra row tells us whether another page exists
+
+        List<Review> reviews = mongoTemplate.find(query, Review.class);
+        boolean hasMore = reviews.size() > pageSize;
+        String nextCursor = null;
+        if (hasMore) {
+            reviews = new ArrayList<>(reviews.subList(0, pageSize));
+            nextCursor = cursorOf.apply(reviews.get(pageSize - 1));
+        }
+        return new CursorPage<>(reviews, nextCursor, hasMore);
+    }
+
+    // Rows strictly after (sortValue, lastId) in the requested order; both sort fields are always set
+    private static Criteria keysetCriteria(String field, boolean ascending, Object sortValue, String lastId) {
+        Criteria beyond = ascending ? Criteria.where(field).gt(sortValue) : Criteria.where(field).lt(sortValue);
+        Criteria idAfter = ascending ? Criteria.where("review_id").gt(lastId) : Criteria.where("review_id").lt(lastId);
+        return new Criteria().orOperator(beyond, new Criteria().andOperator(Criteria.where(field).is(sortValue), idAfter));
+    }
+
+    private static Object parseSortValue(String field, String value) {
+        try {
+            return "rating".equals(field) ? (Object) Integer.parseInt(value) : LocalDateTime.parse(value);
+        } catch (RuntimeException e) {
+            throw new IllegalArgumentException("Invalid cursor");
+        }
+    }
+
+    // ADJUST BOOK'S RATING: moves one review from `removed` stars to `added` stars (0 for none). One
+    // pipeline update adds the deltas to ratingSum/ratingCount/ratingHistogram and derives the average
+    // from the new values, so concurrent review writes never overwrite each other
+    private void applyRatingDelta(String bookId, int removed, int added) {
+        if (removed == added) {
+            return;
+        }
+        mongoTemplate.updateFirst(new Query(Criteria.where("book_id").is(bookId)),
+                ratingDelta(removed, added), Book.class);
+        bookCache.invalidate(bookId);
+    }
+
+    // [{ $set: { ratingSum: sum + d, ratingCount: count + c, ratingHistogram: histogram[i] + h[i] } },
+    //  { $set: { rating: count > 0 ? sum / count : null } }]
+    static AggregationUpdate ratingDelta(int removed, int added) {
+        long sumDelta = added - removed;
+        int countDelta = (added > 0 ? 1 : 0) - (removed > 0 ? 1 : 0);
+        List<Integer> histogramDelta = new ArrayList<>(List.of(0, 0, 0, 0, 0));
+        if (removed > 0) {
+            histogramDelta.set(removed - 1, -1);
+        }
+        if (added > 0) {
+            histogramDelta.set(added - 1, 1);
+        }
+        AggregationOperation counters = context -> new Document("$set", new Document()
+                .append("ratingSum", new Document("$add", Arrays.asList(
+                        new Document("$ifNull", Arrays.asList("$ratingSum", 0)), sumDelta)))
+                .append("ratingCount", new Document("$add", Arrays.asList(
+                        new Document("$ifNull", Arrays.asList("$ratingCount", 0)), countDelta)))
+                .append("ratingHistogram", new Document("$map", new Document()
+                        .append("input", new Document("$range", Arrays.asList(0, 5)))
+                        .append("as", "i")
+                        .append("in", new Document("$add", Arrays.asList(
+                                new Document("$ifNull", Arrays.asList(
+                                        new Document("$arrayElemAt", Arrays.asList("$ratingHistogram", "$$i")), 0)),
+                                new Document("$arrayElemAt", Arrays.asList(histogramDelta, "$$i"))))))));
+        AggregationOperation average = context -> new Document("$set", new Document("rating",
+                new Document("$cond", Arrays.asList(
+                        new Document("$gt", Arrays.asList("$ratingCount", 0)),
+                        new Document("$divide", Arrays.asList("$ratingSum", "$ratingCount")),
+                        null))));
+        return AggregationUpdate.from(List.of(counters, average));
+    }
+
+    // Books stored before the counters and histogram existed only have the average; the leader
+    // rebuilds them once it finds any (leadership is not settled yet at startup)
+    @Scheduled(fixedDelayString = "${reviews.rating-repair.legacy-check-ms:300000}", initialDelay = 60000)
+    public void repairLegacyRatings() {
+        if (schedulerLeader.isLeader() && mongoTemplate.exists(new Query(Criteria.where("rating").ne(null)
+                .and("ratingHistogram").exists(false)), Book.class)) {
+            scheduledRepair();
+        }
+    }
+
+    @Scheduled(cron = "${reviews.rating-repair.cron:0 0 4 * * SUN}")
+    public void scheduledRepair() {
+        if (schedulerLeader.isLeader()) {
+            try {
+                repairRatings();
+            } catch (RuntimeException e) {
+                logger.error("Rating repair failed: {}", e.getMessage());
+            }
+        }
+    }
+
+    // REPAIR RATINGS: recomputes every book's counters, histogram and average from the reviews with one
+    // aggregation, for drift left by a failure between a review write and its delta. A review write
+    // landing mid-run on a book already rewritten is kept by the delta; one between the aggregation
+    // reading its book and the rewrite is lost until the next run.
+    public synchronized RatingRepairResult repairRatings() {
+        long startedAt = System.currentTimeMillis();
+        RatingRepairResult result = new RatingRepairResult();
+
+        // 1. Sum, count and stars per book, grouped by the server
+        Set<String> rated = new HashSet<>();
+        Aggregation aggregation = Aggregation.newAggregation(
+                Aggregation.match(Criteria.where("isDeleted").is(false)),
+                ratingGroup())
+                .withOptions(Aggregation.newAggregationOptions().allowDiskUse(true).cursorBatchSize(REPAIR_BATCH).build());
+        RepairBatch batch = new RepairBatch();
+        try (Stream<Document> stream = mongoTemplate.aggregateStream(aggregation, "reviews", Document.class)) {
+            stream.forEach(row -> {
+                String bookId = row.getString("_id");
+                long sum = ((Number) row.get("sum")).longValue();
+                long count = ((Number) row.get("count")).longValue();
+                int[] histogram = new int[5];
+                for (int star = 1; star <= 5; star++) {
+                    histogram[star - 1] = ((Number) row.get("s" + star)).intValue();
+                }
+                rated.add(bookId);
+                batch.add(bookId, new Update().set("ratingSum", sum).set("ratingCount", count)
+                        .set("ratingHistogram", histogram).set("rating", (double) sum / count));
+            });
+        }
+        result.setBooksRated(batch.finish());
+
+        // 2. Books still carrying a rating without any live review
+        Query stale = new Query(new Criteria().orOperator(
+                Criteria.where("ratingCount").ne(0), Criteria.where("rating").ne(null)));
+        stale.fields().include("book_id");
+        stale.cursorBatchSize(REPAIR_BATCH);
+        RepairBatch resets = new RepairBatch();
+        try (Stream<Book> stream = mongoTemplate.stream(stale, Book.class)) {
+            stream.filter(book -> !rated.contains(book.getBook_id()))
+                    .forEach(book -> resets.add(book.getBook_id(), new Update()
+                            .set("ratingSum", 0L).set("ratingCount", 0L).set("ratingHistogram", new int[5])
+                            .set("rating", null)));
+        }
+        result.setBooksReset(resets.finish());
 
-        // Recalculate book's average rating
-        updateBookRating(review.getBook_id());
+        result.setElapsedMs(System.currentTimeMillis() - startedAt);
+        logger.info("Rating repair: {} books rated, {} reset in {} ms",
+                result.getBooksRated(), result.getBooksReset(), result.getElapsedMs());
+        return result;
     }
 
-    // GET ALL REVIEWS (for admin)
-    public List<Review> getAllReviews() {
-        return reviewRepository.findAllByIsDeletedFalse();
+    // { $group: { _id: book, sum: { $sum: rating }, count: { $sum: 1 }, s1..s5: reviews with that rating } }
+    private static AggregationOperation ratingGroup() {
+        Document group = new Document("_id", "$book_id")
+                .append("sum", new Document("$sum", "$rating"))
+                .append("count", new Document("$sum", 1));
+        for (int star = 1; star <= 5; star++) {
+            group.append("s" + star, new Document("$sum", new Document("$cond",
+                    Arrays.asList(new Document("$eq", Arrays.asList("$rating", star)), 1, 0))));
+        }
+        return context -> new Document("$group", group);
     }
 
-    // UPDATE BOOK'S AVERAGE RATING
-    private void updateBookRating(String bookId) {
-        List<Review> reviews = reviewRepository.findByBook_idAndIsDeletedFalse(bookId);
+    // Unordered bulk updates of books, flushed every REPAIR_BATCH rows
+    private class RepairBatch {
+        private final List<String> ids = new ArrayList<>();
+        private BulkOperations bulk;
+        private long written;
 
-        if (reviews.isEmpty()) {
-            // No reviews, set rating to null
-            Optional<Book> bookOptional = bookRepository.findById(bookId);
-            if (bookOptional.isPresent()) {
-                Book book = bookOptional.get();
-                book.setRating(null);
-                bookRepository.save(book);
+        void add(String bookId, Update update) {
+            if (bulk == null) {
+                bulk = mongoTemplate.bulkOps(BulkOperations.BulkMode.UNORDERED, Book.class);
+            }
+            bulk.updateOne(new Query(Criteria.where("book_id").is(bookId)), update);
+            ids.add(bookId);
+            if (ids.size() == REPAIR_BATCH) {
+                flush();
             }
-            return;
         }
 
-        // Calculate average rating
-        double sum = 0;
-        for (Review review : reviews) {
-            sum += review.getRating();
+        long finish() {
+            if (!ids.isEmpty()) {
+                flush();
+            }
+            return written;
         }
-        double averageRating = sum / reviews.size();
 
-        // Update book's rating
-        Optional<Book> bookOptional = bookRepository.findById(bookId);
-        if (bookOptional.isPresent()) {
-            Book book = bookOptional.get();
-            book.setRating(averageRating);
-            bookRepository.save(book);
+        private void flush() {
+            bulk.execute();
+            ids.forEach(bookCache::invalidate);
+            written += ids.size();
+            ids.clear();
+            bulk = null;
         }
     }
 }
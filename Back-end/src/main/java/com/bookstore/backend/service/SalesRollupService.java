@@ -0,0 +1,358 @@
+package com.bookstore.backend.service;
+
+import com.bookstore.backend.dto.RollupCheckResult;
+import com.bookstore.backend.model.BookSalesRollup;
+import com.bookstore.backend.model.DailySalesRollup;
+import com.bookstore.backend.model.MonthlySalesRollup;
+import com.bookstore.backend.model.Order;
+import com.bookstore.backend.model.Order.OrderItem;
+import com.bookstore.backend.model.StatusSalesRollup;
+import com.bookstore.backend.model.UserSalesRollup;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.data.mongodb.core.BulkOperations;
+import org.springframework.data.mongodb.core.MongoTemplate;
+import org.springframework.data.mongodb.core.query.Criteria;
+import org.springframework.data.mongodb.core.query.Query;
+import org.springframework.data.mongodb.core.query.Update;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Objects;
+import java.util.stream.Stream;
+
+// Maintains the sales_by_* materialized views. Each order event is applied as $inc upserts, so
+// the reporting endpoints read small rollup documents instead of scanning orders.
+@Service
+public class SalesRollupService {
+
+    private static final Logger logger = LoggerFactory.getLogger(SalesRollupService.class);
+    private static final double TOLERANCE = 0.005;
+    private static final int MAX_REPORTED_MISMATCHES = 100;
+    private static final String STATE_COLLECTION = "sales_rollup_state";
+    private static final String STATE_ID = "sales";
+
+    @Autowired
+    private MongoTemplate mongoTemplate;
+
+    @Autowired
+    private SchedulerLeader schedulerLeader;
+
+    @Value("${reports.rollup.batch-size:1000}")
+    private int batchSize;
+
+    // Called after an order is saved; returns the number of bulk writes issued. Failures are logged,
+    // not thrown: the order already exists and drift is picked up by checkConsistency / rebuild.
+    public int recordOrderPlaced(Order order) {
+        try {
+            Totals totals = new Totals();
+            totals.add(order);
+            return totals.flush(mongoTemplate);
+        } catch (RuntimeException e) {
+            logger.error("Failed to update sales rollups for order {}: {}", order.getOrder_id(), e.getMessage());
+            return 0;
+        }
+    }
+
+    // Moves an order's contribution from its previous status to the new one
+    public void recordStatusChange(Order previous, String newStatus) {
+        if (Objects.equals(previous.getStatus(), newStatus)) {
+            return;
+        }
+        try {
+            int items = itemCount(previous);
+            BulkOperations bulk = mongoTemplate.bulkOps(BulkOperations.BulkMode.UNORDERED, StatusSalesRollup.class);
+            bulk.upsert(statusQuery(previous.getStatus()), new Update()
+                    .inc("orders", -1).inc("revenue", -previous.getTotalAmount()).inc("itemsSold", -items));
+            bulk.upsert(statusQuery(newStatus), new Update()
+                    .inc("orders", 1).inc("revenue", previous.getTotalAmount()).inc("itemsSold", items));
+            bulk.execute();
+        } catch (RuntimeException e) {
+            logger.error("Failed to move order {} between status rollups: {}", previous.getOrder_id(), e.getMessage());
+        }
+    }
+
+    // The views only see orders placed after they were introduced, so a database with older orders
+    // serves empty reports (and status moves push counts negative) until one full rebuild has run.
+    // The leader runs it once when no rebuild has been recorded yet.
+    @Scheduled(fixedDelayString = "${reports.rollup.backfill-check-ms:300000}", initialDelay = 60000)
+    public void backfillIfNeeded() {
+        if (!schedulerLeader.isLeader() || isBuilt()) {
+            return;
+        }
+        try {
+            logger.info("No sales rollup rebuild recorded, backfilling from orders");
+            rebuild();
+        } catch (RuntimeException e) {
+            logger.error("Sales rollup backfill failed, retrying on the next check: {}", e.getMessage());
+        }
+    }
+
+    public boolean isBuilt() {
+        return mongoTemplate.exists(new Query(Criteria.where("_id").is(STATE_ID)), STATE_COLLECTION);
+    }
+
+    // Recomputes every view from the orders collection, streaming in batches so memory stays bounded.
+    // Orders placed while this runs may be counted twice or missed; run checkConsistency afterwards.
+    public long rebuild() {
+        mongoTemplate.remove(new Query(), BookSalesRollup.class);
+        mongoTemplate.remove(new Query(), DailySalesRollup.class);
+        mongoTemplate.remove(new Query(), MonthlySalesRollup.class);
+        mongoTemplate.remove(new Query(), StatusSalesRollup.class);
+        mongoTemplate.remove(new Query(), UserSalesRollup.class);
+
+        long processed = 0;
+        Totals totals = new Totals();
+        Query query = new Query();
+        query.cursorBatchSize(batchSize);
+        try (Stream<Order> orders = mongoTemplate.stream(query, Order.class)) {
+            for (Order order : (Iterable<Order>) orders::iterator) {
+                totals.add(order);
+                if (++processed % batchSize == 0) {
+                    totals.flush(mongoTemplate);
+                    totals = new Totals();
+                }
+            }
+        }
+        totals.flush(mongoTemplate);
+        mongoTemplate.upsert(new Query(Criteria.where("_id").is(STATE_ID)),
+                new Update().set("builtAt", LocalDateTime.now()).set("orders", processed), STATE_COLLECTION);
+        logger.info("Rebuilt sales rollups from {} orders", processed);
+        return processed;
+    }
+
+    // Replays orders in memory and compares the result with the stored views
+    public RollupCheckResult checkConsistency() {
+        Totals expected = new Totals();
+        long scanned = 0;
+        Query query = new Query();
+        query.cursorBatchSize(batchSize);
+        try (Stream<Order> orders = mongoTemplate.stream(query, Order.class)) {
+            for (Order order : (Iterable<Order>) orders::iterator) {
+                expected.add(order);
+                scanned++;
+            }
+        }
+
+        RollupCheckResult result = new RollupCheckResult();
+        result.setOrdersScanned(scanned);
+
+        Map<String, BookSalesRollup> books = new HashMap<>();
+        mongoTemplate.findAll(BookSalesRollup.class).forEach(row -> books.put(row.getBookId(), row));
+        for (Map.Entry<String, double[]> entry : expected.byBook.entrySet()) {
+            BookSalesRollup row = books.remove(entry.getKey());
+            compare(result, "book " + entry.getKey(), entry.getValue(),
+                    row == null ? null : new double[] { row.getQuantity(), row.getRevenue() });
+        }
+        books.values().forEach(row -> compare(result, "book " + row.getBookId(), new double[2],
+                new double[] { row.getQuantity(), row.getRevenue() }));
+
+        Map<String, DailySalesRollup> days = new HashMap<>();
+        mongoTemplate.findAll(DailySalesRollup.class).forEach(row -> days.put(row.getDay(), row));
+        for (Map.Entry<String, double[]> entry : expected.byDay.entrySet()) {
+            DailySalesRollup row = days.remove(entry.getKey());
+            compare(result, "day " + entry.getKey(), entry.getValue(),
+                    row == null ? null : new double[] { row.getOrderCount(), row.getRevenue(), row.getItemsSold() });
+        }
+        days.values().forEach(row -> compare(result, "day " + row.getDay(), new double[3],
+                new double[] { row.getOrderCount(), row.getRevenue(), row.getItemsSold() }));
+
+        Map<String, MonthlySalesRollup> months = new HashMap<>();
+        mongoTemplate.findAll(MonthlySalesRollup.class).forEach(row -> months.put(row.getMonth(), row));
+        for (Map.Entry<String, double[]> entry : expected.byMonth.entrySet()) {
+            MonthlySalesRollup row = months.remove(entry.getKey());
+            compare(result, "month " + entry.getKey(), entry.getValue(),
+                    row == null ? null : new double[] { row.getOrderCount(), row.getRevenue(), row.getItemsSold() });
+        }
+        months.values().forEach(row -> compare(result, "month " + row.getMonth(), new double[3],
+                new double[] { row.getOrderCount(), row.getRevenue(), row.getItemsSold() }));
+
+        Map<String, StatusSalesRollup> statuses = new HashMap<>();
+        mongoTemplate.findAll(StatusSalesRollup.class).forEach(row -> statuses.put(row.getStatus(), row));
+        for (Map.Entry<String, double[]> entry : expected.byStatus.entrySet()) {
+            StatusSalesRollup row = statuses.remove(entry.getKey());
+            compare(result, "status " + entry.getKey(), entry.getValue(),
+                    row == null ? null : new double[] { row.getOrders(), row.getRevenue(), row.getItemsSold() });
+        }
+        statuses.values().forEach(row -> compare(result, "status " + row.getStatus(), new double[3],
+                new double[] { row.getOrders(), row.getRevenue(), row.getItemsSold() }));
+
+        Map<String, UserSalesRollup> users = new HashMap<>();
+        mongoTemplate.findAll(UserSalesRollup.class).forEach(row -> users.put(row.getUserId(), row));
+        for (Map.Entry<String, double[]> entry : expected.byUser.entrySet()) {
+            UserSalesRollup row = users.remove(entry.getKey());
+            compare(result, "user " + entry.getKey(), entry.getValue(),
+                    row == null ? null : new double[] { row.getTotalOrders(), row.getTotalSpent() });
+        }
+        users.values().forEach(row -> compare(result, "user " + row.getUserId(), new double[2],
+                new double[] { row.getTotalOrders(), row.getTotalSpent() }));
+
+        result.setConsistent(result.getMismatches().isEmpty());
+        return result;
+    }
+
+    private void compare(RollupCheckResult result, String key, double[] expected, double[] actual) {
+        boolean matches = actual != null;
+        for (int i = 0; matches && i < expected.length; i++) {
+            matches = Math.abs(expected[i] - actual[i]) <= TOLERANCE;
+        }
+        // An all-zero row (e.g. a status every order moved out of) is equivalent to a missing one
+        if (!matches && isZero(expected) && (actual == null || isZero(actual))) {
+            matches = true;
+        }
+        if (!matches && result.getMismatches().size() < MAX_REPORTED_MISMATCHES) {
+            result.getMismatches().add(key + ": expected " + Arrays.toString(expected)
+                    + ", stored " + (actual == null ? "missing" : Arrays.toString(actual)));
+        }
+    }
+
+    private boolean isZero(double[] values) {
+        for (double value : values) {
+            if (Math.abs(value) > TOLERANCE) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    static String monthKey(LocalDateTime date) {
+        return date.getYear() + "-" + (date.getMonthValue() < 10 ? "0" : "") + date.getMonthValue();
+    }
+
+    // ISO yyyy-MM-dd, same as LocalDate.toString()
+    static String dayKey(LocalDate date) {
+        return date.toString();
+    }
+
+    private static int itemCount(Order order) {
+        int items = 0;
+        if (order.getItems() != null) {
+            for (OrderItem item : order.getItems()) {
+                items += item.getQuantity();
+            }
+        }
+        return items;
+    }
+
+    private static Query statusQuery(String status) {
+        return new Query(Criteria.where("status").is(status));
+    }
+
+    // Pending increments for each view, merged in memory and written as one bulk per collection
+    private static class Totals {
+        final Map<String, double[]> byBook = new HashMap<>(); // quantity, revenue
+        final Map<String, String> bookTitles = new HashMap<>();
+        final Map<String, Double> bookPrices = new HashMap<>();
+        final Map<String, double[]> byDay = new HashMap<>(); // orders, revenue, items
+        final Map<String, double[]> byMonth = new HashMap<>(); // orders, revenue, items
+        final Map<String, double[]> byStatus = new HashMap<>(); // orders, revenue, items
+        final Map<String, double[]> byUser = new HashMap<>(); // orders, spent
+        final Map<String, LocalDateTime> lastOrderDates = new HashMap<>();
+
+        void add(Order order) {
+            int items = itemCount(order);
+            double amount = order.getTotalAmount();
+
+            if (order.getItems() != null) {
+                for (OrderItem item : order.getItems()) {
+                    double[] book = byBook.computeIfAbsent(item.getBook_id(), id -> new double[2]);
+                    book[0] += item.getQuantity();
+                    book[1] += item.getPrice() * item.getQuantity();
+                    if (item.getTitle() != null) {
+                        bookTitles.put(item.getBook_id(), item.getTitle());
+                    }
+                    bookPrices.put(item.getBook_id(), item.getPrice());
+                }
+            }
+
+            if (order.getOrderDate() != null) {
+                double[] day = byDay.computeIfAbsent(dayKey(order.getOrderDate().toLocalDate()), key -> new double[3]);
+                day[0] += 1;
+                day[1] += amount;
+                day[2] += items;
+
+                double[] month = byMonth.computeIfAbsent(monthKey(order.getOrderDate()), key -> new double[3]);
+                month[0] += 1;
+                month[1] += amount;
+                month[2] += items;
+            }
+
+            double[] status = byStatus.computeIfAbsent(order.getStatus(), key -> new double[3]);
+            status[0] += 1;
+            status[1] += amount;
+            status[2] += items;
+
+            double[] user = byUser.computeIfAbsent(order.getUserId(), key -> new double[2]);
+            user[0] += 1;
+            user[1] += amount;
+            if (order.getOrderDate() != null) {
+                lastOrderDates.merge(order.getUserId(), order.getOrderDate(),
+                        (a, b) -> a.isAfter(b) ? a : b);
+            }
+        }
+
+        int flush(MongoTemplate mongoTemplate) {
+            int writes = 0;
+            if (!byBook.isEmpty()) {
+                BulkOperations bulk = mongoTemplate.bulkOps(BulkOperations.BulkMode.UNORDERED, BookSalesRollup.class);
+                byBook.forEach((bookId, values) -> {
+                    Update update = new Update().inc("quantity", (int) values[0]).inc("revenue", values[1])
+                            .set("price", bookPrices.get(bookId));
+                    if (bookTitles.containsKey(bookId)) {
+                        update.set("title", bookTitles.get(bookId));
+                    }
+                    bulk.upsert(new Query(Criteria.where("bookId").is(bookId)), update);
+                });
+                bulk.execute();
+                writes++;
+            }
+
+            if (!byDay.isEmpty()) {
+                BulkOperations bulk = mongoTemplate.bulkOps(BulkOperations.BulkMode.UNORDERED, DailySalesRollup.class);
+                byDay.forEach((day, values) -> bulk.upsert(new Query(Criteria.where("day").is(day)), new Update()
+                        .inc("orderCount", (int) values[0]).inc("revenue", values[1]).inc("itemsSold", (int) values[2])));
+                bulk.execute();
+                writes++;
+            }
+
+            if (!byMonth.isEmpty()) {
+                BulkOperations bulk = mongoTemplate.bulkOps(BulkOperations.BulkMode.UNORDERED, MonthlySalesRollup.class);
+                byMonth.forEach((month, values) -> bulk.upsert(new Query(Criteria.where("month").is(month)), new Update()
+                        .setOnInsert("year", Integer.parseInt(month.substring(0, 4)))
+                        .setOnInsert("monthValue", Integer.parseInt(month.substring(5)))
+                        .inc("orderCount", (int) values[0]).inc("revenue", values[1]).inc("itemsSold", (int) values[2])));
+                bulk.execute();
+                writes++;
+            }
+
+            if (!byStatus.isEmpty()) {
+                BulkOperations bulk = mongoTemplate.bulkOps(BulkOperations.BulkMode.UNORDERED, StatusSalesRollup.class);
+                byStatus.forEach((status, values) -> bulk.upsert(statusQuery(status), new Update()
+                        .inc("orders", (int) values[0]).inc("revenue", values[1]).inc("itemsSold", (int) values[2])));
+                bulk.execute();
+                writes++;
+            }
+
+            if (!byUser.isEmpty()) {
+                BulkOperations bulk = mongoTemplate.bulkOps(BulkOperations.BulkMode.UNORDERED, UserSalesRollup.class);
+                byUser.forEach((userId, values) -> {
+                    Update update = new Update().inc("totalOrders", (int) values[0]).inc("totalSpent", values[1]);
+                    if (lastOrderDates.containsKey(userId)) {
+                        update.max("lastOrderDate", lastOrderDates.get(userId));
+                    }
+                    bulk.upsert(new Query(Criteria.where("userId").is(userId)), update);
+                });
+                bulk.execute();
+                writes++;
+            }
+            return writes;
+        }
+    }
+}
@@ -0,0 +1,93 @@
+package com.bookstore.backend.service;
+
+import com.bookstore.backend.model.SchedulerLease;
+import jakarta.annotation.PreDestroy;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.dao.DuplicateKeyException;
+import org.springframework.data.mongodb.core.MongoTemplate;
+import org.springframework.data.mongodb.core.query.Criteria;
+import org.springframework.data.mongodb.core.query.Query;
+import org.springframework.data.mongodb.core.query.Update;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+
+import java.net.InetAddress;
+import java.time.Instant;
+import java.util.UUID;
+
+// Lease-based leader election so cluster-wide scheduled jobs run on one node only. Every node
+// tries to take or renew the lease on a heartbeat; the holder stays leader while it keeps renewing,
+// and another node takes over once the lease expires (at most ttl after the leader dies).
+@Component
+public class SchedulerLeader {
+
+    private static final Logger logger = LoggerFactory.getLogger(SchedulerLeader.class);
+    private static final String LEASE = "scheduler";
+
+    @Autowired
+    private MongoTemplate mongoTemplate;
+
+    @Value("${scheduler.lease.ttl-ms:90000}")
+    private long ttlMs;
+
+    private final String nodeId = nodeName() + "-" + UUID.randomUUID();
+
+    private volatile Instant leaderUntil = Instant.EPOCH;
+
+    @Scheduled(fixedRateString = "${scheduler.lease.renew-ms:30000}")
+    public void heartbeat() {
+        Instant now = Instant.now();
+        Instant expiresAt = now.plusMillis(ttlMs);
+        Query free = new Query(Criteria.where("name").is(LEASE).orOperator(
+                Criteria.where("owner").is(nodeId),
+                Criteria.where("expiresAt").lt(now)));
+        boolean wasLeader = isLeader();
+        try {
+            // No match means another node holds a live lease: the upsert then collides on _id
+            mongoTemplate.upsert(free, new Update().set("owner", nodeId).set("expiresAt", expiresAt), SchedulerLease.class);
+            // Act as leader for only half the lease, leaving margin for clock skew between nodes
+            leaderUntil = now.plusMillis(ttlMs / 2);
+            if (!wasLeader) {
+                logger.info("Node {} acquired the scheduler lease", nodeId);
+            }
+        } catch (DuplicateKeyException e) {
+            leaderUntil = Instant.EPOCH;
+        } catch (RuntimeException e) {
+            // Can't confirm the lease; step down rather than risk two leaders
+            leaderUntil = Instant.EPOCH;
+            logger.warn("Scheduler lease renewal failed: {}", e.getMessage());
+        }
+    }
+
+    public boolean isLeader() {
+        return Instant.now().isBefore(leaderUntil);
+    }
+
+    public String getNodeId() {
+        return nodeId;
+    }
+
+    @PreDestroy
+    public void release() {
+        if (!isLeader()) {
+            return;
+        }
+        try {
+            mongoTemplate.remove(new Query(Criteria.where("name").is(LEASE).and("owner").is(nodeId)), SchedulerLease.class);
+        } catch (RuntimeException e) {
+            logger.warn("Could not release the scheduler lease: {}", e.getMessage());
+        }
+        leaderUntil = Instant.EPOCH;
+    }
+
+    private static String nodeName() {
+        try {
+            return InetAddress.getLocalHost().getHostName();
+        } catch (Exception e) {
+            return "node";
+        }
+    }
+}
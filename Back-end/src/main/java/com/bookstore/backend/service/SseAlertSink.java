@@ -0,0 +1,37 @@
+package com.bookstore.backend.service;
+
+import com.bookstore.backend.dto.LowStockAlert;
+import org.springframework.stereotype.Component;
+import org.springframework.web.servlet.mvc.method.annotation.SseEmitter;
+
+import java.io.IOException;
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+
+// Pushes alerts to connected admin dashboards over server-sent events
+@Component
+public class SseAlertSink implements LowStockAlertSink {
+
+    private final List<SseEmitter> emitters = new CopyOnWriteArrayList<>();
+
+    public SseEmitter subscribe() {
+        SseEmitter emitter = new SseEmitter(0L);
+        emitters.add(emitter);
+        emitter.onCompletion(() -> emitters.remove(emitter));
+        emitter.onTimeout(() -> emitters.remove(emitter));
+        emitter.onError(error -> emitters.remove(emitter));
+        return emitter;
+    }
+
+    @Override
+    public void send(LowStockAlert alert) {
+        for (SseEmitter emitter : emitters) {
+            try {
+                emitter.send(SseEmitter.event().name("stock-alert").data(alert));
+            } catch (IOException | IllegalStateException e) {
+                // Client went away
+                emitters.remove(emitter);
+            }
+        }
+    }
+}
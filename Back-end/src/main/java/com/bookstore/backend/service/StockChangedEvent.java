@@ -0,0 +1,46 @@
+package com.bookstore.backend.service;
+
+import com.bookstore.backend.model.Book;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+
+// Published after any write that can move a book's stock level or threshold.
+// Carries either fresh book snapshots, ids whose stock changed by $inc (to be re-read), or removed ids.
+public class StockChangedEvent {
+
+    private final List<Book> books;
+    private final List<String> changedIds;
+    private final List<String> removedIds;
+
+    private StockChangedEvent(List<Book> books, List<String> changedIds, List<String> removedIds) {
+        this.books = books;
+        this.changedIds = changedIds;
+        this.removedIds = removedIds;
+    }
+
+    public static StockChangedEvent updated(Book book) {
+        return new StockChangedEvent(List.of(book), List.of(), List.of());
+    }
+
+    public static StockChangedEvent changed(Collection<String> bookIds) {
+        return new StockChangedEvent(List.of(), new ArrayList<>(bookIds), List.of());
+    }
+
+    public static StockChangedEvent removed(String bookId) {
+        return new StockChangedEvent(List.of(), List.of(), List.of(bookId));
+    }
+
+    public List<Book> getBooks() {
+        return books;
+    }
+
+    public List<String> getChangedIds() {
+        return changedIds;
+    }
+
+    public List<String> getRemovedIds() {
+        return removedIds;
+    }
+}
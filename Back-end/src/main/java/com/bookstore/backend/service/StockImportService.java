@@ -0,0 +1,227 @@
+package com.bookstore.backend.service;
+
+import com.bookstore.backend.dto.BulkStockResult;
+import com.bookstore.backend.dto.BulkStockUpdate;
+import com.bookstore.backend.model.Book;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.ApplicationEventPublisher;
+import org.springframework.data.mongodb.core.MongoTemplate;
+import org.springframework.data.mongodb.core.aggregation.AggregationExpression;
+import org.springframework.data.mongodb.core.aggregation.AggregationUpdate;
+import org.springframework.data.mongodb.core.aggregation.ComparisonOperators;
+import org.springframework.data.mongodb.core.aggregation.ConditionalOperators;
+import org.springframework.data.mongodb.core.query.Criteria;
+import org.springframework.data.mongodb.core.query.Query;
+import org.springframework.stereotype.Service;
+import tools.jackson.core.JacksonException;
+import tools.jackson.databind.json.JsonMapper;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+// Applies stock quantity changes in batches. Input is parsed one row at a time and flushed every
+// batch-size rows, so an import of any size holds one batch in memory.
+// stockStatus is recomputed by the server in the same write, against each book's minThreshold.
+@Service
+public class StockImportService {
+
+    private static final int MAX_REPORTED_FAILURES = 1000;
+
+    @Autowired
+    private MongoTemplate mongoTemplate;
+
+    @Autowired
+    private BookCache bookCache;
+
+    @Autowired
+    private ApplicationEventPublisher eventPublisher;
+
+    @Autowired
+    private JsonMapper jsonMapper;
+
+    @Autowired
+    private InventoryLedger inventoryLedger;
+
+    @Value("${inventory.bulk.batch-size:1000}")
+    private int batchSize;
+
+    public BulkStockResult applyUpdates(List<BulkStockUpdate> updates) {
+        Batch batch = new Batch();
+        long row = 0;
+        for (BulkStockUpdate update : updates) {
+            batch.add(++row, update);
+        }
+        return batch.finish();
+    }
+
+    // format: "csv" (bookId,stockQuantity with optional header) or "ndjson" (one object per line)
+    public BulkStockResult importStock(InputStream input, String format) throws IOException {
+        boolean csv;
+        if ("csv".equalsIgnoreCase(format)) {
+            csv = true;
+        } else if ("ndjson".equalsIgnoreCase(format)) {
+            csv = false;
+        } else {
+            throw new IllegalArgumentException("Format must be csv or ndjson");
+        }
+
+        Batch batch = new Batch();
+        long row = 0;
+        BufferedReader reader = new BufferedReader(new InputStreamReader(input, StandardCharsets.UTF_8));
+        String line;
+        boolean first = true;
+        while ((line = reader.readLine()) != null) {
+            if (line.isBlank()) {
+                continue;
+            }
+            if (csv && first && line.toLowerCase().contains("bookid")) {
+                first = false;
+                continue; // Header
+            }
+            first = false;
+            row++;
+            try {
+                batch.add(row, csv ? parseCsv(line) : jsonMapper.readValue(line, BulkStockUpdate.class));
+            } catch (IllegalArgumentException | JacksonException e) {
+                batch.reject(row, "Malformed row: " + e.getMessage());
+            }
+        }
+        return batch.finish();
+    }
+
+    private BulkStockUpdate parseCsv(String line) {
+        String[] columns = line.split(",", -1);
+        if (columns.length < 2) {
+            throw new IllegalArgumentException("expected bookId,stockQuantity");
+        }
+        BulkStockUpdate update = new BulkStockUpdate();
+        update.setBookId(unquote(columns[0]));
+        try {
+            update.setStockQuantity(Integer.valueOf(unquote(columns[1])));
+        } catch (NumberFormatException e) {
+            throw new IllegalArgumentException("stockQuantity is not a number");
+        }
+        return update;
+    }
+
+    private static String unquote(String value) {
+        String trimmed = value.trim();
+        if (trimmed.length() >= 2 && trimmed.startsWith("\"") && trimmed.endsWith("\"")) {
+            return trimmed.substring(1, trimmed.length() - 1);
+        }
+        return trimmed;
+    }
+
+    // $set stockQuantity and the status derived from it; the threshold is read from the stored book
+    static AggregationUpdate stockUpdate(int quantity) {
+        return stockUpdate(AggregationUpdate.update(), quantity);
+    }
+
+    // The same two fields appended to an update that sets other fields too
+    static AggregationUpdate stockUpdate(AggregationUpdate update, int quantity) {
+        if (quantity <= 0) {
+            return update
+                    .set("stockQuantity").toValue(quantity)
+                    .set("stockStatus").toValue("OUT_OF_STOCK");
+        }
+        AggregationExpression threshold = ConditionalOperators
+                .when(ComparisonOperators.valueOf("minThreshold").greaterThanValue(0))
+                .thenValueOf("minThreshold")
+                .otherwise(InventoryService.DEFAULT_LOW_STOCK_THRESHOLD);
+        return update
+                .set("stockQuantity").toValue(quantity)
+                .set("stockStatus").toValue(ConditionalOperators
+                        .when(ComparisonOperators.valueOf(threshold).greaterThanEqualToValue(quantity))
+                        .then("LOW_STOCK")
+                        .otherwise("IN_STOCK"));
+    }
+
+    // Rows for one flush; a later row for the same book replaces an earlier one
+    private class Batch {
+        private final BulkStockResult result = new BulkStockResult();
+        private final long startedAt = System.currentTimeMillis();
+        private final Map<String, Long> rows = new LinkedHashMap<>();
+        private final Map<String, Integer> quantities = new LinkedHashMap<>();
+
+        void add(long row, BulkStockUpdate update) {
+            result.setReceived(result.getReceived() + 1);
+            if (update == null || update.getBookId() == null || update.getBookId().isBlank()) {
+                fail(row, null, "bookId is required");
+                return;
+            }
+            if (update.getStockQuantity() == null || update.getStockQuantity() < 0) {
+                fail(row, update.getBookId(), "stockQuantity must be zero or more");
+                return;
+            }
+            if (rows.put(update.getBookId(), row) != null) {
+                result.setUpdated(result.getUpdated() + 1); // Superseded within the batch
+            }
+            quantities.put(update.getBookId(), update.getStockQuantity());
+            if (quantities.size() >= batchSize) {
+                flush();
+            }
+        }
+
+        void reject(long row, String message) {
+            result.setReceived(result.getReceived() + 1);
+            fail(row, null, message);
+        }
+
+        void fail(long row, String bookId, String message) {
+            result.setFailed(result.getFailed() + 1);
+            if (result.getFailures().size() < MAX_REPORTED_FAILURES) {
+                result.getFailures().add(new BulkStockResult.RowFailure(row, bookId, message));
+            }
+        }
+
+        // One findAndModify per book: the write returns the document as it was, so the ledger gets
+        // the exact change even when an order lands between reading and writing the stock. A null
+        // pre-image means the book doesn't exist.
+        void flush() {
+            if (quantities.isEmpty()) {
+                return;
+            }
+            List<String> bookIds = new ArrayList<>();
+            for (Map.Entry<String, Integer> entry : quantities.entrySet()) {
+                Book previous;
+                try {
+                    previous = mongoTemplate.findAndModify(new Query(Criteria.where("book_id").is(entry.getKey())),
+                            stockUpdate(entry.getValue()), Book.class);
+                } catch (RuntimeException e) {
+                    fail(rows.get(entry.getKey()), entry.getKey(), e.getMessage());
+                    continue;
+                }
+                if (previous == null) {
+                    fail(rows.get(entry.getKey()), entry.getKey(), "Book not found");
+                    continue;
+                }
+                bookIds.add(entry.getKey());
+                inventoryLedger.record(entry.getKey(), InventoryLedger.ADJUSTMENT,
+                        entry.getValue() - previous.getStockQuantity(), "import");
+            }
+
+            if (!bookIds.isEmpty()) {
+                result.setUpdated(result.getUpdated() + bookIds.size());
+                bookIds.forEach(bookCache::invalidate);
+                eventPublisher.publishEvent(StockChangedEvent.changed(bookIds));
+            }
+
+            rows.clear();
+            quantities.clear();
+        }
+
+        BulkStockResult finish() {
+            flush();
+            result.setElapsedMs(System.currentTimeMillis() - startedAt);
+            return result;
+        }
+    }
+}
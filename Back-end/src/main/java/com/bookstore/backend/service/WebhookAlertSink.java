@@ -0,0 +1,42 @@
+package com.bookstore.backend.service;
+
+import com.bookstore.backend.dto.LowStockAlert;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Deque;
+import java.util.List;
+
+// Stand-in for an outbound webhook: keeps the most recent payloads in a bounded outbox instead of
+// POSTing them, so the delivery path can be exercised without an external endpoint
+@Component
+public class WebhookAlertSink implements LowStockAlertSink {
+
+    private static final int OUTBOX_SIZE = 100;
+
+    @Value("${inventory.alerts.webhook.enabled:false}")
+    private boolean enabled;
+
+    private final Deque<LowStockAlert> outbox = new ArrayDeque<>();
+
+    @Override
+    public void send(LowStockAlert alert) {
+        if (!enabled) {
+            return;
+        }
+        synchronized (outbox) {
+            if (outbox.size() == OUTBOX_SIZE) {
+                outbox.removeFirst();
+            }
+            outbox.addLast(alert);
+        }
+    }
+
+    public List<LowStockAlert> getDelivered() {
+        synchronized (outbox) {
+            return new ArrayList<>(outbox);
+        }
+    }
+}
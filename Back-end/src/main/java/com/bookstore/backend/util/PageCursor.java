@@ -0,0 +1,47 @@
+package com.bookstore.backend.util;
+
+import java.nio.charset.StandardCharsets;
+import java.util.Base64;
+
+// Encodes keyset pagination positions as opaque URL-safe tokens.
+// A cursor is a fixed number of string parts; a null part is kept distinct from an empty one.
+public final class PageCursor {
+
+    private static final char SEPARATOR = '\u001F';
+    private static final char NULL_MARKER = '\u0000';
+
+    private PageCursor() {
+    }
+
+    public static String encode(String... parts) {
+        StringBuilder raw = new StringBuilder();
+        for (int i = 0; i < parts.length; i++) {
+            if (i > 0) {
+                raw.append(SEPARATOR);
+            }
+            raw.append(parts[i] == null ? String.valueOf(NULL_MARKER) : parts[i]);
+        }
+        return Base64.getUrlEncoder().withoutPadding()
+                .encodeToString(raw.toString().getBytes(StandardCharsets.UTF_8));
+    }
+
+    public static String[] decode(String cursor, int expectedParts) {
+        String raw;
+        try {
+            raw = new String(Base64.getUrlDecoder().decode(cursor), StandardCharsets.UTF_8);
+        } catch (IllegalArgumentException e) {
+            throw new IllegalArgumentException("Invalid cursor");
+        }
+
+        String[] parts = raw.split(String.valueOf(SEPARATOR), -1);
+        if (parts.length != expectedParts) {
+            throw new IllegalArgumentException("Invalid cursor");
+        }
+        for (int i = 0; i < parts.length; i++) {
+            if (parts[i].length() == 1 && parts[i].charAt(0) == NULL_MARKER) {
+                parts[i] = null;
+            }
+        }
+        return parts;
+    }
+}
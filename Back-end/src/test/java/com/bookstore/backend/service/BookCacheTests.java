@@ -0,0 +1,124 @@
+package com.bookstore.backend.service;
+
+import com.bookstore.backend.config.BookChangeStreamListener;
+import com.bookstore.backend.model.Book;
+import com.bookstore.backend.repository.BookRepository;
+import com.mongodb.client.model.changestream.ChangeStreamDocument;
+import com.mongodb.client.model.changestream.OperationType;
+import org.bson.BsonDocument;
+import org.bson.BsonString;
+import org.bson.Document;
+import org.junit.jupiter.api.Test;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.util.Optional;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.Mockito.*;
+
+class BookCacheTests {
+
+	private Book book(String id, String title) {
+		Book book = new Book();
+		book.setBook_id(id);
+		book.setTitle(title);
+		book.setPrice(10);
+		return book;
+	}
+
+	@Test
+	void readThroughHitsRepositoryOnce() {
+		BookRepository repository = mock(BookRepository.class);
+		when(repository.findById("b1")).thenReturn(Optional.of(book("b1", "Dune")));
+		BookCache cache = new BookCache(repository, "tinylfu", 1_000_000, 30_000);
+
+		assertEquals("Dune", cache.findById("b1").get().getTitle());
+		assertEquals("Dune", cache.findById("b1").get().getTitle());
+
+		verify(repository, times(1)).findById("b1");
+		assertEquals(1, cache.getStats().getHits());
+		assertEquals(1, cache.getStats().getMisses());
+	}
+
+	@Test
+	void returnedBooksDoNotAliasCachedEntry() {
+		BookRepository repository = mock(BookRepository.class);
+		when(repository.findById("b1")).thenReturn(Optional.of(book("b1", "Dune")));
+		BookCache cache = new BookCache(repository, "lru", 1_000_000, 30_000);
+
+		cache.findById("b1").get().setTitle("Changed");
+
+		assertEquals("Dune", cache.findById("b1").get().getTitle());
+	}
+
+	@Test
+	void changeEventInvalidatesEntry() {
+		BookRepository repository = mock(BookRepository.class);
+		when(repository.findById("b1"))
+				.thenReturn(Optional.of(book("b1", "Dune")))
+				.thenReturn(Optional.of(book("b1", "Dune Messiah")));
+		BookCache cache = new BookCache(repository, "tinylfu", 1_000_000, 30_000);
+		BookChangeStreamListener listener = new BookChangeStreamListener();
+		ReflectionTestUtils.setField(listener, "bookCache", cache);
+
+		cache.findById("b1");
+
+		@SuppressWarnings("unchecked")
+		ChangeStreamDocument<Document> event = mock(ChangeStreamDocument.class);
+		when(event.getOperationType()).thenReturn(OperationType.UPDATE);
+		when(event.getDocumentKey()).thenReturn(new BsonDocument("_id", new BsonString("b1")));
+		listener.onChange(event);
+
+		assertEquals("Dune Messiah", cache.findById("b1").get().getTitle());
+		assertEquals(1, cache.getStats().getInvalidations());
+	}
+
+	@Test
+	void lruEvictsLeastRecentlyUsedWhenOverWeight() {
+		BookRepository repository = mock(BookRepository.class);
+		when(repository.findById(anyString()))
+				.thenAnswer(invocation -> Optional.of(book(invocation.getArgument(0), "Title")));
+		long twoBooks = 2L * BookCache.estimateWeight(book("b1", "Title"));
+		BookCache cache = new BookCache(repository, "lru", twoBooks, 30_000);
+
+		cache.findById("b1");
+		cache.findById("b2");
+		cache.findById("b1"); // b2 is now least recently used
+		cache.findById("b3");
+
+		assertEquals(1, cache.getStats().getEvictions());
+		assertEquals(2, cache.getStats().getEntries());
+		cache.findById("b1");
+		verify(repository, times(1)).findById("b1");
+	}
+
+	@Test
+	void invalidatingAnotherBookDoesNotStopAnInFlightLoad() {
+		BookRepository repository = mock(BookRepository.class);
+		BookCache cache = new BookCache(repository, "tinylfu", 1_000_000, 30_000);
+		when(repository.findById("b1")).thenAnswer(invocation -> {
+			cache.invalidate("b2"); // Lands while b1 is being read
+			return Optional.of(book("b1", "Dune"));
+		});
+
+		cache.findById("b1");
+		cache.findById("b1");
+
+		verify(repository, times(1)).findById("b1");
+	}
+
+	@Test
+	void invalidatingTheSameBookDropsAnInFlightLoad() {
+		BookRepository repository = mock(BookRepository.class);
+		BookCache cache = new BookCache(repository, "tinylfu", 1_000_000, 30_000);
+		when(repository.findById("b1")).thenAnswer(invocation -> {
+			cache.invalidate("b1");
+			return Optional.of(book("b1", "Dune"));
+		});
+
+		cache.findById("b1");
+		cache.findById("b1");
+
+		verify(repository, times(2)).findById("b1");
+	}
+}
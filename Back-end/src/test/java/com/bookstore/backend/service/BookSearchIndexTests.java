@@ -0,0 +1,71 @@
+package com.bookstore.backend.service;
+
+import com.bookstore.backend.model.Book;
+import org.junit.jupiter.api.Test;
+
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class BookSearchIndexTests {
+
+	private Book book(String id, String title, String author, String description) {
+		Book book = new Book();
+		book.setBook_id(id);
+		book.setTitle(title);
+		book.setAuthor(author);
+		book.setDescription(description);
+		book.setGenre("Fiction");
+		return book;
+	}
+
+	@Test
+	void ranksTitleMatchesAboveDescriptionMatches() {
+		BookSearchIndex index = new BookSearchIndex();
+		index.index(book("b1", "Ocean Tales", "Ann Lee", "Stories from the sea"));
+		index.index(book("b2", "Harbor Lights", "Tom Ray", "A quiet town by the ocean"));
+		index.index(book("b3", "Mountain Song", "Kim Park", "High peaks"));
+
+		assertEquals(List.of("b1", "b2"), index.search("ocean", 10, false));
+	}
+
+	@Test
+	void prefixQueriesExpandTerms() {
+		BookSearchIndex index = new BookSearchIndex();
+		index.index(book("b1", "Dragonflight", "Anne McCaffrey", null));
+		index.index(book("b2", "Dune", "Frank Herbert", null));
+
+		assertEquals(List.of("b1"), index.search("drag", 10, true));
+		assertEquals(List.of("b1"), index.search("drag*", 10, false));
+		assertTrue(index.search("drag", 10, false).isEmpty());
+	}
+
+	@Test
+	void updatesAndDeletesAreVisibleImmediately() {
+		BookSearchIndex index = new BookSearchIndex();
+		index.index(book("b1", "Old Title", "Author", null));
+
+		index.index(book("b1", "New Title", "Author", null));
+		assertTrue(index.search("old", 10, false).isEmpty());
+		assertEquals(List.of("b1"), index.search("new", 10, false));
+
+		index.remove("b1");
+		assertTrue(index.search("new", 10, false).isEmpty());
+		assertEquals(0, index.size());
+	}
+
+	@Test
+	void survivesTombstonePurge() {
+		BookSearchIndex index = new BookSearchIndex();
+		for (int i = 0; i < 3000; i++) {
+			index.index(book("b" + i, "Common Title " + i, "Author", null));
+		}
+		for (int i = 0; i < 2500; i++) {
+			index.remove("b" + i);
+		}
+
+		assertEquals(500, index.size());
+		assertEquals(List.of("b2999"), index.search("2999", 10, false));
+		assertEquals(10, index.search("common", 10, false).size());
+	}
+}
@@ -0,0 +1,124 @@
+package com.bookstore.backend.service;
+
+import com.bookstore.backend.model.Book;
+import com.bookstore.backend.model.Cart;
+import com.bookstore.backend.repository.BookRepository;
+import com.bookstore.backend.repository.CartRepository;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.test.context.ActiveProfiles;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.function.IntConsumer;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+@SpringBootTest
+@ActiveProfiles("test")
+class CartServiceConcurrencyTests {
+
+	private static final int THREADS = 32;
+	private static final int ADDS_PER_THREAD = 25;
+
+	@Autowired
+	private CartService cartService;
+
+	@Autowired
+	private BookRepository bookRepository;
+
+	@Autowired
+	private CartRepository cartRepository;
+
+	private final List<String> bookIds = new ArrayList<>();
+	private final String userId = "cart-stress-" + System.nanoTime();
+
+	@AfterEach
+	void cleanUp() {
+		cartRepository.deleteByUserId(userId);
+		bookRepository.deleteAllById(bookIds);
+	}
+
+	@Test
+	void parallelAddsOfSameBookAreNotLost() throws Exception {
+		String bookId = newBook(10_000);
+
+		runInParallel(thread -> cartService.addToCart(userId, bookId, 1));
+
+		Cart cart = cartRepository.findByUserId(userId).get();
+		assertEquals(1, cart.getItems().size());
+		assertEquals(THREADS * ADDS_PER_THREAD, cart.getItems().get(0).getQuantity());
+	}
+
+	@Test
+	void parallelAddsOfDifferentBooksAreAllKept() throws Exception {
+		List<String> perThread = new ArrayList<>();
+		for (int i = 0; i < THREADS; i++) {
+			perThread.add(newBook(10_000));
+		}
+
+		runInParallel(thread -> cartService.addToCart(userId, perThread.get(thread), 1));
+
+		Cart cart = cartRepository.findByUserId(userId).get();
+		assertEquals(THREADS, cart.getItems().size());
+		cart.getItems().forEach(item -> assertEquals(ADDS_PER_THREAD, item.getQuantity()));
+	}
+
+	@Test
+	void parallelAddsNeverExceedStock() throws Exception {
+		String bookId = newBook(100);
+
+		runInParallel(thread -> {
+			try {
+				cartService.addToCart(userId, bookId, 1);
+			} catch (IllegalArgumentException e) {
+				// Insufficient stock once the cart holds all 100
+			}
+		});
+
+		assertEquals(100, cartRepository.findByUserId(userId).get().getItems().get(0).getQuantity());
+	}
+
+	@Test
+	void readingMissingCartDoesNotCreateIt() {
+		Cart cart = cartService.getCartByUserId(userId);
+
+		assertTrue(cart.getItems().isEmpty());
+		assertTrue(cartRepository.findByUserId(userId).isEmpty());
+		assertEquals(0, cartService.getCartTotal(userId));
+	}
+
+	private void runInParallel(IntConsumer add) throws Exception {
+		ExecutorService pool = Executors.newFixedThreadPool(THREADS);
+		List<Future<?>> futures = new ArrayList<>();
+		for (int t = 0; t < THREADS; t++) {
+			int thread = t;
+			futures.add(pool.submit(() -> {
+				for (int i = 0; i < ADDS_PER_THREAD; i++) {
+					add.accept(thread);
+				}
+			}));
+		}
+		for (Future<?> future : futures) {
+			future.get();
+		}
+		pool.shutdown();
+		assertTrue(pool.awaitTermination(1, TimeUnit.MINUTES));
+	}
+
+	private String newBook(int stock) {
+		Book newBook = new Book();
+		newBook.setTitle("Cart Stress " + bookIds.size());
+		newBook.setPrice(9.99);
+		newBook.setStockQuantity(stock);
+		String id = bookRepository.save(newBook).getBook_id();
+		bookIds.add(id);
+		return id;
+	}
+}
@@ -0,0 +1,179 @@
+package com.bookstore.backend.service;
+
+import com.bookstore.backend.model.Book;
+import com.bookstore.backend.model.Cart;
+import com.bookstore.backend.model.CartLease;
+import com.mongodb.client.result.UpdateResult;
+import org.bson.Document;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.mockito.ArgumentCaptor;
+import org.springframework.dao.DataAccessResourceFailureException;
+import org.springframework.dao.DuplicateKeyException;
+import org.springframework.data.mongodb.core.BulkOperations;
+import org.springframework.data.mongodb.core.MongoTemplate;
+import org.springframework.data.mongodb.core.query.Query;
+import org.springframework.data.mongodb.core.query.Update;
+
+import java.util.List;
+import java.util.Map;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.*;
+
+class CartSessionStoreTests {
+
+	private static final long LEASE_MS = 30_000;
+
+	private MongoTemplate mongoTemplate;
+	private BulkOperations bulk;
+	private Book book;
+
+	@BeforeEach
+	void setUp() {
+		mongoTemplate = mock(MongoTemplate.class);
+		bulk = mock(BulkOperations.class);
+		when(mongoTemplate.bulkOps(any(BulkOperations.BulkMode.class), eq(Cart.class))).thenReturn(bulk);
+		when(mongoTemplate.updateMulti(any(Query.class), any(Update.class), eq(CartLease.class)))
+				.thenReturn(UpdateResult.acknowledged(1, 1L, null));
+
+		book = new Book();
+		book.setBook_id("b1");
+		book.setTitle("Dune");
+		book.setPrice(9.99);
+		book.setStockQuantity(10);
+	}
+
+	// Not started, so only the explicit flush() calls below write
+	private CartSessionStore store(long leaseMs) {
+		SchedulerLeader leader = mock(SchedulerLeader.class);
+		when(leader.getNodeId()).thenReturn("node-a");
+		return new CartSessionStore(mongoTemplate, leader, "write-behind", 4, leaseMs, 1000);
+	}
+
+	@Test
+	void changesWithinAWindowCoalesceIntoOneWrite() {
+		CartSessionStore store = store(LEASE_MS);
+
+		store.add("u1", book, 1);
+		store.add("u1", book, 2);
+		Cart cart = store.setQuantity("u1", "b1", 4);
+		store.flush();
+		store.flush(); // Nothing dirty left
+
+		assertEquals(4, cart.getItems().get(0).getQuantity());
+		verify(bulk, times(1)).upsert(any(Query.class), any(Update.class));
+		verify(bulk, times(1)).execute();
+	}
+
+	@Test
+	void idleCleanCartIsEvictedAndItsLeaseReleased() throws Exception {
+		CartSessionStore store = store(100); // Idle after 50 ms, well within the lease
+
+		store.add("u1", book, 1);
+		store.flush();
+		Thread.sleep(60);
+		store.flush();
+
+		verify(mongoTemplate).remove(any(Query.class), eq(CartLease.class));
+		store.get("u1"); // No session left, so read from Mongo
+		verify(mongoTemplate, times(2)).findOne(any(Query.class), eq(Cart.class));
+	}
+
+	@Test
+	void failedWriteIsRetriedNextRound() {
+		when(bulk.execute()).thenThrow(new DataAccessResourceFailureException("down")).thenReturn(null);
+		CartSessionStore store = store(LEASE_MS);
+
+		store.add("u1", book, 1);
+		store.flush();
+		store.flush();
+		store.flush();
+
+		verify(bulk, times(2)).upsert(any(Query.class), any(Update.class));
+		verify(bulk, times(2)).execute();
+	}
+
+	@Test
+	void cartLeasedByAnotherNodeIsNotTaken() {
+		when(mongoTemplate.upsert(any(Query.class), any(Update.class), eq(CartLease.class)))
+				.thenThrow(new DuplicateKeyException("lease held"));
+		CartSessionStore store = store(LEASE_MS);
+
+		assertThrows(IllegalStateException.class, () -> store.add("u1", book, 1));
+		store.flush();
+
+		verify(mongoTemplate, never()).bulkOps(any(BulkOperations.BulkMode.class), eq(Cart.class));
+	}
+
+	@Test
+	void lateReleaseDoesNotRemoveTheLeaseOfANewerLoad() throws Exception {
+		CartSessionStore store = store(100);
+
+		store.add("u1", book, 1);
+		store.flush();
+		Thread.sleep(60);
+		store.flush(); // Evicts and releases the first load's lease
+		store.add("u1", book, 1);
+
+		ArgumentCaptor<Update> leases = ArgumentCaptor.forClass(Update.class);
+		verify(mongoTemplate, times(2)).upsert(any(Query.class), leases.capture(), eq(CartLease.class));
+		Object first = leases.getAllValues().get(0).getUpdateObject().get("$set", Document.class).get("token");
+		Object second = leases.getAllValues().get(1).getUpdateObject().get("$set", Document.class).get("token");
+		assertNotEquals(first, second);
+
+		ArgumentCaptor<Query> released = ArgumentCaptor.forClass(Query.class);
+		verify(mongoTemplate).remove(released.capture(), eq(CartLease.class));
+		assertEquals(List.of(first), released.getValue().getQueryObject().get("token", Document.class).get("$in"));
+	}
+
+	@Test
+	void leaseTakenByAnotherNodeDropsTheSession() {
+		when(mongoTemplate.updateMulti(any(Query.class), any(Update.class), eq(CartLease.class)))
+				.thenReturn(UpdateResult.acknowledged(0, 0L, null));
+		CartSessionStore store = store(LEASE_MS);
+
+		store.add("u1", book, 1);
+		store.flush(); // Renewal matches nothing and nothing is held under this token
+
+		store.get("u1");
+		verify(mongoTemplate, times(2)).findOne(any(Query.class), eq(Cart.class));
+	}
+
+	@Test
+	void cartWithExpiredLeaseIsNotWritten() throws Exception {
+		when(mongoTemplate.updateMulti(any(Query.class), any(Update.class), eq(CartLease.class)))
+				.thenThrow(new DataAccessResourceFailureException("down"));
+		CartSessionStore store = store(20);
+
+		store.add("u1", book, 1);
+		store.flush(); // Written; renewal fails
+		Thread.sleep(30);
+		store.setQuantity("u1", "b1", 2);
+		store.flush(); // Lease has run out, so the change is dropped
+
+		verify(bulk, times(1)).upsert(any(Query.class), any(Update.class));
+	}
+
+	@Test
+	void checkoutSubtractsOnlyWhatWasOrdered() {
+		CartSessionStore store = store(LEASE_MS);
+		Book other = new Book();
+		other.setBook_id("b2");
+		other.setTitle("Emma");
+		other.setPrice(5.0);
+		other.setStockQuantity(10);
+
+		store.add("u1", book, 2);
+		store.add("u1", other, 1);
+		store.add("u1", book, 1); // Another tab, after the order was built for 2 x b1 and 1 x b2
+		store.subtract("u1", Map.of("b1", 2, "b2", 1));
+
+		Cart cart = store.get("u1");
+		assertEquals(1, cart.getItems().size());
+		assertEquals("b1", cart.getItems().get(0).getBookId());
+		assertEquals(1, cart.getItems().get(0).getQuantity());
+	}
+}
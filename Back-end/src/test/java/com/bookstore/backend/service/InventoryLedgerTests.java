@@ -0,0 +1,98 @@
+package com.bookstore.backend.service;
+
+import com.bookstore.backend.dto.StockAtDate;
+import com.bookstore.backend.model.Book;
+import com.bookstore.backend.model.InventoryMovement;
+import com.bookstore.backend.model.InventorySnapshot;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.mockito.invocation.Invocation;
+import org.springframework.data.mongodb.core.MongoTemplate;
+import org.springframework.data.mongodb.core.index.IndexOperations;
+import org.springframework.data.mongodb.core.query.Query;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.time.LocalDateTime;
+import java.util.Collection;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.*;
+
+class InventoryLedgerTests {
+
+	private static final LocalDateTime AT = LocalDateTime.of(2025, 3, 10, 12, 0);
+
+	private InventoryLedger ledger;
+	private MongoTemplate mongoTemplate;
+
+	@BeforeEach
+	void setUp() {
+		mongoTemplate = mock(MongoTemplate.class);
+		when(mongoTemplate.indexOps(anyString())).thenReturn(mock(IndexOperations.class));
+		ledger = new InventoryLedger();
+		ReflectionTestUtils.setField(ledger, "mongoTemplate", mongoTemplate);
+		ReflectionTestUtils.setField(ledger, "batchSize", 500);
+	}
+
+	private InventoryMovement movement(int delta) {
+		InventoryMovement movement = new InventoryMovement();
+		movement.setBookId("b1");
+		movement.setDelta(delta);
+		return movement;
+	}
+
+	private InventorySnapshot snapshot(int quantity, LocalDateTime takenAt) {
+		InventorySnapshot snapshot = new InventorySnapshot();
+		snapshot.setBookId("b1");
+		snapshot.setQuantity(quantity);
+		snapshot.setTakenAt(takenAt);
+		return snapshot;
+	}
+
+	@Test
+	void rollsForwardFromEarlierSnapshot() {
+		when(mongoTemplate.findOne(any(Query.class), eq(InventorySnapshot.class)))
+				.thenReturn(snapshot(20, AT.minusHours(10)));
+		when(mongoTemplate.find(any(Query.class), eq(InventoryMovement.class), anyString()))
+				.thenReturn(List.of(movement(-3), movement(10), movement(-1)));
+
+		StockAtDate stock = ledger.getStockAt("b1", AT);
+
+		assertEquals(26, stock.getQuantity());
+		assertEquals(3, stock.getMovementsReplayed());
+	}
+
+	@Test
+	void rollsBackFromLiveStockWithoutSnapshots() {
+		Book book = new Book();
+		book.setBook_id("b1");
+		book.setStockQuantity(7);
+		when(mongoTemplate.findOne(any(Query.class), eq(Book.class))).thenReturn(book);
+		when(mongoTemplate.find(any(Query.class), eq(InventoryMovement.class), anyString()))
+				.thenReturn(List.of(movement(-2)))
+				.thenReturn(List.of(movement(5)));
+
+		StockAtDate stock = ledger.getStockAt("b1", LocalDateTime.now().minusMonths(1));
+
+		assertEquals(4, stock.getQuantity());
+	}
+
+	@Test
+	void flushGroupsMovementsByMonth() {
+		ledger.record("b1", InventoryLedger.ORDER, -1, "o1");
+		ledger.record("b2", InventoryLedger.RESTOCK, 4, null);
+		ledger.record("b3", InventoryLedger.ADJUSTMENT, 0, null); // no-op
+
+		ledger.flush();
+
+		Invocation insert = mockingDetails(mongoTemplate).getInvocations().stream()
+				.filter(invocation -> invocation.getMethod().getName().equals("insert"))
+				.findFirst().orElseThrow();
+		assertEquals(2, ((Collection<?>) insert.getArguments()[0]).size());
+		assertEquals(InventoryLedger.collectionFor(LocalDateTime.now()), insert.getArguments()[1]);
+	}
+}
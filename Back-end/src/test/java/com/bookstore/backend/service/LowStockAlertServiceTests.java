@@ -0,0 +1,128 @@
+package com.bookstore.backend.service;
+
+import com.bookstore.backend.dto.LowStockAlert;
+import com.bookstore.backend.model.Book;
+import com.bookstore.backend.model.StockAlert;
+import com.mongodb.client.result.DeleteResult;
+import com.mongodb.client.result.UpdateResult;
+import org.bson.Document;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.dao.DuplicateKeyException;
+import org.springframework.data.mongodb.core.MongoTemplate;
+import org.springframework.data.mongodb.core.query.Query;
+import org.springframework.data.mongodb.core.query.Update;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.*;
+
+class LowStockAlertServiceTests {
+
+	private final List<LowStockAlert> sent = new ArrayList<>();
+	private LowStockAlertService service;
+	private MongoTemplate mongoTemplate;
+
+	@BeforeEach
+	void setUp() {
+		mongoTemplate = mock(MongoTemplate.class);
+		when(mongoTemplate.remove(any(Query.class), eq(StockAlert.class))).thenReturn(DeleteResult.acknowledged(1));
+		when(mongoTemplate.updateFirst(any(Query.class), any(Update.class), eq(StockAlert.class)))
+				.thenReturn(UpdateResult.acknowledged(1, 1L, null));
+
+		service = new LowStockAlertService();
+		ReflectionTestUtils.setField(service, "sinks", List.<LowStockAlertSink>of(sent::add));
+		ReflectionTestUtils.setField(service, "mongoTemplate", mongoTemplate);
+		ReflectionTestUtils.setField(service, "hysteresis", 2);
+		ReflectionTestUtils.setField(service, "nearCacheTtlMs", 60_000L);
+	}
+
+	private int nearCacheSize() {
+		return ((Map<?, ?>) ReflectionTestUtils.getField(service, "nearCache")).size();
+	}
+
+	private Book book(int stock, int minThreshold) {
+		Book book = new Book();
+		book.setBook_id("b1");
+		book.setTitle("Dune");
+		book.setStockQuantity(stock);
+		book.setMinThreshold(minThreshold);
+		return book;
+	}
+
+	@Test
+	void firesOnceWhenCrossingThreshold() {
+		service.evaluate(book(12, 10));
+		service.evaluate(book(10, 10));
+		service.evaluate(book(9, 10));
+		service.evaluate(book(8, 10));
+
+		assertEquals(1, sent.size());
+		assertEquals("LOW", sent.get(0).getSeverity());
+		assertEquals(1, nearCacheSize());
+	}
+
+	@Test
+	void escalatesAndReFiresAfterPartialRecovery() {
+		service.evaluate(book(4, 0)); // default threshold 5
+		service.evaluate(book(1, 0));
+		service.evaluate(book(4, 0)); // back to LOW, no alert
+		service.evaluate(book(2, 0));
+		service.evaluate(book(0, 0));
+
+		assertEquals(List.of("LOW", "CRITICAL", "CRITICAL", "OUT_OF_STOCK"),
+				sent.stream().map(LowStockAlert::getSeverity).toList());
+	}
+
+	@Test
+	void outOfStockAgainAfterRestockToLowReFires() {
+		service.evaluate(book(0, 5));
+		service.evaluate(book(4, 5)); // restocked, still low
+		service.evaluate(book(0, 5));
+
+		assertEquals(List.of("OUT_OF_STOCK", "OUT_OF_STOCK"),
+				sent.stream().map(LowStockAlert::getSeverity).toList());
+		verify(mongoTemplate).updateFirst(any(Query.class),
+				argThat((Update update) -> Integer.valueOf(LowStockAlertService.LOW).equals(
+						update.getUpdateObject().get("$set", Document.class).get("level"))),
+				eq(StockAlert.class));
+	}
+
+	@Test
+	void clearsOnlyAboveHysteresisBand() {
+		service.evaluate(book(5, 5));
+		service.evaluate(book(7, 5)); // inside the band
+		assertEquals(1, nearCacheSize());
+
+		service.evaluate(book(8, 5));
+		assertEquals(0, nearCacheSize());
+		assertEquals("RESOLVED", sent.get(sent.size() - 1).getSeverity());
+
+		service.evaluate(book(5, 5));
+		assertEquals(3, sent.size());
+	}
+
+	@Test
+	void doesNotDispatchWhenAnotherNodeRaisedFirst() {
+		when(mongoTemplate.upsert(any(Query.class), any(Update.class), eq(StockAlert.class)))
+				.thenThrow(new DuplicateKeyException("E11000"));
+		StockAlert stored = new StockAlert();
+		stored.setBookId("b1");
+		stored.setLevel(1);
+		stored.setSeverity("LOW");
+		stored.setStockQuantity(4);
+		stored.setThreshold(5);
+		when(mongoTemplate.findById("b1", StockAlert.class)).thenReturn(stored);
+
+		service.evaluate(book(4, 5));
+
+		assertTrue(sent.isEmpty());
+		assertEquals(1, nearCacheSize());
+	}
+}
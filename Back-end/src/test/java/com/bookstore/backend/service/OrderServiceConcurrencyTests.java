@@ -0,0 +1,149 @@
+package com.bookstore.backend.service;
+
+import com.bookstore.backend.model.Book;
+import com.bookstore.backend.model.Order;
+import com.bookstore.backend.model.User;
+import com.bookstore.backend.repository.BookRepository;
+import com.bookstore.backend.repository.OrderRepository;
+import com.bookstore.backend.repository.UserRepository;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.test.context.ActiveProfiles;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+@SpringBootTest
+@ActiveProfiles("test")
+class OrderServiceConcurrencyTests {
+
+	private static final int INITIAL_STOCK = 100;
+	private static final int ATTEMPTS = 2000;
+
+	@Autowired
+	private OrderService orderService;
+
+	@Autowired
+	private BookRepository bookRepository;
+
+	@Autowired
+	private UserRepository userRepository;
+
+	@Autowired
+	private OrderRepository orderRepository;
+
+	private final List<String> orderIds = new ArrayList<>();
+	private Book book;
+	private Book second;
+	private User user;
+
+	@AfterEach
+	void cleanUp() {
+		orderRepository.deleteAllById(orderIds);
+		if (book != null) {
+			bookRepository.deleteById(book.getBook_id());
+		}
+		if (second != null) {
+			bookRepository.deleteById(second.getBook_id());
+		}
+		if (user != null) {
+			userRepository.deleteById(user.getUser_id());
+		}
+	}
+
+	@Test
+	void parallelOrdersNeverOversell() throws Exception {
+		user = userRepository.save(newUser());
+		book = bookRepository.save(newBook("Stress Test Book", INITIAL_STOCK));
+
+		AtomicInteger succeeded = new AtomicInteger();
+		AtomicInteger rejected = new AtomicInteger();
+		ExecutorService pool = Executors.newFixedThreadPool(64);
+		List<Future<?>> futures = new ArrayList<>();
+		for (int i = 0; i < ATTEMPTS; i++) {
+			futures.add(pool.submit(() -> {
+				try {
+					Order placed = orderService.placeOrder(newOrder(book.getBook_id(), 1));
+					synchronized (orderIds) {
+						orderIds.add(placed.getOrder_id());
+					}
+					succeeded.incrementAndGet();
+				} catch (IllegalArgumentException e) {
+					rejected.incrementAndGet();
+				}
+			}));
+		}
+		for (Future<?> future : futures) {
+			future.get();
+		}
+		pool.shutdown();
+		assertTrue(pool.awaitTermination(1, TimeUnit.MINUTES));
+
+		int remaining = bookRepository.findById(book.getBook_id()).get().getStockQuantity();
+		assertEquals(0, remaining);
+		assertEquals(INITIAL_STOCK, succeeded.get());
+		assertEquals(ATTEMPTS - INITIAL_STOCK, rejected.get());
+	}
+
+	@Test
+	void failedLineItemReleasesEarlierReservations() {
+		user = userRepository.save(newUser());
+		book = bookRepository.save(newBook("Plenty", 10));
+		second = bookRepository.save(newBook("Scarce", 2));
+
+		// Read as a checkout would, then let another checkout take Scarce before this one reserves,
+		// so the in-memory stock check passes and the reservation itself fails on the second line
+		Map<String, Book> snapshot = new HashMap<>();
+		snapshot.put(book.getBook_id(), bookRepository.findById(book.getBook_id()).get());
+		snapshot.put(second.getBook_id(), bookRepository.findById(second.getBook_id()).get());
+		second.setStockQuantity(1);
+		bookRepository.save(second);
+
+		Order order = newOrder(book.getBook_id(), 3);
+		Order.OrderItem scarce = new Order.OrderItem();
+		scarce.setBook_id(second.getBook_id());
+		scarce.setQuantity(2);
+		order.getItems().add(scarce);
+
+		assertThrows(IllegalArgumentException.class, () -> orderService.placeOrder(order, snapshot));
+		assertEquals(10, bookRepository.findById(book.getBook_id()).get().getStockQuantity());
+		assertEquals(1, bookRepository.findById(second.getBook_id()).get().getStockQuantity());
+	}
+
+	private User newUser() {
+		User newUser = new User();
+		newUser.setName("Stress Tester");
+		newUser.setEmail("stress-" + System.nanoTime() + "@bookstore.test");
+		newUser.setPassword("x");
+		return newUser;
+	}
+
+	private Book newBook(String title, int stock) {
+		Book newBook = new Book();
+		newBook.setTitle(title);
+		newBook.setPrice(9.99);
+		newBook.setStockQuantity(stock);
+		return newBook;
+	}
+
+	private Order newOrder(String bookId, int quantity) {
+		Order.OrderItem item = new Order.OrderItem();
+		item.setBook_id(bookId);
+		item.setQuantity(quantity);
+		Order order = new Order();
+		order.setUserId(user.getUser_id());
+		order.setItems(new ArrayList<>(List.of(item)));
+		return order;
+	}
+}
@@ -0,0 +1,79 @@
+package com.bookstore.backend.service;
+
+import com.bookstore.backend.model.Book;
+import org.junit.jupiter.api.Test;
+
+import java.time.ZoneId;
+import java.util.concurrent.ForkJoinPool;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class ReorderForecastServiceTests {
+
+	private static final int WINDOW = 90;
+
+	@Test
+	void weightsRecentSalesMost() {
+		double[] weights = ReorderForecastService.decayWeights(0.5, WINDOW);
+
+		assertEquals(0.5, weights[0], 1e-9);
+		assertEquals(0.25, weights[1], 1e-9);
+		assertThrows(IllegalArgumentException.class, () -> ReorderForecastService.decayWeights(0, WINDOW));
+	}
+
+	@Test
+	void suggestsUpToMaxThreshold() {
+		// 4 a day, 10 in stock: 2.5 days of cover, 7 day lead time -> nothing left on delivery
+		assertEquals(50, ReorderForecastService.suggestedQuantity(10, 4, 2.5, 5, 50, 7, 30));
+		// Plenty of cover and above threshold
+		assertEquals(0, ReorderForecastService.suggestedQuantity(40, 1, 40, 5, 50, 7, 30));
+		// No maxThreshold: target-cover-days of sales
+		assertEquals(120, ReorderForecastService.suggestedQuantity(0, 4, 0, 5, 0, 7, 30));
+	}
+
+	@Test
+	void outOfStockBookWithoutSalesHasNoCover() {
+		assertEquals(0, ReorderForecastService.daysOfCover(0, 0));
+		assertEquals(ReorderForecastService.MAX_COVER_DAYS, ReorderForecastService.daysOfCover(10, 0));
+		assertEquals(5, ReorderForecastService.daysOfCover(10, 2));
+	}
+
+	@Test
+	void salesDaysUseTheServerZone() {
+		assertEquals("+00:00", ReorderForecastService.mongoTimezone(ZoneId.of("UTC")));
+		assertEquals("Asia/Colombo", ReorderForecastService.mongoTimezone(ZoneId.of("Asia/Colombo")));
+	}
+
+	@Test
+	void parallelForecastMatchesPerBookSums() {
+		int count = 20_000; // Several fork-join partitions
+		ReorderForecastService.Columns books = new ReorderForecastService.Columns();
+		ReorderForecastService.SalesRows sales = new ReorderForecastService.SalesRows();
+		for (int i = 0; i < count; i++) {
+			Book book = new Book();
+			book.setBook_id("b" + i);
+			book.setStockQuantity(i % 2 == 0 ? 1 : 1000);
+			book.setMaxThreshold(20);
+			books.add(book);
+		}
+		// Interleaved arrival: every book sold 2 today and 2 yesterday
+		for (int age = 0; age < 2; age++) {
+			for (int i = 0; i < count; i++) {
+				sales.add(i, age, 2);
+			}
+		}
+
+		double[] weights = ReorderForecastService.decayWeights(0.5, WINDOW);
+		int[] offsets = sales.groupByBook(count);
+		ReorderForecastService.Forecast forecast = new ReorderForecastService.Forecast(count);
+		ForkJoinPool.commonPool().invoke(new ReorderForecastService.ForecastTask(
+				books, sales, offsets, weights, 7, 30, forecast, 0, count));
+
+		for (int i = 0; i < count; i++) {
+			assertEquals(1.5, forecast.velocity[i], 1e-9); // 0.5 * 2 + 0.25 * 2
+		}
+		assertEquals(20, forecast.suggested[0]);
+		assertEquals(0, forecast.suggested[1]);
+		assertEquals(ReorderForecastService.MAX_COVER_DAYS, forecast.daysOfCover[1]);
+	}
+}
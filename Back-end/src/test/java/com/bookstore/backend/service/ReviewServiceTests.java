@@ -0,0 +1,138 @@
+package com.bookstore.backend.service;
+
+import com.bookstore.backend.dto.CursorPage;
+import com.bookstore.backend.model.Book;
+import com.bookstore.backend.model.Review;
+import com.bookstore.backend.repository.ReviewRepository;
+import com.bookstore.backend.util.PageCursor;
+import org.bson.Document;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.data.mongodb.core.MongoTemplate;
+import org.springframework.data.mongodb.core.aggregation.Aggregation;
+import org.springframework.data.mongodb.core.aggregation.AggregationUpdate;
+import org.springframework.data.mongodb.core.query.Query;
+import org.springframework.data.mongodb.core.query.Update;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Optional;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.*;
+
+class ReviewServiceTests {
+
+	private ReviewService reviewService;
+	private MongoTemplate mongoTemplate;
+	private ReviewRepository reviewRepository;
+
+	@BeforeEach
+	void setUp() {
+		mongoTemplate = mock(MongoTemplate.class);
+		reviewRepository = mock(ReviewRepository.class);
+		reviewService = new ReviewService();
+		ReflectionTestUtils.setField(reviewService, "mongoTemplate", mongoTemplate);
+		ReflectionTestUtils.setField(reviewService, "reviewRepository", reviewRepository);
+		ReflectionTestUtils.setField(reviewService, "bookCache", mock(BookCache.class));
+		ReflectionTestUtils.setField(reviewService, "maxPageSize", 50);
+	}
+
+	private Review review(int rating) {
+		Review review = new Review();
+		review.setReview_id("r1");
+		review.setBook_id("b1");
+		review.setUserId("u1");
+		review.setRating(rating);
+		return review;
+	}
+
+	@Test
+	void ratingChangeMovesSumOnly() {
+		when(reviewRepository.findById("r1")).thenReturn(Optional.of(review(2)));
+		when(mongoTemplate.findAndModify(any(Query.class), any(Update.class), eq(Review.class))).thenReturn(review(2));
+
+		reviewService.updateReview("r1", "u1", 5, "better on a reread");
+
+		verify(mongoTemplate).updateFirst(any(Query.class),
+				argThat((AggregationUpdate update) -> counters(update).equals(List.of(3L, 0))), eq(Book.class));
+	}
+
+	@Test
+	void secondDeleteDoesNotDecrementAgain() {
+		when(reviewRepository.findById("r1")).thenReturn(Optional.of(review(4)));
+		when(mongoTemplate.findAndModify(any(Query.class), any(Update.class), eq(Review.class)))
+				.thenReturn(review(4), (Review) null);
+
+		reviewService.deleteReview("r1", "u1", false);
+		reviewService.deleteReview("r1", "u1", false);
+
+		verify(mongoTemplate, times(1)).updateFirst(any(Query.class),
+				argThat((AggregationUpdate update) -> counters(update).equals(List.of(-4L, -1))), eq(Book.class));
+	}
+
+	@Test
+	void averageIsDerivedAfterCounters() {
+		List<Document> stages = ReviewService.ratingDelta(0, 4).toPipeline(Aggregation.DEFAULT_CONTEXT);
+
+		assertEquals(2, stages.size());
+		assertTrue(((Document) stages.get(0).get("$set")).containsKey("ratingSum"));
+		assertTrue(((Document) stages.get(1).get("$set")).containsKey("rating"));
+	}
+
+	@Test
+	void ratingChangeMovesOneReviewBetweenStars() {
+		Document set = (Document) ReviewService.ratingDelta(2, 5).toPipeline(Aggregation.DEFAULT_CONTEXT).get(0).get("$set");
+		Document map = (Document) ((Document) set.get("ratingHistogram")).get("$map");
+		List<?> add = (List<?>) ((Document) map.get("in")).get("$add");
+		List<?> histogramDelta = (List<?>) ((Document) add.get(1)).get("$arrayElemAt", List.class).get(0);
+
+		assertEquals(List.of(0, -1, 0, 0, 1), histogramDelta);
+	}
+
+	@Test
+	void summariesAreCappedPerRequest() {
+		List<String> ids = new ArrayList<>();
+		for (int i = 0; i <= ReviewService.MAX_SUMMARY_IDS; i++) {
+			ids.add("b" + i);
+		}
+
+		assertThrows(IllegalArgumentException.class, () -> reviewService.getRatingSummaries(ids));
+	}
+
+	@Test
+	void bookPageContinuesAfterLastReview() {
+		Review first = review(5);
+		Review second = review(4);
+		second.setReview_id("r2");
+		when(mongoTemplate.find(any(Query.class), eq(Review.class)))
+				.thenReturn(new ArrayList<>(List.of(first, second, review(3))));
+
+		CursorPage<Review> page = reviewService.getReviewsByBook("b1", "highest", null, 2);
+
+		assertEquals(2, page.getItems().size());
+		assertTrue(page.isHasMore());
+		assertArrayEquals(new String[] { "highest", "4", "r2" }, PageCursor.decode(page.getNextCursor(), 3));
+	}
+
+	@Test
+	void cursorFromAnotherSortIsRejected() {
+		String cursor = PageCursor.encode("newest", LocalDateTime.now().toString(), "r1");
+
+		assertThrows(IllegalArgumentException.class, () -> reviewService.getReviewsByBook("b1", "lowest", cursor, 20));
+	}
+
+	// The sum and count deltas from the first $set stage
+	private static List<Object> counters(AggregationUpdate update) {
+		Document set = (Document) update.toPipeline(Aggregation.DEFAULT_CONTEXT).get(0).get("$set");
+		return List.of(delta(set, "ratingSum"), delta(set, "ratingCount"));
+	}
+
+	private static Object delta(Document set, String field) {
+		return ((List<?>) ((Document) set.get(field)).get("$add")).get(1);
+	}
+}
@@ -25,6 +25,8 @@ export default function BookReviews({ bookId, bookTitle, bookImage }: BookReview
     const [comment, setComment] = useState("");
     const [isSubmitting, setIsSubmitting] = useState(false);
     const [loading, setLoading] = useState(true);
+    const [nextCursor, setNextCursor] = useState<string | null>(null);
+    const [loadingMore, setLoadingMore] = useState(false);
 
     useEffect(() => {
         fetchReviews();
@@ -32,8 +34,9 @@ export default function BookReviews({ bookId, bookTitle, bookImage }: BookReview
 
     const fetchReviews = async () => {
         try {
-            const data = await ReviewService.getByBookId(bookId);
-            setReviews(data);
+            const page = await ReviewService.getByBookId(bookId);
+            setReviews(page.items);
+            setNextCursor(page.hasMore ? page.nextCursor : null);
         } catch (error) {
             console.error("Failed to fetch reviews", error);
         } finally {
@@ -41,6 +44,21 @@ export default function BookReviews({ bookId, bookTitle, bookImage }: BookReview
         }
     };
 
+    const loadMoreReviews = async () => {
+        if (!nextCursor) return;
+        setLoadingMore(true);
+        try {
+            const page = await ReviewService.getByBookId(bookId, nextCursor);
+            setReviews((current) => [...current, ...page.items]);
+            setNextCursor(page.hasMore ? page.nextCursor : null);
+        } catch (error) {
+            console.error("Failed to fetch more reviews", error);
+            toast.error("Failed to load more reviews");
+        } finally {
+            setLoadingMore(false);
+        }
+    };
+
     const handleSubmit = async (e: React.FormEvent) => {
         e.preventDefault();
         if (!user) {
@@ -140,6 +158,14 @@ export default function BookReviews({ bookId, bookTitle, bookImage }: BookReview
                                     )}
                                 </div>
                             ))}
+                            {nextCursor && (
+                                <div className="text-center">
+                                    <Button variant="outline" onClick={loadMoreReviews} disabled={loadingMore}
+                                        className="rounded-full font-black uppercase tracking-widest text-xs">
+                                        {loadingMore ? "Loading..." : "Load more reviews"}
+                                    </Button>
+                                </div>
+                            )}
                         </div>
                     )}
                 </div>
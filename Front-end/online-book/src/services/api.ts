@@ -43,6 +43,13 @@ export interface Review {
     date: string;
 }
 
+// One page of a cursor-paginated listing; pass nextCursor back for the next page
+export interface CursorPage<T> {
+    items: T[];
+    nextCursor: string | null;
+    hasMore: boolean;
+}
+
 export interface FAQ {
     id: string;
     question: string;
@@ -165,8 +172,10 @@ export const ReviewService = {
         const response = await api.get<Review[]>('/reviews');
         return response.data;
     },
-    getByBookId: async (bookId: string) => {
-        const response = await api.get<Review[]>(`/reviews/book/${bookId}`);
+    getByBookId: async (bookId: string, cursor?: string | null, sort: 'newest' | 'highest' | 'lowest' = 'newest') => {
+        const response = await api.get<CursorPage<Review>>(`/reviews/book/${bookId}`, {
+            params: { sort, cursor: cursor ?? undefined },
+        });
         return response.data;
     },
     add: async (data: any) => {